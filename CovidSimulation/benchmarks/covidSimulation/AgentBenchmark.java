@@ -0,0 +1,143 @@
+package covidSimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the methods of Population called for each agent at each tick : the search of the infected neighbours,
+ * the possible points to move on and the choice of the next position, with and without distancing.
+ * Each invocation calls the method for the next agent of the world, so that the measure is an average on the agents.
+ * The methods write in scratch arrays created before the measure, as the sweeps of a tick do.
+ * @author Natacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentBenchmark {
+
+	/**
+	 * True if the distancing strategy is activated.
+	 */
+	@Param({"false", "true"})
+	public boolean distancing;
+
+	/**
+	 * The number of people divided by the number of cells.
+	 */
+	@Param({"0.3"})
+	public double density;
+
+	/**
+	 * The population of the world.
+	 */
+	private Population population;
+
+	/**
+	 * The ids of the susceptible agents.
+	 */
+	private int[] susceptible;
+
+	/**
+	 * The field of the moves towards the hospital.
+	 */
+	private FlowField hospital;
+
+	/**
+	 * Scratch arrays for the infected neighbours and for the possible points to move on.
+	 */
+	private final int[] neighbours = new int[8];
+	private final int[] candidateX = new int[8];
+	private final int[] candidateY = new int[8];
+
+	/**
+	 * The id of the next agent, and the index of the next susceptible agent.
+	 */
+	private int next;
+	private int nextSusceptible;
+
+	/**
+	 * Creates the world.
+	 * @throws Exception if the parameters file can not be read
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		BenchmarkWorld world = new BenchmarkWorld(200, 200, density, distancing);
+		population = world.population;
+		susceptible = world.getIds(Agent.SUSCEPTIBLE_STATUS);
+		hospital = population.getPlace(Agent.HOSPITAL_GOAL);
+	}
+
+	/**
+	 * Returns the id of the next agent.
+	 */
+	private int nextAgent() {
+		if (++next >= population.size)
+			next = 0;
+		return next;
+	}
+
+	/**
+	 * Searches the infected neighbours of the next susceptible agent.
+	 * @return the number of infected neighbours
+	 */
+	@Benchmark
+	public int getInfectedNeighbours() {
+		if (++nextSusceptible >= susceptible.length)
+			nextSusceptible = 0;
+		return population.getInfectedNeighbours(susceptible[nextSusceptible], neighbours);
+	}
+
+	/**
+	 * Computes the possible points to move on of the next agent.
+	 * @return the number of possible points
+	 */
+	@Benchmark
+	public int collectRandomCandidates() {
+		return population.collectRandomCandidates(nextAgent(), candidateX, candidateY);
+	}
+
+	/**
+	 * Computes the possible points to move towards the nearest hospital of the next agent.
+	 * @return the number of possible points
+	 */
+	@Benchmark
+	public int collectCandidatesDownhill() {
+		return population.collectCandidatesDownhill(nextAgent(), hospital, candidateX, candidateY);
+	}
+
+	/**
+	 * Counts the direct neighbours of the next agent.
+	 * @return the number of neighbours
+	 */
+	@Benchmark
+	public int getNbNeighbours() {
+		int id = nextAgent();
+		return population.getNbNeighbours(population.x.get(id), population.y.get(id));
+	}
+
+	/**
+	 * Computes the next position of the next agent (the agent does not move).
+	 * @return the next x coordinate
+	 */
+	@Benchmark
+	public int computeNextPosition() {
+		int id = nextAgent();
+		population.computeNextPosition(id, candidateX, candidateY);
+		return population.nextX.get(id);
+	}
+}
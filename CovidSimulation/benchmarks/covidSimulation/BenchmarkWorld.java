@@ -0,0 +1,70 @@
+package covidSimulation;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Builds the worlds used by the benchmarks : a population run without Repast, created with the default parameters
+ * of the model, as the headless runs do.
+ * @author Natacha
+ *
+ */
+class BenchmarkWorld {
+
+	/**
+	 * The parameters file of the model, relative to the CovidSimulation directory
+	 * (can be changed with -DcovidSimulation.parameters=...).
+	 */
+	static final String PARAMETERS = System.getProperty("covidSimulation.parameters", "CovidSimulation.rs/parameters.xml");
+
+	/**
+	 * The seed of the worlds, so that every run of a benchmark measures the same world.
+	 */
+	static final long SEED = 42;
+
+	/**
+	 * The population.
+	 */
+	final Population population;
+
+	/**
+	 * Constructor.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param density the number of people divided by the number of cells
+	 * @param distancing true if the distancing strategy is activated
+	 * @throws Exception if the parameters file can not be read
+	 */
+	BenchmarkWorld(int width, int height, double density, boolean distancing) throws Exception {
+		HeadlessParameters params = new HeadlessParameters(new File(PARAMETERS));
+		int nbPeople = (int) (density * width * height);
+		int nbInfected = Math.max(1, nbPeople / 100);
+		params.set("gridWidth", Integer.toString(width));
+		params.set("gridHeight", Integer.toString(height));
+		params.set("numberOfSusceptibleAgents", Integer.toString(nbPeople - nbInfected));
+		params.set("numberOfInfectedAgents", Integer.toString(nbInfected));
+
+		ContextCreator creator = new ContextCreator();
+		creator.readParameters(params::getValue);
+		creator.scenario.setDistancing(distancing);
+		population = new Population(width, height, nbPeople, SEED, creator.scenario);
+		creator.createPeople(population, SEED, 0, height);
+
+		// The views are only created by the Repast runs : create them for the methods of Agent.
+		population.createViews();
+	}
+
+	/**
+	 * Returns the ids of the people having the specified status.
+	 * @param status the status
+	 * @return the ids
+	 */
+	int[] getIds(int status) {
+		int nb = 0;
+		int[] ids = new int[population.size];
+		for (int id = 0; id < population.size; id++)
+			if (population.getStatus(id) == status)
+				ids[nb++] = id;
+		return Arrays.copyOf(ids, nb);
+	}
+}
@@ -0,0 +1,31 @@
+package covidSimulation;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the results give the allocation rate of each benchmark
+ * (gc.alloc.rate.norm : the number of bytes allocated by call) with its time.
+ * The arguments are the usual JMH arguments, for example a regular expression selecting the benchmarks :
+ * Benchmarks TickBenchmark -p density=0.5
+ * @author Natacha
+ *
+ */
+public class Benchmarks {
+
+	/**
+	 * Runs the benchmarks.
+	 * @param args the JMH arguments
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class);
+		// Without arguments, all the benchmarks are run.
+		if (args.length == 0)
+			options.include("covidSimulation\\..*Benchmark");
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,108 @@
+package covidSimulation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the places with many sites : the search of the nearest site of a point in the spatial index,
+ * and the downhill directions of the flow field read by an agent going to the place.
+ * Each invocation uses the next point of a list of random points.
+ * @author Natacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceBenchmark {
+
+	/**
+	 * The number of sites of the place.
+	 */
+	@Param({"100", "10000"})
+	public int nbSites;
+
+	/**
+	 * The grid dimensions.
+	 */
+	private static final int WIDTH = 2000;
+	private static final int HEIGHT = 2000;
+
+	/**
+	 * The number of random points.
+	 */
+	private static final int NB_POINTS = 1 << 16;
+
+	/**
+	 * The field of the place.
+	 */
+	private FlowField place;
+
+	/**
+	 * The random points.
+	 */
+	private int[] pointsX;
+	private int[] pointsY;
+
+	/**
+	 * The index of the next point.
+	 */
+	private int next;
+
+	/**
+	 * Creates the place and the points.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		int[] sitesX = new int[nbSites];
+		int[] sitesY = new int[nbSites];
+		for (int s = 0; s < nbSites; s++) {
+			sitesX[s] = random.nextInt(WIDTH);
+			sitesY[s] = random.nextInt(HEIGHT);
+		}
+		place = new FlowField(WIDTH, HEIGHT, false);
+		place.setSites(sitesX, sitesY, nbSites);
+
+		pointsX = new int[NB_POINTS];
+		pointsY = new int[NB_POINTS];
+		for (int i = 0; i < NB_POINTS; i++) {
+			pointsX[i] = random.nextInt(WIDTH);
+			pointsY[i] = random.nextInt(HEIGHT);
+		}
+	}
+
+	/**
+	 * Searches the nearest site of the next point.
+	 * @return the index of the site
+	 */
+	@Benchmark
+	public int nearestSite() {
+		int i = next++ & (NB_POINTS - 1);
+		return place.getNearestSite(pointsX[i], pointsY[i]);
+	}
+
+	/**
+	 * Reads the downhill directions of the next point.
+	 * @return the bitmask of the directions
+	 */
+	@Benchmark
+	public int downhill() {
+		int i = next++ & (NB_POINTS - 1);
+		return place.getDownhill(pointsX[i], pointsY[i]);
+	}
+}
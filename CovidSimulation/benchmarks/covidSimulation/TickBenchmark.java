@@ -0,0 +1,74 @@
+package covidSimulation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a whole tick (the status phase then the movement phase) for several densities of people.
+ * The world is created again before each iteration, so that every iteration measures the same part of the epidemic.
+ * @author Natacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+	/**
+	 * The number of people divided by the number of cells.
+	 */
+	@Param({"0.05", "0.2", "0.5", "0.8"})
+	public double density;
+
+	/**
+	 * True if the distancing strategy is activated.
+	 */
+	@Param({"false", "true"})
+	public boolean distancing;
+
+	/**
+	 * The grid size.
+	 */
+	@Param({"200"})
+	public int gridSize;
+
+	/**
+	 * The population.
+	 */
+	private Population population;
+
+	/**
+	 * Creates the world.
+	 * @throws Exception if the parameters file can not be read
+	 */
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		population = new BenchmarkWorld(gridSize, gridSize, density, distancing).population;
+	}
+
+	/**
+	 * Computes one tick.
+	 * @return the number of active people, so that the tick is not optimised away
+	 */
+	@Benchmark
+	public int tick() {
+		population.computeNextStatuses();
+		population.computeNextPositionsAndApply();
+		return population.getActiveCount();
+	}
+}
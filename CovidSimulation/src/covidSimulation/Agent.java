@@ -2,22 +2,18 @@ package covidSimulation;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
-import repast.simphony.context.Context;
-import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.schedule.ISchedule;
-import repast.simphony.engine.schedule.ScheduledMethod;
-import repast.simphony.space.grid.Grid;
 import repast.simphony.space.grid.GridPoint;
-import repast.simphony.util.ContextUtils;
 
 /**
- * Super-class of all agents.
- * Each agent is defined by his current status, his goal (school, shopping, random...), his next status,
- * his next position, his age, if he has increased risk for medical conditions, if he wears a mask.
- * Some static variables are also defined :
+ * A person of the simulation.
+ * The epidemiological state of an agent changes in place : when he is infected, recovers or dies,
+ * only his status is modified, the agent stays the same object in the context.
+ * An agent is a thin view on one person of the Population : his current status, his goal (school, shopping, random...),
+ * his next status, his next position, his age, if he has increased risk for medical conditions, if he wears a mask
+ * are stored in the arrays of the Population, at the index given by the id of the agent.
+ * The static methods give access to the scenario of the simulation run by Repast :
  * - the probability of being infected when an infected agent is in the neighborhood
  * - the probability of recovering when infected
  * - the strategies to apply for this simulation
@@ -25,52 +21,22 @@ import repast.simphony.util.ContextUtils;
  * @author Natacha
  *
  */
-public abstract class Agent {
+public class Agent {
 	
 	/**
-	 * The current status of this agent : susceptible, infected, infected without symptoms, recovered or deceased.
+	 * The population storing the attributes of this agent.
 	 */
-	protected int status;
+	protected final Population population;
 	
 	/**
-	 * The goal of this agent (school, hospital, shopping, no goal).
+	 * The id of this agent in the population.
 	 */
-	int goal;
+	protected final int id;
 	
 	/**
-	 * The next status given the neighborhood and the status of the agent.
+	 * The scenario of the simulation run by Repast : probabilities, strategies and total number of deaths.
 	 */
-	protected int nextStatus;
-	
-	/**
-	 * The next position depending on the goal.
-	 */
-	protected GridPoint nextPosition;
-	
-	/**
-	 * Age of the agent.
-	 */
-	int age;
-	
-	/**
-	 * Boolean indicating if the person is at-risk, because of certain medical conditions.
-	 */
-	boolean atIncreasedRisk;
-	
-	/**
-	 * Boolean indicating if the agent wears a mask.
-	 */
-	boolean hasMask;
-	
-	/**
-	 * Probability of being infected when an infected agent is in the neighborhood.
-	 */
-	protected static float probInf;
-
-	/**
-	 * Probability of recovering when infected. The probability of decease equals 1-probRec.
-	 */
-	protected static float probRec;
+	private static Scenario scenario = new Scenario();
 	
 	/**
 	 * The constants representing the status.
@@ -90,36 +56,41 @@ public abstract class Agent {
 	public static final int HOSPITAL_GOAL = 3;
 	
 	/**
-	 * The total number of deceased agents.
+	 * Factor to decrease the risk of being infected when wearing a mask.
 	 */
-	private static int countTotalDeaths = 0;
+	static double FACTOR_WITH_MASK = 0.3;
 	
 	/**
-	 * The different strategies of limitation.
+	 * The probability to be infected and has symptoms.
 	 */
-	private static boolean distancing = false;
-	private static boolean infectedIsolation = false;
-	private static boolean lockdown = false;
-	private static boolean curfew = false;
-	private static boolean mask = false;
-
+	static double PROBA_INFECTED_WITH_SYMPTOMS = 0.5;
+	
 	/**
-	 * Factor to decrease the risk of being infected when wearing a mask.
+	 * Number of ticks the person stays infected, with or without symptoms.
 	 */
-	static double FACTOR_WITH_MASK = 0.3;
+	static int MAX_TIME_OF_INFECTION_WITH_SYMPTOMS = 14;
+	static int MAX_TIME_OF_INFECTION_WITHOUT_SYMPTOMS = 7;
+	
+	/**
+	 * Factors used to compute the contamination probability. It is greater than 1 to increase
+	 * the probability when the agent has symptoms, less than 1 to decrease the probability when he has no symptoms.
+	 */
+	static double FACTOR_WITH_SYMPTOMS = 1.1;
+	static double FACTOR_WITHOUT_SYMPTOMS = 0.9;
+	
+	/**
+	 * A deceased agent disappears after 3 ticks.
+	 */
+	static int TIME_APPEARANCE = 3;
 
 	/**
 	 * Constructor
-	 * @param goal the goal of the agent
-	 * @param age the age of the agent
-	 * @param atRisk a boolean equal to true if this agent has an increased risk due to medical conditions
-	 * @param hasMask a boolean equal to true if the agent wears a mask
+	 * @param population the population storing the attributes of the agent
+	 * @param id the id of the agent in the population
 	 */
-	public Agent(int goal, int age, boolean atRisk, boolean hasMask) {
-		this.goal = goal;
-		this.age = age;
-		this.atIncreasedRisk = atRisk;
-		this.hasMask = hasMask;
+	public Agent(Population population, int id) {
+		this.population = population;
+		this.id = id;
 	}
 	
 	/**
@@ -127,7 +98,7 @@ public abstract class Agent {
 	 * @param probInf the probability of contamination
 	 */
 	public static void setProbInf(float probInf) {
-		Agent.probInf = probInf;
+		scenario.setProbInf(probInf);
 	}
 
 	/**
@@ -135,161 +106,78 @@ public abstract class Agent {
 	 * @param probRec the probability of recovering
 	 */
 	public static void setProbRec(float probRec) {
-		Agent.probRec = probRec;
+		scenario.setProbRec(probRec);
+	}
+
+	/**
+	 * Returns the scenario of the simulation run by Repast.
+	 * @return the scenario
+	 */
+	public static Scenario getScenario() {
+		return scenario;
+	}
+
+	/**
+	 * Sets the scenario of the simulation run by Repast.
+	 * @param scenario the scenario
+	 */
+	public static void setScenario(Scenario scenario) {
+		Agent.scenario = scenario;
 	}
 
 	/**
 	 * Computes the next status according to the neighborhood and the current status of the agent.
-	 * This method must be called for each agent before modifying really the status and the position.
-	 * The priority is thus higher than computeNextPositionAndApply.
+	 * The status of all agents is computed by Population.computeNextStatuses, which sweeps the population
+	 * before modifying really the status and the position.
 	 */
-	@ScheduledMethod(start = 1, interval = 1, priority = 2)
-	public abstract void computeNextStatus();
+	public void computeNextStatus() {
+		population.computeNextStatus(id);
+	}
 
 	/**
 	 * Computes the next position depending on the goal. If the goal is random,
 	 * then choose a free position in the neighborhood randomly.
 	 * Otherwise, choose a free position to move towards the goal.
 	 * The next status must have been previously computed.
-	 * The priority is thus lower than computeNextStatus.
 	 */
-	@ScheduledMethod(start = 1, interval = 1, priority = 1)
-	public abstract void computeNextPositionAndApply();
+	public void computeNextPositionAndApply() {
+		population.computeNextPositionAndApply(id);
+	}
 	
 	/**
-	 * Returns the display color of the agent
+	 * Returns the display color of the agent, depending on his current status.
 	 * @return the color to use to display this agent
 	 */
-	public abstract Color getColor();
+	public Color getColor() {
+		switch (getStatus()) {
+			case SUSCEPTIBLE_STATUS:
+				return Color.CYAN;
+			case INFECTED_WITH_SYMPTOMS_STATUS:
+				return Color.RED;
+			case INFECTED_WITHOUT_SYMPTOMS_STATUS:
+				return Color.PINK;
+			case RECOVERED_STATUS:
+				return Color.GREEN;
+			default:
+				return Color.BLACK;
+		}
+	}
 	
 	/**
 	 * Computes next position (distance of moving is 1 and only on a free cell).
-	 * Stores it it nextPosition.
+	 * Stores it in the population.
 	 */
 	void computeNextPosition() {
-		
-		// If there is a lockdown or if there is a curfew and the current time is in the curfew, the agent does not move.
-		// Otherwise, compute the next position according to his goal.
-		if (! Agent.isLockdown()) {
-			
-			if (! Agent.isCurfew() || ! mustNotMove()) {
-		
-				ArrayList<GridPoint> possiblePointsList;
-				
-				switch (goal) {
-		        	case RANDOM_GOAL:  
-		        		possiblePointsList = moveRandomly();
-		        		break;
-		        	case SCHOOL_GOAL:  
-		        		possiblePointsList = moveTowardsSchool();
-		        		break;
-		        	case HOSPITAL_GOAL:  
-		        		possiblePointsList = moveTowardsHospital();
-		        		break;
-		        	case SHOPPING_GOAL:  
-		        		possiblePointsList = moveTowardsShoppingCenter();
-		        		break;
-		        	default:
-		        		possiblePointsList = moveRandomly();
-		        		break;
-				}
-				
-				if (possiblePointsList.size() > 0) {
-					if (! Agent.isDistancing()) {
-						// Shuffle the points to avoid taking always the same direction...
-						Collections.shuffle(possiblePointsList);
-						
-						// If the list of possible points is empty, then we don't update the next position. The agent will not move.
-						if (possiblePointsList.size() > 0)
-							nextPosition = possiblePointsList.get(0); 
-					}
-					else {
-						// If distancing is enabled, choose the point with the lower number of direct neighbors
-						int minNeighbours = 10;
-						List<GridPoint> list = new ArrayList<GridPoint>();
-						for (int i = 0; i < possiblePointsList.size(); i++) {
-							GridPoint p = possiblePointsList.get(i);
-							int nbNeighbours = getNbNeighbours(p);
-							if (nbNeighbours < minNeighbours) {
-								minNeighbours = nbNeighbours;
-								list = new ArrayList<GridPoint>();
-								list.add(p);
-							}
-							else if (nbNeighbours == minNeighbours) {
-								list.add(p);
-							}
-						}
-						
-						Collections.shuffle(list);
-						
-						//if (list.size() > 0)
-						nextPosition = list.get(0); 
-						
-					}
-				}
-				else { // No possible point to move, the agent stays at the same position.
-					Context context = ContextUtils.getContext(this);
-					Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-					GridPoint gpt = grid.getLocation(this);
-					nextPosition = gpt;
-				}
-			}
-			// There is a curfew and the current time is in the curfew, the agent don't move.
-			else {
-				Context context = ContextUtils.getContext(this);
-				Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-				GridPoint gpt = grid.getLocation(this);
-				nextPosition = gpt;
-			}
-		}
-		else { // Don't move because of lockdown
-			Context context = ContextUtils.getContext(this);
-			Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-			GridPoint gpt = grid.getLocation(this);
-			nextPosition = gpt;
-		}
+		population.computeNextPosition(id);
 	}
 	
+	/**
+	 * Returns the number of occupied cells around the specified point.
+	 * @param p the point
+	 * @return the number of direct neighbours of this point
+	 */
 	int getNbNeighbours(GridPoint p) {
-		int nbNeighbours = 0;
-		
-		Context context = ContextUtils.getContext(this);
-		Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-		
-		int x = p.getX();
-		int y = p.getY();
-		
-		if (x+1 < grid.getDimensions().getWidth()) { 
-			if  (grid.getObjectAt(x+1, y) != null)
-				nbNeighbours++;
-			if (y+1 < grid.getDimensions().getHeight())
-				if  (grid.getObjectAt(x+1, y+1) != null) // Checks that cell is free
-					nbNeighbours++;
-			if (y-1 >= 0)
-				if  (grid.getObjectAt(x+1, y-1) != null) // Checks that cell is free
-					nbNeighbours++;
-		}
-		if (x-1 >= 0) {
-			if  (grid.getObjectAt(x-1, y) != null) // Checks that cell is free
-				nbNeighbours++;
-			if (y+1 < grid.getDimensions().getHeight())
-				if  (grid.getObjectAt(x-1, y+1) != null) // Checks that cell is free
-					nbNeighbours++;
-			if (y-1 >= 0)
-				if  (grid.getObjectAt(x-1, y-1) != null) // Checks that cell is free
-					nbNeighbours++;
-		}
-	
-		if (y+1 < grid.getDimensions().getHeight())
-			if  (grid.getObjectAt(x, y+1) != null) // Checks that cell is free
-				nbNeighbours++;
-		
-		if (y-1 >= 0)
-			if  (grid.getObjectAt(x, y-1) != null) // Checks that cell is free
-				nbNeighbours++;
-		
-		return nbNeighbours;
-		
+		return population.getNbNeighbours(p.getX(), p.getY());
 	}
 	
 	/**
@@ -297,10 +185,7 @@ public abstract class Agent {
 	 * @return true if the time tick corresponds to the period of curfew
 	 */
 	boolean mustNotMove() {
-		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
-		double currentTime= schedule.getTickCount();
-
-		return ((currentTime % 24 > 22) || (currentTime % 24 < 8));
+		return population.mustNotMove();
 	}
 	
 	/**
@@ -308,45 +193,7 @@ public abstract class Agent {
 	 * @return an array of GridPoint objects corresponding to the possible points to move on.
 	 */
 	ArrayList<GridPoint> moveRandomly() {
-		Context context = ContextUtils.getContext(this);
-		Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-		GridPoint gpt = grid.getLocation(this);
-		int x = gpt.getX();
-		int y = gpt.getY();
-		
-		ArrayList<GridPoint> possiblePointsList = new ArrayList<GridPoint>();
-		
-		if (x+1 < grid.getDimensions().getWidth()) { 
-				if  (grid.getObjectAt(x+1, y) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x+1, y));
-				if (y+1 < grid.getDimensions().getHeight())
-					if  (grid.getObjectAt(x+1, y+1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x+1, y+1));
-				if (y-1 >= 0)
-					if  (grid.getObjectAt(x+1, y-1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x+1, y-1));
-		}
-		
-		if (x-1 >= 0) {
-			if  (grid.getObjectAt(x-1, y) == null) // Checks that cell is free
-				possiblePointsList.add(new GridPoint(x-1, y));
-			if (y+1 < grid.getDimensions().getHeight())
-				if  (grid.getObjectAt(x-1, y+1) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x-1, y+1));
-			if (y-1 >= 0)
-				if  (grid.getObjectAt(x-1, y-1) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x-1, y-1));
-		}
-		
-		if (y+1 < grid.getDimensions().getHeight())
-			if  (grid.getObjectAt(x, y+1) == null) // Checks that cell is free
-				possiblePointsList.add(new GridPoint(x, y+1));
-		
-		if (y-1 >= 0)
-			if  (grid.getObjectAt(x, y-1) == null) // Checks that cell is free
-				possiblePointsList.add(new GridPoint(x, y-1));
-
-		return possiblePointsList;
+		return population.moveRandomly(id);
 	}
 	
 	/**
@@ -355,140 +202,168 @@ public abstract class Agent {
 	 * @return the list of possible points to move
 	 */
 	public ArrayList<GridPoint>  moveTowards (GridPoint pt) {
-		Context context = ContextUtils.getContext(this);
-		Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-		// only move if we are not already in this grid location
-		GridPoint currentPos = grid.getLocation(this);
-		ArrayList<GridPoint> possiblePointsList = new ArrayList<GridPoint>();
-		int x = currentPos.getX();
-		int y = currentPos.getY();
-		
-		
-		if (!pt.equals (currentPos)) {
-			if (pt.getX() < x) {
-				if  (grid.getObjectAt(x-1,y) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x-1,y));
-				
-				if (pt.getY() > y) {
-					if  (grid.getObjectAt(x-1,y+1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x-1,y+1));
-				}
-				else if (pt.getY() < y) {
-					if  (grid.getObjectAt(x-1,y-1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x-1,y-1));
-				}
-			}
-			
-			if (pt.getX() > x) {
-				if  (grid.getObjectAt(x+1,y) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x+1,y));
-				
-				if (pt.getY() > y) {
-					if  (grid.getObjectAt(x+1,y+1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x+1,y+1));
-				}
-				else if (pt.getY() < y) {
-					if  (grid.getObjectAt(x+1,y-1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x+1,y-1));
-				}
-			}
-			
-			
-			if (pt.getY() < y) {
-				if  (grid.getObjectAt(x,y-1) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x,y-1));
-			}
-			if (pt.getY() > y) {
-				if  (grid.getObjectAt(x,y+1) == null) // Checks that cell is free
-					possiblePointsList.add(new GridPoint(x,y+1));
-			}
-			if (pt.getX() == x) {
-				if (pt.getY() > y) {
-					if  (grid.getObjectAt(x,y+1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x,y+1));
-				}
-				else { // y > pt.getY() because !=
-					if  (grid.getObjectAt(x,y-1) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x,y-1));
-				}
-			}
-			if (pt.getY() == y) {
-				if (pt.getX() > x) {
-					if  (grid.getObjectAt(x+1,y) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x+1,y));
-				}
-				else { // x > pt.getx() because !=
-					if  (grid.getObjectAt(x-1,y) == null) // Checks that cell is free
-						possiblePointsList.add(new GridPoint(x-1,y));
-				}
-			} 
-
-		}
-		
-		return possiblePointsList;
-		
+		return population.moveTowards(id, pt.getX(), pt.getY());
+	}
+	
+	/**
+	 * Returns the nearest site of a place.
+	 * @param goal the goal of the people going to the place (SCHOOL_GOAL, SHOPPING_GOAL or HOSPITAL_GOAL)
+	 * @return the location of the nearest site, null if the place has no site
+	 */
+	public GridPoint getNearestPlace(int goal) {
+		int px = population.x.get(id);
+		int py = population.y.get(id) + population.originY;
+		int site = population.getNearestPlaceSite(goal, px, py);
+		if (site < 0)
+			return null;
+		FlowField place = population.getPlace(goal);
+		return new GridPoint(place.getSiteX(site), place.getSiteY(site) - population.originY);
 	}
 	
 	/**
-	 * We assume that school is located in position (0,0) (top left corner).
-	 * @return the list of possible points to move towards school
+	 * By default, school is located in position (0,0) (top left corner).
+	 * @return the list of possible points to move towards the nearest school
 	 */
 	public ArrayList<GridPoint> moveTowardsSchool () {
-		GridPoint schoolPos = new GridPoint(0,0);
-		return moveTowards(schoolPos);
+		return population.moveTowardsSchool(id);
 	}
 	
 	/**
-	 * We assume that shopping center is located in position (0,height of grid - 1) (top right corner)
-	 * @return the list of possible points to move towards shopping center
+	 * By default, shopping center is located in position (width - 1,height - 1) (bottom right corner)
+	 * @return the list of possible points to move towards the nearest shopping center
 	 */
 	public ArrayList<GridPoint> moveTowardsShoppingCenter () {
-		Context context = ContextUtils.getContext(this);
-		Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-		GridPoint shoppingPos = new GridPoint(grid.getDimensions().getWidth()-1,grid.getDimensions().getHeight()-1);
-		return moveTowards(shoppingPos);
+		return population.moveTowardsShoppingCenter(id);
 	}
 	
 	
 	/**
-	 * We assume that school is located in position (width - 1,0) (bottom left corner).
-	 * @return the list of possible points to move towards hospital
+	 * By default, hospital is located at the center of the grid.
+	 * @return the list of possible points to move towards the nearest hospital
 	 */
 	public ArrayList<GridPoint> moveTowardsHospital () {
-		Context context = ContextUtils.getContext(this);
-		Grid<Agent> grid = (Grid<Agent>) context.getProjection("grid");
-		GridPoint hospitalPos = new GridPoint(grid.getDimensions().getWidth()/2,grid.getDimensions().getHeight()/2);
-		return moveTowards(hospitalPos);
+		return population.moveTowardsHospital(id);
 	}	
 	
 	/**
-	 * Returns a boolean stating if the agent wears a mask.
-	 * @return true if the agent wears a mask
+	 * Returns the occupied cells of the grid, to write custom movement rules.
+	 * @return the occupancy grid
 	 */
-	public boolean wearMask( ) {
-		return this.hasMask;
+	public OccupancyGrid getOccupancy() {
+		return population.getOccupancy();
 	}
-
+	
 	/**
-	 * Initializes the deaths counter to 0. Called at each initialization of the simulation.
+	 * Returns the id of this agent in the population.
+	 * @return the id of this agent
 	 */
-	public void initGlobalCounters() {
-		countTotalDeaths = 0;
+	public int getId() {
+		return this.id;
 	}
 	
 	/**
-	 * Returns the total number of deaths for the current simulation.
-	 * @return the total number of deaths
+	 * Returns the current status of this agent.
+	 * @return the current status
 	 */
-	public int getCountTotalDeaths() {
-		return countTotalDeaths;
+	public int getStatus() {
+		return population.getStatus(id);
+	}
+	
+	/**
+	 * Returns the goal of this agent.
+	 * @return the goal
+	 */
+	public int getGoal() {
+		return population.getGoal(id);
+	}
+	
+	/**
+	 * Returns the age of this agent.
+	 * @return the age
+	 */
+	public int getAge() {
+		return population.getAge(id);
+	}
+	
+	/**
+	 * Returns true if the agent is infected, with or without symptoms.
+	 * @return true if the agent is infected
+	 */
+	public boolean isInfected() {
+		return Population.isInfected(getStatus());
+	}
+	
+	/**
+	 * Returns the list of infected neighbours (the grid is "static", we don't count the neighbours "outside" the grid).
+	 * @return the list of infected neighbours of this agent.
+	 */
+	List<Agent> getListInfectedNeighbours() {
+		int[] neighbours = new int[8];
+		int nbInfected = population.getInfectedNeighbours(id, neighbours);
+		
+		List<Agent> listInfected = new ArrayList<Agent>();
+		for (int i = 0; i < nbInfected; i++)
+			listInfected.add(population.views[neighbours[i]]);
+		
+		return listInfected;
+	}
+	
+	/**
+	 * Returns the number of people contaminated by this agent since his infection. Used to compute R0.
+	 * @return the number of people contaminated by this agent
+	 */
+	public int getNumberOfPeopleContaminated() {
+		return population.contaminated.get(id);
+	}
+	
+	/**
+	 * Returns the contamination probability of this infected agent, adjusted with the fact that he has symptoms
+	 * or not and wears the mask or not.
+	 * @return the contamination probability
+	 */
+	public double computeContaminationProb() {
+		return population.computeContaminationProb(id);
+	}
+	
+	/**
+	 * Returns the time of infection of an infected agent. When the maximum time of infection is reached,
+	 * the agent recovers or dies.
+	 * @return the number of ticks since the infection
+	 */
+	public int getCountTimeOfInfection() {
+		return isInfected() ? population.getTimer(id) : 0;
+	}
+	
+	/**
+	 * Returns the remaining number of ticks before a deceased agent disappears.
+	 * @return the remaining time of appearance
+	 */
+	public int getTimeAppearance() {
+		return getStatus() == DECEASED_STATUS ? population.getTimer(id) : 0;
+	}
+	
+	/**
+	 * Returns true if the agent has an increased risk due to medical conditions.
+	 * @return true if the agent is at increased risk
+	 */
+	public boolean isAtIncreasedRisk() {
+		return population.isAtRisk(id);
 	}
 	
 	/**
-	 * Increments the total number of deaths.
+	 * Returns a boolean stating if the agent wears a mask.
+	 * @return true if the agent wears a mask
+	 */
+	public boolean wearMask( ) {
+		return population.hasMask(id);
+	}
+
+	/**
+	 * Returns the total number of deaths for the simulation of this agent.
+	 * @return the total number of deaths
 	 */
-	public void incrementCountTotalDeaths() {
-		countTotalDeaths++;
+	public int getCountTotalDeaths() {
+		return (int) population.statistics.getNbDeaths();
 	}
 	
 	/**
@@ -496,7 +371,7 @@ public abstract class Agent {
 	 * @return true if the distancing strategy is activated.
 	 */
 	public static boolean isDistancing() {
-		return distancing;
+		return scenario.isDistancing();
 	}
 
 	/**
@@ -504,7 +379,7 @@ public abstract class Agent {
 	 * @param distancing a boolean stating if the distancing strategy is activated.
 	 */
 	public static void setDistancing(boolean distancing) {
-		Agent.distancing = distancing;
+		scenario.setDistancing(distancing);
 	}
 
 	/**
@@ -512,7 +387,7 @@ public abstract class Agent {
 	 * @return true if the isolation of infected agents strategy is activated.
 	 */
 	public static boolean isInfectedIsolation() {
-		return infectedIsolation;
+		return scenario.isInfectedIsolation();
 	}
 
 	/**
@@ -520,7 +395,7 @@ public abstract class Agent {
 	 * @param infectedIsolation a boolean stating if the strategy of isolation of infected agents is activated.
 	 */
 	public static void setInfectedIsolation(boolean infectedIsolation) {
-		Agent.infectedIsolation = infectedIsolation;
+		scenario.setInfectedIsolation(infectedIsolation);
 	}
 
 	/**
@@ -528,7 +403,7 @@ public abstract class Agent {
 	 * @return true if the lockdown strategy is activated.
 	 */
 	public static boolean isLockdown() {
-		return lockdown;
+		return scenario.isLockdown();
 	}
 
 	/**
@@ -536,7 +411,7 @@ public abstract class Agent {
 	 * @param lockdown true if the lockdown strategy is activated.
 	 */
 	public static void setLockdown(boolean lockdown) {
-		Agent.lockdown = lockdown;
+		scenario.setLockdown(lockdown);
 	}
 
 	/**
@@ -544,7 +419,7 @@ public abstract class Agent {
 	 * @return true if the curfew strategy is activated.
 	 */
 	public static boolean isCurfew() {
-		return curfew;
+		return scenario.isCurfew();
 	}
 
 	/**
@@ -552,7 +427,7 @@ public abstract class Agent {
 	 * @param curfew true if the curfew strategy is activated.
 	 */
 	public static void setCurfew(boolean curfew) {
-		Agent.curfew = curfew;
+		scenario.setCurfew(curfew);
 	}
 
 	/**
@@ -560,7 +435,7 @@ public abstract class Agent {
 	 * @return true if the mask strategy is activated.
 	 */
 	public static boolean isMask() {
-		return mask;
+		return scenario.isMask();
 	}
 
 	/**
@@ -568,7 +443,7 @@ public abstract class Agent {
 	 * @param mask true if the mask strategy is activated.
 	 */
 	public static void setMask(boolean mask) {
-		Agent.mask = mask;
+		scenario.setMask(mask);
 	}
 
 }
@@ -0,0 +1,83 @@
+package covidSimulation;
+
+/**
+ * Random permutation of the cells of the grid, derived from a seed : the i-th agent is placed in the cell
+ * permute(i), so that the agents are placed in distinct cells in O(1) each, whatever the density, and without
+ * storing anything. Every store of a split simulation computes the same placement.
+ * The permutation is a Feistel network on the smallest power of 4 greater than the number of cells, the values
+ * outside the grid being skipped by walking the cycle (the network is a bijection, so the walk ends).
+ * @author Natacha
+ *
+ */
+public class CellPermutation {
+
+	/**
+	 * The number of rounds of the Feistel network.
+	 */
+	private static final int NB_ROUNDS = 4;
+
+	/**
+	 * The number of cells.
+	 */
+	private final long nbCells;
+
+	/**
+	 * The number of bits of each half of the values.
+	 */
+	private final int halfBits;
+
+	/**
+	 * The mask of a half.
+	 */
+	private final long halfMask;
+
+	/**
+	 * The keys of the rounds.
+	 */
+	private final long[] keys = new long[NB_ROUNDS];
+
+	/**
+	 * Constructor.
+	 * @param nbCells the number of cells (width * height)
+	 * @param seed the seed of the permutation
+	 */
+	public CellPermutation(long nbCells, long seed) {
+		this.nbCells = nbCells;
+		int bits = 2;
+		while ((1L << bits) < nbCells)
+			bits += 2;
+		this.halfBits = bits / 2;
+		this.halfMask = (1L << halfBits) - 1;
+		for (int i = 0; i < NB_ROUNDS; i++)
+			keys[i] = RandomStreams.mix64(seed + 0x632be59bd9b4e019L * (i + 1));
+	}
+
+	/**
+	 * Returns the cell of the i-th element of the permutation.
+	 * @param i the index, between 0 and nbCells - 1
+	 * @return the index of the cell (y * width + x)
+	 */
+	public long permute(long i) {
+		long v = i;
+		do {
+			v = encrypt(v);
+		} while (v >= nbCells);
+		return v;
+	}
+
+	/**
+	 * One pass of the Feistel network.
+	 * @param v the value
+	 * @return the permuted value
+	 */
+	private long encrypt(long v) {
+		long left = v >>> halfBits;
+		long right = v & halfMask;
+		for (int i = 0; i < NB_ROUNDS; i++) {
+			long next = left ^ (RandomStreams.mix64(right ^ keys[i]) & halfMask);
+			left = right;
+			right = next;
+		}
+		return (left << halfBits) | right;
+	}
+}
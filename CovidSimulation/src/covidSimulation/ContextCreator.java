@@ -1,16 +1,29 @@
 package covidSimulation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
 
 import repast.simphony.context.Context;
 import repast.simphony.context.space.grid.GridFactory;
 import repast.simphony.context.space.grid.GridFactoryFinder;
 import repast.simphony.dataLoader.ContextBuilder;
 import repast.simphony.engine.environment.RunEnvironment;
+import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.parameter.Parameters;
 import repast.simphony.space.grid.Grid;
 import repast.simphony.space.grid.GridBuilderParameters;
-import repast.simphony.space.grid.RandomGridAdder;
+import repast.simphony.space.grid.GridPointTranslator;
+import repast.simphony.space.grid.SimpleGridAdder;
 import repast.simphony.space.grid.WrapAroundBorders;
 
 /**
@@ -32,6 +45,21 @@ public class ContextCreator implements ContextBuilder<Agent> {
 	 */
 	int gridHeight;
 	
+	/**
+	 * True to store only the occupied cells of the grid (for huge grids with few agents).
+	 */
+	boolean sparseGrid;
+	
+	/**
+	 * True to store the world outside the heap.
+	 */
+	boolean offHeap;
+	
+	/**
+	 * The directory of the files mapped in memory of the world stored outside the heap (empty for direct buffers).
+	 */
+	String offHeapDirectory;
+	
 	/**
 	 * The number of susceptible agents at the beginning of the simulation.
 	 */
@@ -77,6 +105,16 @@ public class ContextCreator implements ContextBuilder<Agent> {
 	 */
 	ArrayList<Integer> limitationStrategies;
 	
+	/**
+	 * The settings of the simulation (probabilities and strategies), read from the parameters.
+	 */
+	Scenario scenario;
+	
+	/**
+	 * The file of the sites of the attractive places (empty for one site of each place).
+	 */
+	String placesFile;
+	
 	/**
 	 * Possible values for movement scenario.
 	 */
@@ -85,6 +123,13 @@ public class ContextCreator implements ContextBuilder<Agent> {
 	static int ATTRACTIVE_PLACES = 2;
 	static String ATTRACTIVE_PLACES_STR = "Attractive_places";
 	
+	/**
+	 * Names of the places in the file of the sites.
+	 */
+	static String SCHOOL_STR = "School";
+	static String SHOPPING_STR = "Shopping";
+	static String HOSPITAL_STR = "Hospital";
+	
 	/**
 	 * Possible values for limitation strategies.
 	 */
@@ -101,6 +146,11 @@ public class ContextCreator implements ContextBuilder<Agent> {
 	static int STRATEGY_ISOLATE_INFECTED = 5;
 	static String ISOLATE_STR = "Isolation_of_infected_people";
 	
+	/**
+	 * The number of people whose cells and attributes are drawn together by createPeople.
+	 */
+	static int BATCH_SIZE = 1 << 16;
+	
 	/**
 	 * Maximum age.
 	 */
@@ -116,146 +166,366 @@ public class ContextCreator implements ContextBuilder<Agent> {
 		context.setId("CovidSimulation");
 		
 		Parameters params = RunEnvironment.getInstance().getParameters();
+		readParameters(params::getValue);
+		Agent.setScenario(scenario);
+		
+		GridFactory gridFactory = GridFactoryFinder.createGridFactory(null);
+		GridPointTranslator borders = new WrapAroundBorders();  // Manage limits of the grid
+		Grid<Agent> grid = gridFactory.createGrid("grid", context,  // "grid" is the name used in the xml file
+				new GridBuilderParameters<Agent>(borders,
+						new SimpleGridAdder<Agent>(), false, gridWidth, gridHeight));
+		
+		// The attributes of all the agents are stored in the population, the agents of the context are only views.
+		// All the random decisions are drawn from streams derived from the seed, so that a run can be reproduced.
+		long seed = params.getInteger("randomSeed");
+		
+		// The attributes can be stored outside the heap : in direct buffers, or in files mapped in memory.
+		WorldStorage storage = WorldStorage.HEAP;
+		try {
+			storage = createStorage();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		Population population = new Population(context, grid, numberOfSusceptibleAgents + numberOfInfectedAgents,
+				seed, scenario, sparseGrid, storage);
+		
+		// The attractive places can have several sites : the agents go to the nearest one.
+		try {
+			createPlaces(population);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		// The phases of each tick can be run on several threads, and the people are created on these threads.
+		population.setNumberOfThreads(params.getInteger("numberOfThreads"));
+		
+		// The agents are placed with a permutation of the cells, which never looks for a free cell.
+		createPeople(population, seed, 0, gridHeight);
 		
-		gridWidth = params.getInteger("gridWidth");
-		gridHeight = params.getInteger("gridHeight");
-		numberOfSusceptibleAgents = params.getInteger("numberOfSusceptibleAgents");
-		numberOfInfectedAgents = params.getInteger("numberOfInfectedAgents");
-		probInf = params.getFloat("probInf");
-		probRec = params.getFloat("probRec");
-		probHealthy = params.getFloat("probHealthy");
-		probElderly = params.getFloat("probElderly");
-		probDocility = params.getFloat("probDocility");
+		// In push mode, the infected agents scatter their contribution into an infection pressure field.
+		population.setPushInfection(params.getBoolean("pushInfection"));
 		
-		Agent.setProbInf(probInf);
-		Agent.setProbRec(probRec);
+		// On large grids, the parallel engine computes the people tile by tile.
+		// The moves never cross the borders of the grid, even if the grid wraps around : the tiles of opposite edges
+		// do not touch.
+		population.setTileSize(params.getInteger("tileSize"), false);
 		
-		String movementScenarioStr = RunEnvironment.getInstance().getParameters().getString("scenarioMvt");
+		// The run can continue a run saved in a snapshot, instead of starting from the people created above.
+		// If the snapshot can not be restored, the run stops : it must not look like a continued run.
+		String restoreFile = params.getString("restoreFile");
+		if (restoreFile != null && !restoreFile.isEmpty()) {
+			try {
+				Snapshot.restore(population, Paths.get(restoreFile));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Can not restore the snapshot " + restoreFile, e);
+			}
+		}
+		
+		// The ticks can be measured, the metrics are exposed through JMX and on a local port.
+		int metricsPort = params.getInteger("metricsPort");
+		if (metricsPort != 0) {
+			try {
+				TickMetrics metrics = new TickMetrics();
+				metrics.register("CovidSimulation");
+				if (metricsPort > 0)
+					metrics.startEndpoint(metricsPort);
+				population.setMetrics(metrics);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		
+		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+		
+		// The counters of each tick are recorded in a binary time series.
+		String outputFile = params.getString("outputFile");
+		if (outputFile != null && !outputFile.isEmpty()) {
+			try {
+				TimeSeriesRecorder recorder = new TimeSeriesRecorder(population, Paths.get(addTimeStamp(outputFile)));
+				schedule.schedule(ScheduleParameters.createRepeating(1, 1, ScheduleParameters.LAST_PRIORITY), recorder, "record");
+				schedule.schedule(ScheduleParameters.createAtEnd(ScheduleParameters.LAST_PRIORITY), recorder, "close");
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		// The whole state of the simulation can be saved at the end of a tick.
+		String checkpointFile = params.getString("checkpointFile");
+		int checkpointTick = params.getInteger("checkpointTick");
+		if (checkpointFile != null && !checkpointFile.isEmpty() && checkpointTick > 0)
+			schedule.schedule(ScheduleParameters.createOneTime(checkpointTick, ScheduleParameters.LAST_PRIORITY),
+					population, "saveSnapshot", checkpointFile);
+		
+		// The status phase and the movement phase of each tick are sweeps over the population.
+		schedule.schedule(population);
+		schedule.schedule(ScheduleParameters.createAtEnd(ScheduleParameters.LAST_PRIORITY), population, "dispose");
+
+		
+		System.out.println("********************* END CONTEXT INITIALIZATION ***********************");
+
+		return context;
+	}
+	
+	/**
+	 * Adds the date and the time before the extension of a file name, so that each run writes its own file.
+	 * @param fileName the file name
+	 * @return the file name with the date and the time
+	 */
+	static String addTimeStamp(String fileName) {
+		String timeStamp = new SimpleDateFormat("yyyy.MM.dd.HH_mm_ss").format(new Date());
+		int dot = fileName.lastIndexOf('.');
+		if (dot <= Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')))
+			return fileName + "_" + timeStamp;
+		return fileName.substring(0, dot) + "_" + timeStamp + fileName.substring(dot);
+	}
+	
+	/**
+	 * Reads the parameters of the simulation and creates the scenario : the probabilities and the strategies of the agents.
+	 * The parameters can come from Repast or from a run without Repast.
+	 * @param params gives the value of each parameter from its name
+	 */
+	void readParameters(Function<String, Object> params) {
+		gridWidth = ((Number) params.apply("gridWidth")).intValue();
+		gridHeight = ((Number) params.apply("gridHeight")).intValue();
+		sparseGrid = Boolean.TRUE.equals(params.apply("sparseGrid"));
+		offHeap = Boolean.TRUE.equals(params.apply("offHeap"));
+		offHeapDirectory = (String) params.apply("offHeapDirectory");
+		numberOfSusceptibleAgents = ((Number) params.apply("numberOfSusceptibleAgents")).intValue();
+		numberOfInfectedAgents = ((Number) params.apply("numberOfInfectedAgents")).intValue();
+		probInf = ((Number) params.apply("probInf")).floatValue();
+		probRec = ((Number) params.apply("probRec")).floatValue();
+		probHealthy = ((Number) params.apply("probHealthy")).floatValue();
+		probElderly = ((Number) params.apply("probElderly")).floatValue();
+		probDocility = ((Number) params.apply("probDocility")).floatValue();
+		
+		scenario = new Scenario();
+		scenario.setProbInf(probInf);
+		scenario.setProbRec(probRec);
+		
+		placesFile = (String) params.apply("placesFile");
+		
+		String movementScenarioStr = (String) params.apply("scenarioMvt");
 		if (movementScenarioStr.equals(RANDOM_MVT_STR))
 			movementScenario = 1;
 		else movementScenario = 2;
 	
-		String strategy1 = RunEnvironment.getInstance().getParameters().getString("limitationStrategy1");
-		String strategy2 = RunEnvironment.getInstance().getParameters().getString("limitationStrategy2");
-		String strategy3 = RunEnvironment.getInstance().getParameters().getString("limitationStrategy3");
+		String strategy1 = (String) params.apply("limitationStrategy1");
+		String strategy2 = (String) params.apply("limitationStrategy2");
+		String strategy3 = (String) params.apply("limitationStrategy3");
 
 		if (strategy1.equals(MASK_STR) || strategy2.equals(MASK_STR) || strategy3.equals(MASK_STR))
-			Agent.setMask(true);
-		else Agent.setMask(false);
+			scenario.setMask(true);
+		else scenario.setMask(false);
 
 		if (strategy1.equals(DISTANCING_STR) || strategy2.equals(DISTANCING_STR) || strategy3.equals(DISTANCING_STR))
-			Agent.setDistancing(true);
-		else Agent.setDistancing(false);
+			scenario.setDistancing(true);
+		else scenario.setDistancing(false);
 		
 		if (strategy1.equals(CURFEW_STR) || strategy2.equals(CURFEW_STR) || strategy3.equals(CURFEW_STR))
-			Agent.setCurfew(true);
-		else Agent.setCurfew(false);
+			scenario.setCurfew(true);
+		else scenario.setCurfew(false);
 		
 		if (strategy1.equals(LOCKDOWN_STR) || strategy2.equals(LOCKDOWN_STR) || strategy3.equals(LOCKDOWN_STR))
-			Agent.setLockdown(true);
-		else Agent.setLockdown(false);
+			scenario.setLockdown(true);
+		else scenario.setLockdown(false);
 		
 		if (strategy1.equals(ISOLATE_STR) || strategy2.equals(ISOLATE_STR) || strategy3.equals(ISOLATE_STR))
-			Agent.setInfectedIsolation(true);
-		else Agent.setInfectedIsolation(false);
-		
-		GridFactory gridFactory = GridFactoryFinder.createGridFactory(null);
-		Grid<Agent> grid = gridFactory.createGrid("grid", context,  // "grid" is the name used in the xml file
-				new GridBuilderParameters<Agent>(new WrapAroundBorders(),  // Manage limits of the grid
-						new RandomGridAdder<Agent>(), false, gridWidth, gridHeight));
-		
-		int age;
-		boolean atRisk;
-				
-		int goal = Agent.RANDOM_GOAL;
+			scenario.setInfectedIsolation(true);
+		else scenario.setInfectedIsolation(false);
+	}
+	
+	/**
+	 * Creates the memory where the world of a population is stored : the heap, direct buffers, or files mapped
+	 * in memory in the offHeapDirectory. With Repast, the views of the agents and the Repast grid stay on the heap.
+	 * @return the storage, owned by the population
+	 * @throws IOException if the directory can not be created
+	 */
+	WorldStorage createStorage() throws IOException {
+		if (!offHeap)
+			return WorldStorage.HEAP;
+		if (offHeapDirectory == null || offHeapDirectory.isEmpty())
+			return WorldStorage.direct();
+		return WorldStorage.mapped(Paths.get(offHeapDirectory));
+	}
+	
+	/**
+	 * Sets the sites of the attractive places read from the file of the sites, if there is one. Each line of the file
+	 * gives a site : the name of the place (School, Shopping or Hospital) and the coordinates of the site
+	 * in the whole grid, separated by commas. The empty lines and the lines starting with # are ignored.
+	 * A place without any site in the file keeps its default site.
+	 * @param population the population
+	 * @throws IOException if the file can not be read
+	 */
+	void createPlaces(Population population) throws IOException {
+		if (placesFile == null || placesFile.isEmpty())
+			return;
 		
-		for (int nb = 0; nb < numberOfSusceptibleAgents; nb++) {
+		int[][] sitesX = new int[Agent.HOSPITAL_GOAL + 1][16];
+		int[][] sitesY = new int[Agent.HOSPITAL_GOAL + 1][16];
+		int[] nbSites = new int[Agent.HOSPITAL_GOAL + 1];
+		int lineNumber = 0;
+		for (String line : Files.readAllLines(Paths.get(placesFile), StandardCharsets.UTF_8)) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			
+			String[] fields = line.split(",");
+			int goal;
+			if (fields.length != 3)
+				goal = -1;
+			else if (fields[0].trim().equals(SCHOOL_STR))
+				goal = Agent.SCHOOL_GOAL;
+			else if (fields[0].trim().equals(SHOPPING_STR))
+				goal = Agent.SHOPPING_GOAL;
+			else if (fields[0].trim().equals(HOSPITAL_STR))
+				goal = Agent.HOSPITAL_GOAL;
+			else goal = -1;
+			if (goal < 0)
+				throw new IOException(placesFile + ":" + lineNumber + " : expected place, x, y");
+			
+			int n = nbSites[goal]++;
+			if (n == sitesX[goal].length) {
+				sitesX[goal] = Arrays.copyOf(sitesX[goal], n * 2);
+				sitesY[goal] = Arrays.copyOf(sitesY[goal], n * 2);
+			}
 			try {
-							
-				double ageRand = Math.random();
-				
-				if (ageRand < probElderly) {
-					// Generate age between 65 and MAX_AGE
-					age = (int) (Math.random() * (MAX_AGE - 65) + 65);
-				}
-				else {
-					// Generate age between 0 and 64
-					age = (int) (Math.random() * 64);
-					
-				}
-				
-				double atRiskRand = Math.random();
-				
-				atRisk = (atRiskRand > probHealthy);
-				
-				goal = Agent.RANDOM_GOAL;
-				
-				if (this.movementScenario == ATTRACTIVE_PLACES) {
-					double rand = Math.random();
-					
-					if (rand < 0.5)
-						goal = Agent.SCHOOL_GOAL;
-					else goal = Agent.SHOPPING_GOAL;
-				}
-				
-				//Wear the mask if mandatory and if docile
-				boolean wearMask = false;
-				if (Agent.isMask()) {
-					double rand = Math.random();
-					
-					if (rand < probDocility)
-						wearMask = true;
-				}
-				
-					
-				SusceptibleAgent sa = new SusceptibleAgent(goal, age, atRisk, wearMask, (nb == 0));
-				context.add(sa);
-			} catch (Exception e) {
-				e.printStackTrace();
+				sitesX[goal][n] = Integer.parseInt(fields[1].trim());
+				sitesY[goal][n] = Integer.parseInt(fields[2].trim());
+			} catch (NumberFormatException e) {
+				throw new IOException(placesFile + ":" + lineNumber + " : expected place, x, y", e);
 			}
 		}
 		
-		for (int nb = 0; nb < numberOfInfectedAgents; nb++) {
-			try {
-			
-				double ageRand = Math.random();
-				
-				if (ageRand < probElderly) {
-					// Generate age between 65 and MAX_AGE
-					age = (int) (Math.random() * (MAX_AGE - 65) + 65);
-				}
-				else {
-					// Generate age between 0 and 64
-					age = (int) (Math.random() * 64);
-					
-				}
-				
-				atRisk = Math.random() > probHealthy;
+		for (int goal = Agent.SCHOOL_GOAL; goal <= Agent.HOSPITAL_GOAL; goal++)
+			if (nbSites[goal] > 0)
+				population.setPlaceSites(goal, sitesX[goal], sitesY[goal], nbSites[goal]);
+	}
+	
+	/**
+	 * Creates the people of a population, located in some rows of the grid. The people are placed
+	 * with a permutation of the cells derived from the seed and draw their attributes from their own random stream,
+	 * so that the people of a row do not depend on the rows created : the stores of a split simulation create
+	 * the same people as one store.
+	 * The people are created by batches : the cells and the attributes of a batch are drawn on the threads of the
+	 * population, then the people are added in the order of their keys, so that their ids do not depend on the threads.
+	 * The susceptible agents are created first, then the infected agents.
+	 * @param population the population
+	 * @param seed the seed of the simulation
+	 * @param rowFrom the first row (global) whose people are created
+	 * @param rowTo the row (global) after the last row whose people are created
+	 */
+	void createPeople(Population population, long seed, int rowFrom, int rowTo) {
+		long nbCells = (long) gridWidth * gridHeight;
+		long nbPeople = (long) numberOfSusceptibleAgents + numberOfInfectedAgents;
+		if (nbPeople > nbCells)
+			throw new IllegalArgumentException("More agents than cells");
 
-				if (Agent.isInfectedIsolation())
-					goal = Agent.HOSPITAL_GOAL;
-				else goal = Agent.RANDOM_GOAL;
-				
-				//Wear the mask if mandatory and if docile
-				boolean wearMask = false;
-				if (Agent.isMask()) {
-					double rand = Math.random();
-					
-					if (rand < probDocility)
-						wearMask = true;
-				}
-				
-				InfectedWithSymptomsAgent ia = new InfectedWithSymptomsAgent(goal, age, atRisk, wearMask);
-				context.add(ia);
-			} catch (Exception e) {
-				e.printStackTrace();
+		CellPermutation placement = new CellPermutation(nbCells, seed);
+		int batchSize = (int) Math.min(nbPeople, BATCH_SIZE);
+		long[] cells = new long[batchSize];
+		long[] attributes = new long[batchSize];
+		long[] states = new long[batchSize];
+		for (int first = 0; first < nbPeople; first += batchSize) {
+			int batchFirst = first;
+			int nb = (int) Math.min(batchSize, nbPeople - first);
+			population.forEach(0, nb, i -> {
+				int key = batchFirst + i;
+				cells[i] = placement.permute(key);
+				long gy = cells[i] / gridWidth;
+				if (gy < rowFrom || gy >= rowTo)
+					return;
+
+				int status = (key < numberOfSusceptibleAgents) ? Agent.SUSCEPTIBLE_STATUS : Agent.INFECTED_WITH_SYMPTOMS_STATUS;
+				RandomStreams.Stream random = population.random.newStream(key);
+				int age = drawAge(random);
+				boolean atRisk = drawAtRisk(random);
+				int goal = drawGoal(status, random);
+				boolean wearMask = drawMask(random);
+				attributes[i] = Population.pack(status, status, goal, age,
+						(atRisk ? Population.FLAG_AT_RISK : 0) | (wearMask ? Population.FLAG_MASK : 0), 0);
+				states[i] = random.getState();
+			});
+
+			for (int i = 0; i < nb; i++) {
+				int gy = (int) (cells[i] / gridWidth);
+				if (gy < rowFrom || gy >= rowTo)
+					continue;
+
+				int id = population.addAt(batchFirst + i, (int) (cells[i] % gridWidth), gy - population.originY,
+						attributes[i]);
+				population.random.setState(id, states[i]);
 			}
 		}
-
+	}
+	
+	/**
+	 * Draws the age of a new agent.
+	 * @param random the random numbers used
+	 * @return the age
+	 */
+	int drawAge(DoubleSupplier random) {
+		double ageRand = random.getAsDouble();
 		
-		System.out.println("********************* END CONTEXT INITIALIZATION ***********************");
-
-		return context;
+		if (ageRand < probElderly) {
+			// Generate age between 65 and MAX_AGE
+			return (int) (random.getAsDouble() * (MAX_AGE - 65) + 65);
+		}
+		else {
+			// Generate age between 0 and 64
+			return (int) (random.getAsDouble() * 64);
+		}
+	}
+	
+	/**
+	 * Draws if a new agent has an increased risk due to medical conditions.
+	 * @param random the random numbers used
+	 * @return true if the agent is at increased risk
+	 */
+	boolean drawAtRisk(DoubleSupplier random) {
+		double atRiskRand = random.getAsDouble();
+		
+		return (atRiskRand > probHealthy);
+	}
+	
+	/**
+	 * Draws the goal of a new agent. The infected agents go to the hospital if they are isolated, the susceptible
+	 * agents go to the school or to the shopping center in the attractive places scenario.
+	 * @param status the status of the new agent
+	 * @param random the random numbers used
+	 * @return the goal
+	 */
+	int drawGoal(int status, DoubleSupplier random) {
+		if (status != Agent.SUSCEPTIBLE_STATUS) {
+			if (scenario.isInfectedIsolation())
+				return Agent.HOSPITAL_GOAL;
+			else return Agent.RANDOM_GOAL;
+		}
+		
+		if (this.movementScenario == ATTRACTIVE_PLACES) {
+			double rand = random.getAsDouble();
+			
+			if (rand < 0.5)
+				return Agent.SCHOOL_GOAL;
+			else return Agent.SHOPPING_GOAL;
+		}
+		return Agent.RANDOM_GOAL;
+	}
+	
+	/**
+	 * Draws if a new agent wears the mask : if mandatory and if docile.
+	 * @param random the random numbers used
+	 * @return true if the agent wears a mask
+	 */
+	boolean drawMask(DoubleSupplier random) {
+		boolean wearMask = false;
+		if (scenario.isMask()) {
+			double rand = random.getAsDouble();
+			
+			if (rand < probDocility)
+				wearMask = true;
+		}
+		return wearMask;
 	}
 	
 	/**
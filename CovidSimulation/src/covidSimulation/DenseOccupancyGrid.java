@@ -0,0 +1,115 @@
+package covidSimulation;
+
+/**
+ * Occupancy grid storing every cell : a bitmap with one bit per cell, set when an agent is located in the cell,
+ * and the id of the agent located in each cell. The free-cell queries only read the bitmap, which is small
+ * enough to stay in the caches.
+ * @author Natacha
+ *
+ */
+public class DenseOccupancyGrid extends OccupancyGrid {
+
+	/**
+	 * The bits of the cells, the cell (x, y) being the bit number y * width + x.
+	 */
+	private final LongColumn bits;
+
+	/**
+	 * The id of the agent located in each cell, the cell (x, y) being the element y * width + x (-1 if the cell is free).
+	 */
+	private final IntColumn owner;
+
+	/**
+	 * Constructor. All the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 */
+	public DenseOccupancyGrid(int width, int height) {
+		this(width, height, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Constructor. All the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param storage the memory where the grid is stored
+	 */
+	public DenseOccupancyGrid(int width, int height, WorldStorage storage) {
+		super(width, height);
+		if ((long) width * height > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Grid too large for a dense grid : " + width + "x" + height);
+		this.bits = storage.newLongColumn("bits", (int) (((long) width * height + 63) >>> 6));
+		this.owner = storage.newIntColumn("owner", width * height);
+		owner.fill(0, width * height, -1);
+	}
+
+	/**
+	 * A dense grid stores every cell.
+	 */
+	@Override
+	public boolean isSparse() {
+		return false;
+	}
+
+	/**
+	 * Reads the bit of the cell.
+	 */
+	@Override
+	public boolean isFree(int x, int y) {
+		int i = y * width + x;
+		return (bits.get(i >>> 6) & (1L << i)) == 0;
+	}
+
+	/**
+	 * Reads the owner of the cell.
+	 */
+	@Override
+	int getOwner(int x, int y) {
+		return owner.get(y * width + x);
+	}
+
+	/**
+	 * Sets the bit and the owner of the cell.
+	 */
+	@Override
+	void set(int x, int y, int id) {
+		int i = y * width + x;
+		bits.set(i >>> 6, bits.get(i >>> 6) | (1L << i));
+		owner.set(i, id);
+	}
+
+	/**
+	 * Clears the bit and the owner of the cell.
+	 */
+	@Override
+	void clear(int x, int y) {
+		int i = y * width + x;
+		bits.set(i >>> 6, bits.get(i >>> 6) & ~(1L << i));
+		owner.set(i, -1);
+	}
+
+	/**
+	 * Marks the cell as occupied, when other threads mark other cells at the same time : the bit is set atomically,
+	 * as the other cells of the same word can be modified by other threads.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @param id the id of the agent located in the cell
+	 */
+	void setConcurrently(int x, int y, int id) {
+		int i = y * width + x;
+		bits.setBits(i >>> 6, 1L << i);
+		owner.set(i, id);
+	}
+
+	/**
+	 * Marks the cell as free, when other threads mark other cells at the same time : the bit is cleared atomically,
+	 * as the other cells of the same word can be modified by other threads.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 */
+	void clearConcurrently(int x, int y) {
+		int i = y * width + x;
+		bits.clearBits(i >>> 6, 1L << i);
+		owner.set(i, -1);
+	}
+}
@@ -0,0 +1,25 @@
+package covidSimulation;
+
+import repast.simphony.visualization.visualization3D.AppearanceFactory;
+import repast.simphony.visualization.visualization3D.style.DefaultStyle3D;
+import repast.simphony.visualization.visualization3D.style.TaggedAppearance;
+
+/**
+ * Class used to display the agents dynamically in 3D.
+ * Takes into account the color of the agent, as DynamicAgentStyle does in 2D.
+ * @author Natacha
+ *
+ */
+public class DynamicAgentStyle3D extends DefaultStyle3D<Agent> {
+
+	/**
+	 * Returns an appearance with the color of the agent : the color is set at each update, so that it changes with the status.
+	 */
+	@Override
+	public TaggedAppearance getAppearance(Agent agent, TaggedAppearance taggedAppearance, Object shapeID) {
+		if (taggedAppearance == null)
+			taggedAppearance = new TaggedAppearance();
+		AppearanceFactory.setMaterialAppearance(taggedAppearance.getAppearance(), agent.getColor());
+		return taggedAppearance;
+	}
+}
@@ -0,0 +1,62 @@
+package covidSimulation;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import repast.simphony.visualizationOGL2D.DefaultStyleOGL2D;
+import saf.v3d.scene.VSpatial;
+
+/**
+ * Class used to display the agents dynamically with an icon.
+ * Takes into account the current status of the agent : the icon is changed when the status changes.
+ * @author Natacha
+ *
+ */
+public class DynamicIconStyle extends DefaultStyleOGL2D {
+	
+	/**
+	 * The icon of each status, indexed by the status.
+	 */
+	static final String[] ICONS = {
+		"./icons/Susceptible.jpg",
+		"./icons/SickWith.png",
+		"./icons/SickWithout.jpg",
+		"./icons/Recovered.png",
+		"./icons/dead.png"
+	};
+	
+	/**
+	 * The status displayed by each spatial.
+	 */
+	private final Map<VSpatial, Integer> displayedStatus = new WeakHashMap<VSpatial, Integer>();
+	
+	/**
+	 * The icons are displayed without modifying their colors.
+	 */
+	@Override
+	public Color getColor(Object o) {
+		return Color.WHITE;
+	}
+	
+	/**
+	 * Returns the icon corresponding to the current status of the agent.
+	 */
+	@Override
+	public VSpatial getVSpatial(Object agent, VSpatial spatial) {
+		int status = ((Agent) agent).getStatus();
+		Integer displayed = (spatial == null) ? null : displayedStatus.get(spatial);
+		
+		if (displayed == null || displayed != status) {
+			try {
+				spatial = shapeFactory.createImage(ICONS[status]);
+			} catch (IOException e) {
+				e.printStackTrace();
+				spatial = shapeFactory.createCircle(7, 7);
+			}
+			displayedStatus.put(spatial, status);
+		}
+		return spatial;
+	}
+}
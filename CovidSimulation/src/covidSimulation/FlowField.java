@@ -0,0 +1,529 @@
+package covidSimulation;
+
+import java.util.Arrays;
+
+/**
+ * The field of the moves towards a kind of place (school, shopping center, hospital) : the distance of each cell
+ * to the nearest site of the place, computed by a breadth-first search from the sites, and for each cell a bitmask
+ * of the downhill directions, the directions of the neighbouring cells which are nearer to a site.
+ * An agent going to the place chooses among these directions, without computing anything else.
+ * <p>
+ * The distances are counted in steps along the rows and the columns. On a free grid, the downhill directions
+ * of a cell are thus the steps towards the site along x, along y or both, the moves of the greedy rule.
+ * The directions are numbered in the order of the greedy rule : the horizontal steps, then the diagonal steps,
+ * then the vertical steps.
+ * <p>
+ * The field is computed when it is read for the first time : a place where nobody goes (in the random scenario)
+ * only stores its sites. Then, adding a site only updates the cells which become nearer to the new site, and moving
+ * or removing a site computes the field again. The sites are stored in a spatial index, which finds the nearest
+ * site of a point.
+ * <p>
+ * In a band of a partitioned simulation, the field only stores the rows of the band and of its halo. The distances
+ * are still the distances to all the sites of the grid : a site outside the rows stored is reached through
+ * the nearest row stored, which is on a shortest path since the borders of the grid do not wrap around.
+ * <p>
+ * On a huge grid, a sparse field only stores the sites : the downhill directions of a cell are the steps towards
+ * its nearest site, computed when they are read. They are the same as in a stored field, except for a cell at
+ * the same distance of several sites, which only goes towards one of them.
+ * @author Natacha
+ *
+ */
+public class FlowField {
+
+	/**
+	 * The steps of the 8 directions.
+	 */
+	static final int[] DX = { -1, 1, -1, 1, -1, 1, 0, 0 };
+	static final int[] DY = { 0, 0, -1, -1, 1, 1, -1, 1 };
+
+	/**
+	 * The distance of the cells which can not reach any site.
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/**
+	 * The grid dimensions.
+	 */
+	private final int width;
+	private final int height;
+
+	/**
+	 * The rows stored : the row y of the grid is the row y - originY of the arrays (originY is 0 and nbRows
+	 * is height when the whole grid is stored).
+	 */
+	private final int originY;
+	private final int nbRows;
+
+	/**
+	 * True if the borders of the grid wrap around.
+	 */
+	private final boolean periodic;
+
+	/**
+	 * True if the field only stores the sites.
+	 */
+	private final boolean sparse;
+
+	/**
+	 * True once the distances and the downhill directions have been computed. Written after them, so that
+	 * the threads reading the field see the computed arrays.
+	 */
+	private volatile boolean built;
+
+	/**
+	 * The distance of each cell to the nearest site, the cell (x, y) being the element (y - originY) * width + x
+	 * (null for a sparse field, or until the field is read).
+	 */
+	private int[] distance;
+
+	/**
+	 * The bitmask of the downhill directions of each cell : the bit d is set when the neighbour in the
+	 * direction (DX[d], DY[d]) is nearer to a site (null for a sparse field, or until the field is read).
+	 */
+	private byte[] downhill;
+
+	/**
+	 * The sites.
+	 */
+	private SiteIndex sites;
+
+	/**
+	 * The queue of the breadth-first search, only allocated during a search, and the cells whose distance
+	 * has changed.
+	 */
+	private int[] queue;
+	private int[] changed = new int[64];
+	private int nbChanged;
+
+	/**
+	 * Constructor. The field has no site : no cell can reach the place.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param periodic true if the borders of the grid wrap around
+	 */
+	public FlowField(int width, int height, boolean periodic) {
+		this(width, height, periodic, false);
+	}
+
+	/**
+	 * Constructor. The field has no site : no cell can reach the place.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param periodic true if the borders of the grid wrap around
+	 * @param sparse true to store only the sites (the borders of the grid must not wrap around)
+	 */
+	public FlowField(int width, int height, boolean periodic, boolean sparse) {
+		this(width, height, 0, height, periodic, sparse);
+	}
+
+	/**
+	 * Constructor of a field storing only some rows of the grid, whose borders do not wrap around.
+	 * The field has no site : no cell can reach the place.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param originY the first row stored
+	 * @param nbRows the number of rows stored
+	 * @param sparse true to store only the sites
+	 */
+	FlowField(int width, int height, int originY, int nbRows, boolean sparse) {
+		this(width, height, originY, nbRows, false, sparse);
+	}
+
+	/**
+	 * Common constructor.
+	 */
+	private FlowField(int width, int height, int originY, int nbRows, boolean periodic, boolean sparse) {
+		if (sparse && periodic)
+			throw new IllegalArgumentException("A sparse field can not wrap around the borders of the grid");
+		if (periodic && nbRows != height)
+			throw new IllegalArgumentException("A field storing some rows can not wrap around the borders of the grid");
+		this.width = width;
+		this.height = height;
+		this.originY = originY;
+		this.nbRows = nbRows;
+		this.periodic = periodic;
+		this.sparse = sparse;
+		this.sites = new SiteIndex(width, height);
+	}
+
+	/**
+	 * Returns true if the field only stores the sites.
+	 * @return true for a sparse field
+	 */
+	public boolean isSparse() {
+		return sparse;
+	}
+
+	/**
+	 * Returns the number of sites.
+	 * @return the number of sites
+	 */
+	public int getNbSites() {
+		return sites.size();
+	}
+
+	/**
+	 * Returns the x coordinate of a site.
+	 * @param site the index of the site
+	 * @return the x coordinate
+	 */
+	public int getSiteX(int site) {
+		return sites.getX(site);
+	}
+
+	/**
+	 * Returns the y coordinate of a site.
+	 * @param site the index of the site
+	 * @return the y coordinate
+	 */
+	public int getSiteY(int site) {
+		return sites.getY(site);
+	}
+
+	/**
+	 * Adds a site. Only the cells which are nearer to the new site than to the other ones are updated.
+	 * The first site changes all the cells : the field is computed once, without storing the cells changed.
+	 * @param sx the x coordinate of the site
+	 * @param sy the y coordinate of the site
+	 * @return the index of the site
+	 */
+	public int addSite(int sx, int sy) {
+		int site = sites.add(sx, sy);
+		if (!built)
+			return site;
+		if (sites.size() == 1) {
+			rebuild();
+			return site;
+		}
+		nbChanged = 0;
+		spread(sx, sy, true);
+		updateDownhill();
+		return site;
+	}
+
+	/**
+	 * Replaces all the sites. The field is computed once, from all the new sites.
+	 * @param sx the x coordinates of the sites
+	 * @param sy the y coordinates of the sites
+	 * @param nb the number of sites
+	 */
+	public void setSites(int[] sx, int[] sy, int nb) {
+		sites = new SiteIndex(width, height);
+		for (int s = 0; s < nb; s++)
+			sites.add(sx[s], sy[s]);
+		if (built)
+			rebuild();
+	}
+
+	/**
+	 * Moves a site. The field is computed again.
+	 * @param site the index of the site
+	 * @param sx the new x coordinate of the site
+	 * @param sy the new y coordinate of the site
+	 */
+	public void moveSite(int site, int sx, int sy) {
+		sites.move(site, sx, sy);
+		if (built)
+			rebuild();
+	}
+
+	/**
+	 * Removes a site. The last site takes its index, and the field is computed again.
+	 * @param site the index of the site
+	 */
+	public void removeSite(int site) {
+		sites.remove(site);
+		if (built)
+			rebuild();
+	}
+
+	/**
+	 * Returns the nearest site of a cell.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @return the index of the nearest site, -1 if there is no site
+	 */
+	public int getNearestSite(int cx, int cy) {
+		return sites.nearest(cx, cy);
+	}
+
+	/**
+	 * Returns the distance of a cell to the nearest site.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell (a row stored)
+	 * @return the distance, UNREACHABLE if there is no site
+	 */
+	public int getDistance(int cx, int cy) {
+		if (sparse) {
+			int site = sites.nearest(cx, cy);
+			if (site < 0)
+				return UNREACHABLE;
+			return Math.abs(sites.getX(site) - cx) + Math.abs(sites.getY(site) - cy);
+		}
+		if (!built)
+			build();
+		return distance[(cy - originY) * width + cx];
+	}
+
+	/**
+	 * Returns the bitmask of the downhill directions of a cell. The directions of a cell of the first or of
+	 * the last row stored do not lead out of the rows stored.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell (a row stored)
+	 * @return the bitmask, the bit d being set if the direction (DX[d], DY[d]) leads nearer to a site
+	 */
+	public int getDownhill(int cx, int cy) {
+		if (sparse)
+			return computeDownhillTowards(cx, cy);
+		if (!built)
+			build();
+		return downhill[(cy - originY) * width + cx] & 0xff;
+	}
+
+	/**
+	 * Computes the downhill directions of a cell of a sparse field : the steps towards its nearest site.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @return the bitmask of the directions
+	 */
+	private int computeDownhillTowards(int cx, int cy) {
+		int site = sites.nearest(cx, cy);
+		if (site < 0)
+			return 0;
+		int sx = Integer.signum(sites.getX(site) - cx);
+		int sy = Integer.signum(sites.getY(site) - cy);
+		int mask = 0;
+		for (int dir = 0; dir < DX.length; dir++)
+			if ((DX[dir] == 0 || DX[dir] == sx) && (DY[dir] == 0 || DY[dir] == sy))
+				mask |= 1 << dir;
+		return mask;
+	}
+
+	/**
+	 * Allocates and computes the field, the first time it is read. Several threads can read the field
+	 * for the first time : only one of them computes it.
+	 */
+	private synchronized void build() {
+		if (built)
+			return;
+		distance = new int[width * nbRows];
+		downhill = new byte[width * nbRows];
+		rebuild();
+		built = true;
+	}
+
+	/**
+	 * Computes the whole field from the sites. When the borders wrap around, with one breadth-first search
+	 * starting from all the sites. Otherwise, the sites are placed on the nearest rows stored, at their distance
+	 * from these rows, and the distances are computed by two passes over the rows stored (see sweep).
+	 */
+	private void rebuild() {
+		Arrays.fill(distance, UNREACHABLE);
+		if (periodic) {
+			queue = new int[Math.max(Integer.highestOneBit(Math.max(sites.size(), 1)) * 2, 64)];
+			int tail = 0;
+			for (int s = 0; s < sites.size(); s++) {
+				int cell = sites.getY(s) * width + sites.getX(s);
+				if (distance[cell] != 0) {
+					distance[cell] = 0;
+					queue[tail++] = cell;
+				}
+			}
+			search(tail, false);
+		}
+		else {
+			for (int s = 0; s < sites.size(); s++) {
+				int row = getNearestRow(sites.getY(s));
+				int cell = row * width + sites.getX(s);
+				distance[cell] = Math.min(distance[cell], Math.abs(sites.getY(s) - originY - row));
+			}
+			sweep();
+		}
+		for (int cell = 0; cell < distance.length; cell++)
+			computeDownhill(cell);
+	}
+
+	/**
+	 * Returns the row stored nearest to a row of the grid.
+	 * @param y the row of the grid
+	 * @return the index of the row in the arrays
+	 */
+	private int getNearestRow(int y) {
+		return Math.min(Math.max(y - originY, 0), nbRows - 1);
+	}
+
+	/**
+	 * Computes the distances of all the cells from the distances already set, in two passes : the first one
+	 * from the first cell, following the steps to the right and downwards, the second one back from the last cell,
+	 * following the steps to the left and upwards. When the borders do not wrap around, a shortest path can always
+	 * be made of the steps of the first pass followed by the steps of the second one, so the distances are exact.
+	 */
+	private void sweep() {
+		for (int cell = 0; cell < distance.length; cell++) {
+			if (cell % width > 0)
+				relax(cell, cell - 1);
+			if (cell >= width)
+				relax(cell, cell - width);
+		}
+		for (int cell = distance.length - 1; cell >= 0; cell--) {
+			if (cell % width < width - 1)
+				relax(cell, cell + 1);
+			if (cell + width < distance.length)
+				relax(cell, cell + width);
+		}
+	}
+
+	/**
+	 * Sets the distance of a cell through a neighbour, if the neighbour gives a shorter distance.
+	 * @param cell the cell
+	 * @param neighbour the neighbouring cell
+	 */
+	private void relax(int cell, int neighbour) {
+		int d = distance[neighbour];
+		if (d != UNREACHABLE && d + 1 < distance[cell])
+			distance[cell] = d + 1;
+	}
+
+	/**
+	 * Breadth-first search from a site : updates the cells which are nearer to this site than to the other ones.
+	 * A site outside the rows stored starts from the nearest row stored, at its distance from this row.
+	 * @param sx the x coordinate of the site
+	 * @param sy the y coordinate of the site
+	 * @param track true to store the cells updated in changed
+	 */
+	private void spread(int sx, int sy, boolean track) {
+		int row = getNearestRow(sy);
+		int cell = row * width + sx;
+		int d = Math.abs(sy - originY - row);
+		if (distance[cell] <= d)
+			return;
+		distance[cell] = d;
+		if (track)
+			addChanged(cell);
+		queue = new int[64];
+		queue[0] = cell;
+		search(1, track);
+	}
+
+	/**
+	 * Breadth-first search from the cells stored in the queue, whose distances are already set.
+	 * The queue is a ring which only holds the front of the search : it grows with the front, and is released
+	 * at the end of the search.
+	 * @param nb the number of cells in the queue, from the first element
+	 * @param track true to store the cells updated in changed
+	 */
+	private void search(int nb, boolean track) {
+		int head = 0;
+		int tail = nb & (queue.length - 1);
+		while (nb > 0) {
+			int cell = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			nb--;
+			int cx = cell % width;
+			int cy = cell / width;
+			int d = distance[cell] + 1;
+			// Only the 4 directions along the rows and the columns are followed.
+			for (int dir = 0; dir < DX.length; dir++) {
+				if (DX[dir] != 0 && DY[dir] != 0)
+					continue;
+				int n = getNeighbour(cx, cy, dir);
+				if (n >= 0 && distance[n] > d) {
+					distance[n] = d;
+					if (track)
+						addChanged(n);
+					if (nb == queue.length) {
+						growQueue(head);
+						head = 0;
+						tail = nb;
+					}
+					queue[tail] = n;
+					tail = (tail + 1) & (queue.length - 1);
+					nb++;
+				}
+			}
+		}
+		queue = null;
+	}
+
+	/**
+	 * Doubles the size of the full queue : its cells are copied in order at the beginning of the new queue.
+	 * @param head the position of the first cell of the queue
+	 */
+	private void growQueue(int head) {
+		int[] larger = new int[queue.length * 2];
+		System.arraycopy(queue, head, larger, 0, queue.length - head);
+		System.arraycopy(queue, 0, larger, queue.length - head, head);
+		queue = larger;
+	}
+
+	/**
+	 * Computes again the downhill directions of the cells whose distance has changed and of their neighbours.
+	 * When a large part of the cells has changed, all the cells are computed once, each of them only once.
+	 */
+	private void updateDownhill() {
+		if ((long) nbChanged * DX.length >= distance.length) {
+			for (int cell = 0; cell < distance.length; cell++)
+				computeDownhill(cell);
+			nbChanged = 0;
+			return;
+		}
+		for (int i = 0; i < nbChanged; i++) {
+			int cell = changed[i];
+			int cx = cell % width;
+			int cy = cell / width;
+			computeDownhill(cell);
+			for (int dir = 0; dir < DX.length; dir++) {
+				int n = getNeighbour(cx, cy, dir);
+				if (n >= 0)
+					computeDownhill(n);
+			}
+		}
+		nbChanged = 0;
+	}
+
+	/**
+	 * Computes the downhill directions of a cell.
+	 * @param cell the cell
+	 */
+	private void computeDownhill(int cell) {
+		int cx = cell % width;
+		int cy = cell / width;
+		int d = distance[cell];
+		int mask = 0;
+		for (int dir = 0; dir < DX.length; dir++) {
+			int n = getNeighbour(cx, cy, dir);
+			if (n >= 0 && distance[n] < d)
+				mask |= 1 << dir;
+		}
+		downhill[cell] = (byte) mask;
+	}
+
+	/**
+	 * Returns the neighbour of a cell in a direction.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @param dir the direction
+	 * @return the neighbouring cell, -1 if it is outside the grid
+	 */
+	private int getNeighbour(int cx, int cy, int dir) {
+		int nx = cx + DX[dir];
+		int ny = cy + DY[dir];
+		if (periodic) {
+			nx = (nx + width) % width;
+			ny = (ny + height) % height;
+		}
+		else if (nx < 0 || nx >= width || ny < 0 || ny >= nbRows)
+			return -1;
+		return ny * width + nx;
+	}
+
+	/**
+	 * Stores a cell whose distance has changed.
+	 * @param cell the cell
+	 */
+	private void addChanged(int cell) {
+		if (nbChanged == changed.length)
+			changed = Arrays.copyOf(changed, nbChanged * 2);
+		changed[nbChanged++] = cell;
+	}
+}
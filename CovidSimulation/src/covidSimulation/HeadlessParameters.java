@@ -0,0 +1,146 @@
+package covidSimulation;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Parameters of a run without Repast : the default values declared in parameters.xml, which can be replaced
+ * by values given as name=value.
+ * @author Natacha
+ *
+ */
+public class HeadlessParameters {
+
+	/**
+	 * The value Repast uses for a parameter without default value.
+	 */
+	private static final String NULL_VALUE = "__NULL__";
+
+	/**
+	 * The type of each parameter (int, float, double, long, boolean or string).
+	 */
+	private final Map<String, String> types = new LinkedHashMap<>();
+
+	/**
+	 * The value of each parameter.
+	 */
+	private final Map<String, Object> values = new LinkedHashMap<>();
+
+	/**
+	 * Reads the parameters and their default values from a parameters.xml file.
+	 * @param file the parameters file
+	 * @throws Exception if the file can not be read
+	 */
+	public HeadlessParameters(File file) throws Exception {
+		NodeList nodes = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file)
+				.getElementsByTagName("parameter");
+		for (int i = 0; i < nodes.getLength(); i++) {
+			Element parameter = (Element) nodes.item(i);
+			String name = parameter.getAttribute("name");
+			types.put(name, parameter.getAttribute("type"));
+			set(name, parameter.getAttribute("defaultValue"));
+		}
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param other the parameters copied
+	 */
+	public HeadlessParameters(HeadlessParameters other) {
+		types.putAll(other.types);
+		values.putAll(other.values);
+	}
+
+	/**
+	 * Sets the value of a parameter from its text.
+	 * @param name the name of the parameter
+	 * @param text the value, converted according to the type of the parameter
+	 */
+	public void set(String name, String text) {
+		String type = types.getOrDefault(name, "string");
+		if (text == null || text.equals(NULL_VALUE)) {
+			values.put(name, null);
+			return;
+		}
+		switch (type) {
+			case "int":
+				values.put(name, Integer.valueOf(text.trim()));
+				break;
+			case "long":
+				values.put(name, Long.valueOf(text.trim()));
+				break;
+			case "float":
+				values.put(name, Float.valueOf(text.trim()));
+				break;
+			case "double":
+				values.put(name, Double.valueOf(text.trim()));
+				break;
+			case "boolean":
+				values.put(name, Boolean.valueOf(text.trim()));
+				break;
+			default:
+				values.put(name, text);
+		}
+	}
+
+	/**
+	 * Sets the values given as name=value.
+	 * @param assignments the assignments
+	 */
+	public void setAll(String... assignments) {
+		for (String assignment : assignments) {
+			int equal = assignment.indexOf('=');
+			if (equal <= 0)
+				throw new IllegalArgumentException("Expected name=value : " + assignment);
+			set(assignment.substring(0, equal), assignment.substring(equal + 1));
+		}
+	}
+
+	/**
+	 * Returns the value of a parameter.
+	 * @param name the name of the parameter
+	 * @return the value (null if not set)
+	 */
+	public Object getValue(String name) {
+		return values.get(name);
+	}
+
+	/**
+	 * Returns the value of an int parameter.
+	 * @param name the name of the parameter
+	 * @param defaultValue the value returned if the parameter is not set
+	 * @return the value
+	 */
+	public int getInteger(String name, int defaultValue) {
+		Object value = values.get(name);
+		return (value == null) ? defaultValue : ((Number) value).intValue();
+	}
+
+	/**
+	 * Returns the value of a boolean parameter.
+	 * @param name the name of the parameter
+	 * @param defaultValue the value returned if the parameter is not set
+	 * @return the value
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		Object value = values.get(name);
+		return (value == null) ? defaultValue : (Boolean) value;
+	}
+
+	/**
+	 * Returns the values as name=value, in the order of the parameters file.
+	 * @return the assignments
+	 */
+	public String[] toAssignments() {
+		return values.entrySet().stream()
+				.filter(e -> e.getValue() != null)
+				.map(e -> e.getKey() + "=" + e.getValue())
+				.toArray(String[]::new);
+	}
+}
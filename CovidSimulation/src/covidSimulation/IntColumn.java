@@ -0,0 +1,229 @@
+package covidSimulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A column of ints : one element for each person (or for each slot of a table), stored on the heap or outside
+ * the heap (see WorldStorage). The sweeps read and write the elements directly, whatever the storage.
+ * @author Natacha
+ *
+ */
+abstract class IntColumn {
+
+	/**
+	 * Returns an element.
+	 * @param i the index of the element
+	 * @return the value of the element
+	 */
+	abstract int get(int i);
+
+	/**
+	 * Sets an element.
+	 * @param i the index of the element
+	 * @param value the new value of the element
+	 */
+	abstract void set(int i, int value);
+
+	/**
+	 * Adds a number to an element atomically, when several threads can modify the element at the same time.
+	 * @param i the index of the element
+	 * @param delta the number added
+	 * @return the previous value of the element
+	 */
+	abstract int getAndAdd(int i, int delta);
+
+	/**
+	 * Returns the number of elements.
+	 * @return the number of elements
+	 */
+	abstract int length();
+
+	/**
+	 * Returns a column with more elements, with the same first elements (the new elements are 0).
+	 * This column must not be used anymore : a column mapped in a file shares the file with the new column.
+	 * @param length the new number of elements
+	 * @return the new column
+	 */
+	abstract IntColumn copyOf(int length);
+
+	/**
+	 * Sets a range of elements.
+	 * @param from the first element
+	 * @param to the element after the last one
+	 * @param value the value of the elements
+	 */
+	void fill(int from, int to, int value) {
+		for (int i = from; i < to; i++)
+			set(i, value);
+	}
+
+	/**
+	 * Writes the first elements in a buffer, from its current position.
+	 * @param buffer the buffer
+	 * @param length the number of elements written
+	 */
+	void write(ByteBuffer buffer, int length) {
+		for (int i = 0; i < length; i++)
+			buffer.putInt(get(i));
+	}
+
+	/**
+	 * Reads the first elements from a buffer, from its current position.
+	 * @param buffer the buffer
+	 * @param length the number of elements read
+	 */
+	void read(ByteBuffer buffer, int length) {
+		for (int i = 0; i < length; i++)
+			set(i, buffer.getInt());
+	}
+
+	/**
+	 * A column stored in an array.
+	 */
+	static final class Heap extends IntColumn {
+
+		/**
+		 * Handle used to modify atomically the elements.
+		 */
+		private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(int[].class);
+
+		/**
+		 * The elements.
+		 */
+		private final int[] values;
+
+		/**
+		 * Constructor.
+		 * @param values the elements
+		 */
+		Heap(int[] values) {
+			this.values = values;
+		}
+
+		@Override
+		int get(int i) {
+			return values[i];
+		}
+
+		@Override
+		void set(int i, int value) {
+			values[i] = value;
+		}
+
+		@Override
+		int getAndAdd(int i, int delta) {
+			return (int) ELEMENT.getAndAdd(values, i, delta);
+		}
+
+		@Override
+		int length() {
+			return values.length;
+		}
+
+		@Override
+		IntColumn copyOf(int length) {
+			return new Heap(Arrays.copyOf(values, length));
+		}
+
+		@Override
+		void fill(int from, int to, int value) {
+			Arrays.fill(values, from, to, value);
+		}
+
+		@Override
+		void write(ByteBuffer buffer, int length) {
+			buffer.asIntBuffer().put(values, 0, length);
+			buffer.position(buffer.position() + 4 * length);
+		}
+
+		@Override
+		void read(ByteBuffer buffer, int length) {
+			buffer.asIntBuffer().get(values, 0, length);
+			buffer.position(buffer.position() + 4 * length);
+		}
+	}
+
+	/**
+	 * A column stored outside the heap, in chunks of 2^28 elements.
+	 */
+	static final class OffHeap extends IntColumn {
+
+		/**
+		 * Handle used to modify atomically the elements.
+		 */
+		private static final VarHandle ELEMENT = MethodHandles.byteBufferViewVarHandle(int[].class,
+				ByteOrder.nativeOrder());
+
+		/**
+		 * The number of elements of a chunk, as a power of 2, and the mask of the index in a chunk.
+		 */
+		private static final int BITS = WorldStorage.CHUNK_BITS - 2;
+		private static final int MASK = (1 << BITS) - 1;
+
+		/**
+		 * The storage and the file of the column (null for direct buffers).
+		 */
+		private final WorldStorage storage;
+		private final Path file;
+
+		/**
+		 * The chunks.
+		 */
+		private final ByteBuffer[] chunks;
+
+		/**
+		 * The number of elements.
+		 */
+		private final int length;
+
+		/**
+		 * Constructor of a new column.
+		 * @param storage the storage
+		 * @param file the file of the column (null for direct buffers)
+		 * @param length the number of elements
+		 */
+		OffHeap(WorldStorage storage, Path file, int length) {
+			this(storage, file, null, length);
+		}
+
+		/**
+		 * Constructor of a column with the content of previous chunks.
+		 */
+		private OffHeap(WorldStorage storage, Path file, ByteBuffer[] previous, int length) {
+			this.storage = storage;
+			this.file = file;
+			this.length = length;
+			this.chunks = storage.allocate(file, previous, 4L * length);
+		}
+
+		@Override
+		int get(int i) {
+			return chunks[i >>> BITS].getInt((i & MASK) << 2);
+		}
+
+		@Override
+		void set(int i, int value) {
+			chunks[i >>> BITS].putInt((i & MASK) << 2, value);
+		}
+
+		@Override
+		int getAndAdd(int i, int delta) {
+			return (int) ELEMENT.getAndAdd(chunks[i >>> BITS], (i & MASK) << 2, delta);
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		IntColumn copyOf(int length) {
+			return new OffHeap(storage, file, chunks, length);
+		}
+	}
+}
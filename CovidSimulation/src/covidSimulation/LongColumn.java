@@ -0,0 +1,245 @@
+package covidSimulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A column of longs : one element for each person (or for each slot of a table), stored on the heap or outside
+ * the heap (see WorldStorage). The sweeps read and write the elements directly, whatever the storage.
+ * @author Natacha
+ *
+ */
+abstract class LongColumn {
+
+	/**
+	 * Returns an element.
+	 * @param i the index of the element
+	 * @return the value of the element
+	 */
+	abstract long get(int i);
+
+	/**
+	 * Sets an element.
+	 * @param i the index of the element
+	 * @param value the new value of the element
+	 */
+	abstract void set(int i, long value);
+
+	/**
+	 * Sets bits of an element atomically, when several threads can modify the element at the same time.
+	 * @param i the index of the element
+	 * @param mask the bits set
+	 */
+	abstract void setBits(int i, long mask);
+
+	/**
+	 * Clears bits of an element atomically, when several threads can modify the element at the same time.
+	 * @param i the index of the element
+	 * @param mask the bits cleared
+	 */
+	abstract void clearBits(int i, long mask);
+
+	/**
+	 * Returns the number of elements.
+	 * @return the number of elements
+	 */
+	abstract int length();
+
+	/**
+	 * Returns a column with more elements, with the same first elements (the new elements are 0).
+	 * This column must not be used anymore : a column mapped in a file shares the file with the new column.
+	 * @param length the new number of elements
+	 * @return the new column
+	 */
+	abstract LongColumn copyOf(int length);
+
+	/**
+	 * Sets a range of elements.
+	 * @param from the first element
+	 * @param to the element after the last one
+	 * @param value the value of the elements
+	 */
+	void fill(int from, int to, long value) {
+		for (int i = from; i < to; i++)
+			set(i, value);
+	}
+
+	/**
+	 * Writes the first elements in a buffer, from its current position.
+	 * @param buffer the buffer
+	 * @param length the number of elements written
+	 */
+	void write(ByteBuffer buffer, int length) {
+		for (int i = 0; i < length; i++)
+			buffer.putLong(get(i));
+	}
+
+	/**
+	 * Reads the first elements from a buffer, from its current position.
+	 * @param buffer the buffer
+	 * @param length the number of elements read
+	 */
+	void read(ByteBuffer buffer, int length) {
+		for (int i = 0; i < length; i++)
+			set(i, buffer.getLong());
+	}
+
+	/**
+	 * A column stored in an array.
+	 */
+	static final class Heap extends LongColumn {
+
+		/**
+		 * Handle used to modify atomically the elements.
+		 */
+		private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(long[].class);
+
+		/**
+		 * The elements.
+		 */
+		private final long[] values;
+
+		/**
+		 * Constructor.
+		 * @param values the elements
+		 */
+		Heap(long[] values) {
+			this.values = values;
+		}
+
+		@Override
+		long get(int i) {
+			return values[i];
+		}
+
+		@Override
+		void set(int i, long value) {
+			values[i] = value;
+		}
+
+		@Override
+		void setBits(int i, long mask) {
+			ELEMENT.getAndBitwiseOr(values, i, mask);
+		}
+
+		@Override
+		void clearBits(int i, long mask) {
+			ELEMENT.getAndBitwiseAnd(values, i, ~mask);
+		}
+
+		@Override
+		int length() {
+			return values.length;
+		}
+
+		@Override
+		LongColumn copyOf(int length) {
+			return new Heap(Arrays.copyOf(values, length));
+		}
+
+		@Override
+		void fill(int from, int to, long value) {
+			Arrays.fill(values, from, to, value);
+		}
+
+		@Override
+		void write(ByteBuffer buffer, int length) {
+			buffer.asLongBuffer().put(values, 0, length);
+			buffer.position(buffer.position() + 8 * length);
+		}
+
+		@Override
+		void read(ByteBuffer buffer, int length) {
+			buffer.asLongBuffer().get(values, 0, length);
+			buffer.position(buffer.position() + 8 * length);
+		}
+	}
+
+	/**
+	 * A column stored outside the heap, in chunks of 2^27 elements.
+	 */
+	static final class OffHeap extends LongColumn {
+
+		/**
+		 * Handle used to modify atomically the elements.
+		 */
+		private static final VarHandle ELEMENT = MethodHandles.byteBufferViewVarHandle(long[].class,
+				ByteOrder.nativeOrder());
+
+		/**
+		 * The number of elements of a chunk, as a power of 2, and the mask of the index in a chunk.
+		 */
+		private static final int BITS = WorldStorage.CHUNK_BITS - 3;
+		private static final int MASK = (1 << BITS) - 1;
+
+		/**
+		 * The storage and the file of the column (null for direct buffers).
+		 */
+		private final WorldStorage storage;
+		private final Path file;
+
+		/**
+		 * The chunks.
+		 */
+		private final ByteBuffer[] chunks;
+
+		/**
+		 * The number of elements.
+		 */
+		private final int length;
+
+		/**
+		 * Constructor of a new column.
+		 * @param storage the storage
+		 * @param file the file of the column (null for direct buffers)
+		 * @param length the number of elements
+		 */
+		OffHeap(WorldStorage storage, Path file, int length) {
+			this(storage, file, null, length);
+		}
+
+		/**
+		 * Constructor of a column with the content of previous chunks.
+		 */
+		private OffHeap(WorldStorage storage, Path file, ByteBuffer[] previous, int length) {
+			this.storage = storage;
+			this.file = file;
+			this.length = length;
+			this.chunks = storage.allocate(file, previous, 8L * length);
+		}
+
+		@Override
+		long get(int i) {
+			return chunks[i >>> BITS].getLong((i & MASK) << 3);
+		}
+
+		@Override
+		void set(int i, long value) {
+			chunks[i >>> BITS].putLong((i & MASK) << 3, value);
+		}
+
+		@Override
+		void setBits(int i, long mask) {
+			ELEMENT.getAndBitwiseOr(chunks[i >>> BITS], (i & MASK) << 3, mask);
+		}
+
+		@Override
+		void clearBits(int i, long mask) {
+			ELEMENT.getAndBitwiseAnd(chunks[i >>> BITS], (i & MASK) << 3, ~mask);
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		LongColumn copyOf(int length) {
+			return new OffHeap(storage, file, chunks, length);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package covidSimulation;
+
+/**
+ * The occupied cells of the grid : for each cell, the id of the agent located in it.
+ * It is maintained by the Population and serves all the "is this cell free" queries of the movement rules
+ * without going through the storage of the Repast grid.
+ * <p>
+ * A dense grid (see DenseOccupancyGrid) stores every cell of the grid : it is the fastest when the agents fill
+ * a good part of the grid. A sparse grid (see SparseOccupancyGrid) only stores the occupied cells, so that
+ * its memory depends on the number of agents and not on the size of the grid.
+ * @author Natacha
+ *
+ */
+public abstract class OccupancyGrid {
+
+	/**
+	 * The grid dimensions.
+	 */
+	protected final int width;
+	protected final int height;
+
+	/**
+	 * Constructor. All the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 */
+	protected OccupancyGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Creates an occupancy grid where all the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param sparse true to store only the occupied cells
+	 * @return the occupancy grid
+	 */
+	public static OccupancyGrid create(int width, int height, boolean sparse) {
+		return create(width, height, sparse, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Creates an occupancy grid where all the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param sparse true to store only the occupied cells
+	 * @param storage the memory where the grid is stored
+	 * @return the occupancy grid
+	 */
+	public static OccupancyGrid create(int width, int height, boolean sparse, WorldStorage storage) {
+		if (sparse)
+			return new SparseOccupancyGrid(width, height, storage);
+		return new DenseOccupancyGrid(width, height, storage);
+	}
+
+	/**
+	 * Returns the grid width.
+	 * @return the grid width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the grid height.
+	 * @return the grid height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns true if only the occupied cells are stored.
+	 * @return true for a sparse grid
+	 */
+	public abstract boolean isSparse();
+
+	/**
+	 * Returns true if no agent is located in the cell. The coordinates must be inside the grid.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return true if the cell is free
+	 */
+	public abstract boolean isFree(int x, int y);
+
+	/**
+	 * Returns true if an agent is located in the cell. The coordinates must be inside the grid.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return true if the cell is occupied
+	 */
+	public boolean isOccupied(int x, int y) {
+		return !isFree(x, y);
+	}
+
+	/**
+	 * Returns the id of the agent located in the cell. The coordinates must be inside the grid.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return the id of the agent, -1 if the cell is free
+	 */
+	abstract int getOwner(int x, int y);
+
+	/**
+	 * Marks the cell as occupied.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @param id the id of the agent located in the cell
+	 */
+	abstract void set(int x, int y, int id);
+
+	/**
+	 * Marks the cell as free.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 */
+	abstract void clear(int x, int y);
+}
@@ -0,0 +1,429 @@
+package covidSimulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the two phases of a tick on several threads with fork/join.
+ * The status phase only reads the grid : the frontier is split between the threads and each person computes
+ * his next status independently (the contamination counters are incremented atomically).
+ * In the movement phase, each person computes his next position from the occupancy of the grid at the
+ * beginning of the phase and claims the target cell atomically : when several people want to move to the
+ * same free cell, only the one with the lowest global id moves, the others stay at their position. The winner does
+ * not depend on the order in which the threads run, so (with the random streams of the people) a run gives
+ * the same result whatever the number of threads. Two people never land on the same cell, so the moves can
+ * then be applied to the Repast grid (which is not thread-safe) in any order.
+ * On one thread, the engine has no pool : the tasks are run by the calling thread without being split, with the
+ * same claims, so that a sequential run gives the same result as a parallel one.
+ * On a sparse grid, the claims are not stored for every cell but in a hash table of the cells claimed during
+ * the phase, filled concurrently. The slots used during a phase are recorded, so that only these slots are freed
+ * before the next phase.
+ * @author Natacha
+ *
+ */
+class ParallelTickEngine {
+
+	/**
+	 * Number of people computed by a task without splitting it.
+	 */
+	static int CHUNK_SIZE = 1024;
+
+	/**
+	 * The threads used to run the phases (null on one thread : the tasks are run by the calling thread).
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The claim of each cell : the number of the movement phase in the 32 high bits and the lowest
+	 * global id of the people who want to move to the cell during this phase in the 32 low bits.
+	 */
+	private AtomicLongArray claims;
+
+	/**
+	 * On a sparse grid, the cell whose claim is stored in each element of claims (EMPTY if no cell is claimed
+	 * there during the current phase), null on a dense grid where the claim of a cell is stored at its index.
+	 */
+	private AtomicLongArray claimedCells;
+
+	/**
+	 * The number of slots of claimedCells minus 1, and the shift giving a slot from the hash of a cell.
+	 */
+	private int claimMask;
+	private int claimShift;
+
+	/**
+	 * The slots of claimedCells used during the current phase, the first nbUsedSlots elements being valid.
+	 */
+	private int[] usedSlots;
+	private final AtomicInteger nbUsedSlots = new AtomicInteger();
+
+	/**
+	 * The key of the free slots of claimedCells.
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * The number of the current movement phase.
+	 */
+	private int stamp;
+
+	/**
+	 * Constructor.
+	 * @param nbThreads the number of threads
+	 */
+	ParallelTickEngine(int nbThreads) {
+		this.pool = (nbThreads > 1) ? new ForkJoinPool(nbThreads) : null;
+	}
+
+	/**
+	 * Runs a task on all threads, or on the calling thread if the engine has no pool.
+	 * @param task the task
+	 */
+	private void invoke(RecursiveAction task) {
+		if (pool != null)
+			pool.invoke(task);
+		else task.invoke();
+	}
+
+	/**
+	 * Returns true if a task can be split between the threads.
+	 * @param nb the number of elements of the task
+	 * @param minimum the number of elements computed by a task without splitting it
+	 * @return true if the engine has a pool and the task has more elements than the minimum
+	 */
+	private boolean canSplit(int nb, int minimum) {
+		return pool != null && nb > minimum;
+	}
+
+	/**
+	 * Computes the next status of the people of the frontier on all threads.
+	 * @param population the population
+	 * @param nbFrontier the number of people in the frontier
+	 */
+	void computeNextStatuses(Population population, int nbFrontier) {
+		invoke(new StatusTask(population, 0, nbFrontier));
+	}
+
+	/**
+	 * Computes the next position of all people on all threads. A person whose target cell has
+	 * also been claimed by a person with a lower id stays at his position.
+	 * @param population the population
+	 */
+	void computeNextPositions(Population population) {
+		decideNextPositions(population);
+		resolveClaims(population);
+	}
+
+	/**
+	 * Computes the next position of all people on all threads and records their claims, without resolving
+	 * the conflicts : other claims can then be added with claim before calling resolveClaims.
+	 * @param population the population
+	 */
+	void decideNextPositions(Population population) {
+		if (population.occupancy.isSparse())
+			clearClaimedCells(population.size);
+		else {
+			int nbCells = population.width * population.height;
+			if (claims == null || claimedCells != null || claims.length() != nbCells) {
+				claims = new AtomicLongArray(nbCells);
+				claimedCells = null;
+				stamp = 0;
+			}
+		}
+		stamp++;
+		if (population.tiles != null)
+			invoke(new TileMovementTask(population, 0, population.tiles.getNbTiles(), false));
+		else invoke(new MovementTask(population, 0, population.size, false));
+	}
+
+	/**
+	 * Keeps only the winning claims : a person whose target cell has also been claimed by a person with
+	 * a lower global id stays at his position.
+	 * @param population the population
+	 */
+	void resolveClaims(Population population) {
+		if (population.tiles != null)
+			invoke(new TileMovementTask(population, 0, population.tiles.getNbTiles(), true));
+		else invoke(new MovementTask(population, 0, population.size, true));
+	}
+
+	/**
+	 * Runs an action for each index of a range on all threads.
+	 * @param from the first index
+	 * @param to the index after the last one
+	 * @param action the action, which may be run by several threads at the same time
+	 */
+	void forEach(int from, int to, IntConsumer action) {
+		invoke(new RangeTask(from, to, action));
+	}
+
+	/**
+	 * Releases the threads.
+	 */
+	void shutdown() {
+		if (pool != null)
+			pool.shutdown();
+	}
+
+	/**
+	 * Makes room for the claims of a movement phase on a sparse grid : the table has at least twice as many slots
+	 * as people, and no cell is claimed. Only the slots used during the previous phase are freed, so that the
+	 * time does not depend on the size of the table.
+	 * @param nbPeople the number of people
+	 */
+	private void clearClaimedCells(int nbPeople) {
+		if (claimedCells == null || claimedCells.length() < 2 * nbPeople) {
+			int capacity = Math.max(Integer.highestOneBit(Math.max(nbPeople, 1)) * 4, 1024);
+			claims = new AtomicLongArray(capacity);
+			claimedCells = new AtomicLongArray(capacity);
+			claimMask = capacity - 1;
+			claimShift = 64 - Integer.numberOfTrailingZeros(capacity);
+			usedSlots = new int[capacity];
+			stamp = 0;
+			for (int slot = 0; slot < capacity; slot++)
+				claimedCells.setPlain(slot, EMPTY);
+		}
+		else {
+			for (int i = 0; i < nbUsedSlots.get(); i++)
+				claimedCells.setPlain(usedSlots[i], EMPTY);
+		}
+		nbUsedSlots.set(0);
+	}
+
+	/**
+	 * Returns the element of claims where the claim of a cell is stored.
+	 * @param cell the index of the cell
+	 * @param insert true to store the cell in the table of the claimed cells if it is not there
+	 * @return the element, -1 if the cell is not claimed and insert is false
+	 */
+	private int getClaimSlot(long cell, boolean insert) {
+		if (claimedCells == null)
+			return (int) cell;
+		int slot = (int) ((cell * 0x9e3779b97f4a7c15L) >>> claimShift);
+		while (true) {
+			long claimed = claimedCells.get(slot);
+			if (claimed == cell)
+				return slot;
+			if (claimed == EMPTY) {
+				if (!insert)
+					return -1;
+				// Another thread can store another cell in this slot first : the slot is then read again.
+				if (claimedCells.compareAndSet(slot, EMPTY, cell)) {
+					usedSlots[nbUsedSlots.getAndIncrement()] = slot;
+					return slot;
+				}
+			}
+			else slot = (slot + 1) & claimMask;
+		}
+	}
+
+	/**
+	 * Claims a cell for a person during the current movement phase. The claim of the lowest global id is kept.
+	 * @param cell the index of the cell
+	 * @param id the global id of the person
+	 */
+	void claim(long cell, int id) {
+		int slot = getClaimSlot(cell, true);
+		long mine = ((long) stamp << 32) | id;
+		long previous = claims.get(slot);
+		while (((int) (previous >>> 32) != stamp || (int) previous > id) && !claims.compareAndSet(slot, previous, mine))
+			previous = claims.get(slot);
+	}
+
+	/**
+	 * Claims a cell which can only be claimed by the thread computing its tile : no atomic operation is needed.
+	 * @param cell the index of the cell
+	 * @param id the global id of the person
+	 */
+	private void claimInTile(int cell, int id) {
+		long mine = ((long) stamp << 32) | id;
+		long previous = claims.getPlain(cell);
+		if ((int) (previous >>> 32) != stamp || (int) previous > id)
+			claims.setPlain(cell, mine);
+	}
+
+	/**
+	 * Computes the next position of a person (first pass) or checks his claim (second pass).
+	 * @param population the population
+	 * @param id the id of the person
+	 * @param resolve true for the second pass
+	 * @param candidateX scratch array for the x coordinates of the possible points
+	 * @param candidateY scratch array for the y coordinates of the possible points
+	 */
+	private void computeNextPosition(Population population, int id, boolean resolve, int[] candidateX, int[] candidateY) {
+		if (!population.canMove(id))
+			return;
+
+		if (!resolve)
+			population.computeNextPosition(id, candidateX, candidateY);
+
+		int nx = population.nextX.get(id);
+		int ny = population.nextY.get(id);
+		if (nx == population.x.get(id) && ny == population.y.get(id))
+			return;
+
+		long cell = (long) ny * population.width + nx;
+		int key = population.globalId.get(id);
+		if (!resolve) {
+			if (population.tiles != null && !population.tiles.isBorder(nx, ny))
+				claimInTile((int) cell, key);
+			else claim(cell, key);
+		}
+		else if (!hasClaimed(cell, key)) {
+			// A person with a lower id has claimed the same cell : stay at the same position.
+			population.nextX.set(id, population.x.get(id));
+			population.nextY.set(id, population.y.get(id));
+		}
+	}
+
+	/**
+	 * Returns true if a person won the claim of a cell during the current movement phase.
+	 * @param cell the index of the cell
+	 * @param id the global id of the person
+	 * @return true if the person has the lowest global id among the people who claimed the cell
+	 */
+	private boolean hasClaimed(long cell, int id) {
+		int slot = getClaimSlot(cell, false);
+		return slot >= 0 && claims.get(slot) == (((long) stamp << 32) | id);
+	}
+
+	/**
+	 * Task computing the next status of a range of the frontier.
+	 */
+	private class StatusTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Population population;
+		private final int from;
+		private final int to;
+
+		StatusTask(Population population, int from, int to) {
+			this.population = population;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (canSplit(to - from, CHUNK_SIZE)) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new StatusTask(population, from, middle), new StatusTask(population, middle, to));
+				return;
+			}
+
+			int[] neighbours = new int[8];
+			for (int i = from; i < to; i++)
+				population.computeNextStatus(population.frontier.get(i), neighbours);
+		}
+	}
+
+	/**
+	 * Task running an action for each index of a range.
+	 */
+	private class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final IntConsumer action;
+
+		RangeTask(int from, int to, IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (canSplit(to - from, CHUNK_SIZE)) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+				return;
+			}
+
+			for (int i = from; i < to; i++)
+				action.accept(i);
+		}
+	}
+
+	/**
+	 * Task computing the next position of a range of ids (first pass), or keeping only the winning claims
+	 * (second pass).
+	 */
+	private class MovementTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Population population;
+		private final int from;
+		private final int to;
+		private final boolean resolve;
+
+		MovementTask(Population population, int from, int to, boolean resolve) {
+			this.population = population;
+			this.from = from;
+			this.to = to;
+			this.resolve = resolve;
+		}
+
+		@Override
+		protected void compute() {
+			if (canSplit(to - from, CHUNK_SIZE)) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new MovementTask(population, from, middle, resolve),
+						new MovementTask(population, middle, to, resolve));
+				return;
+			}
+
+			int[] candidateX = new int[8];
+			int[] candidateY = new int[8];
+			for (int id = from; id < to; id++)
+				computeNextPosition(population, id, resolve, candidateX, candidateY);
+		}
+	}
+
+	/**
+	 * Task computing the next position of the people of a range of tiles (first pass), or keeping only the
+	 * winning claims (second pass).
+	 */
+	private class TileMovementTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Population population;
+		private final int from;
+		private final int to;
+		private final boolean resolve;
+
+		TileMovementTask(Population population, int from, int to, boolean resolve) {
+			this.population = population;
+			this.from = from;
+			this.to = to;
+			this.resolve = resolve;
+		}
+
+		@Override
+		protected void compute() {
+			if (canSplit(to - from, 1)) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new TileMovementTask(population, from, middle, resolve),
+						new TileMovementTask(population, middle, to, resolve));
+				return;
+			}
+
+			int[] candidateX = new int[8];
+			int[] candidateY = new int[8];
+			for (int tile = from; tile < to; tile++) {
+				int[] members = population.tiles.getMembers(tile);
+				int nbMembers = population.tiles.getNbMembers(tile);
+				for (int i = 0; i < nbMembers; i++)
+					computeNextPosition(population, members[i], resolve, candidateX, candidateY);
+			}
+		}
+	}
+}
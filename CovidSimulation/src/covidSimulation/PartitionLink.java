@@ -0,0 +1,88 @@
+package covidSimulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Loopback socket between the processes of two neighbouring bands of a partitioned simulation.
+ * @author Natacha
+ *
+ */
+class PartitionLink implements Closeable {
+
+	/**
+	 * Time to wait for the neighbour process to start listening (ms).
+	 */
+	private static final int CONNECT_TIMEOUT = 30000;
+
+	/**
+	 * The socket.
+	 */
+	private final Socket socket;
+
+	/**
+	 * The streams of the socket.
+	 */
+	final DataInputStream in;
+	final DataOutputStream out;
+
+	/**
+	 * Constructor.
+	 * @param socket a connected socket
+	 * @throws IOException if the streams can not be opened
+	 */
+	private PartitionLink(Socket socket) throws IOException {
+		this.socket = socket;
+		socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+	}
+
+	/**
+	 * Waits for the neighbour process to connect.
+	 * @param port the local port
+	 * @return the link
+	 * @throws IOException if the connection fails
+	 */
+	static PartitionLink accept(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+			return new PartitionLink(server.accept());
+		}
+	}
+
+	/**
+	 * Connects to the neighbour process, waiting for it to listen.
+	 * @param port the port of the neighbour process
+	 * @return the link
+	 * @throws IOException if the connection fails
+	 */
+	static PartitionLink connect(int port) throws IOException {
+		long end = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		while (true) {
+			try {
+				return new PartitionLink(new Socket(InetAddress.getLoopbackAddress(), port));
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > end)
+					throw e;
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
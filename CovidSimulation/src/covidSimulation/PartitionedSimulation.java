@@ -0,0 +1,477 @@
+package covidSimulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs one simulation without Repast across several local processes, each one owning a band of rows of the grid,
+ * so that the population is not limited by the heap of one JVM.
+ * Each process stores the people of its band and, as ghosts, the people of the two rows above and below
+ * (a person looks at the cells around him, and the distancing strategy looks at the cells around these cells).
+ * At each tick, the neighbouring processes exchange over loopback sockets :
+ * <ul>
+ * <li>the people of their border rows, which become ghosts on the other side ;</li>
+ * <li>the contaminations caused by the ghosts, sent back to their owner ;</li>
+ * <li>the claims of the cells of the border rows, so that both sides choose the same person for a cell ;</li>
+ * <li>the people who have moved into the other band.</li>
+ * </ul>
+ * The counters are then summed from the last process to the first one, which prints one line per tick.
+ * The people are placed with a permutation of the cells and draw all their random numbers from their own
+ * stream, and the moves are decided by the engine from the occupancy at the beginning of the tick :
+ * the epidemic curves do not depend on the number of processes for a given seed, and are the curves of a run
+ * in one process, with or without Repast.
+ * Usage : PartitionedSimulation &lt;parameters.xml&gt; &lt;number of processes&gt; &lt;number of ticks&gt; [name=value ...]
+ * @author Natacha
+ *
+ */
+public class PartitionedSimulation {
+
+	/**
+	 * The number of rows stored around the band.
+	 */
+	static final int HALO = 2;
+
+	/**
+	 * The first port used by the links between the processes (the process i listens on PORT + i).
+	 */
+	static int PORT = 47100;
+
+	/**
+	 * The header of the output.
+	 */
+	static final String HEADER = "tick," + TickCounters.HEADER;
+
+	/**
+	 * The number of this process and the number of processes.
+	 */
+	private final int rank;
+	private final int nbProcesses;
+
+	/**
+	 * The parameters of the simulation.
+	 */
+	private final ContextCreator creator = new ContextCreator();
+
+	/**
+	 * The rows of the band owned by this process (bandFrom included, bandTo excluded).
+	 */
+	private final int bandFrom;
+	private final int bandTo;
+
+	/**
+	 * The people of the band and the ghosts.
+	 */
+	final Population population;
+
+	/**
+	 * The links with the processes of the band above and of the band below (null for the first and the last band).
+	 */
+	private PartitionLink up;
+	private PartitionLink down;
+
+	/**
+	 * Constructor : creates the people of the band.
+	 * @param params the parameters of the simulation
+	 * @param rank the number of this process
+	 * @param nbProcesses the number of processes
+	 * @throws IOException if the file of the sites of the places can not be read
+	 */
+	PartitionedSimulation(HeadlessParameters params, int rank, int nbProcesses) throws IOException {
+		this.rank = rank;
+		this.nbProcesses = nbProcesses;
+		creator.readParameters(params::getValue);
+
+		int width = creator.gridWidth;
+		int height = creator.gridHeight;
+		if (height / nbProcesses < HALO)
+			throw new IllegalArgumentException("Each band must have at least " + HALO + " rows");
+		this.bandFrom = (int) ((long) height * rank / nbProcesses);
+		this.bandTo = (int) ((long) height * (rank + 1) / nbProcesses);
+
+		int windowFrom = Math.max(bandFrom - HALO, 0);
+		int windowTo = Math.min(bandTo + HALO, height);
+		long nbPeople = (long) creator.numberOfSusceptibleAgents + creator.numberOfInfectedAgents;
+		int capacity = (int) (nbPeople * (windowTo - windowFrom) / height) + 16;
+		long seed = params.getInteger("randomSeed", 0);
+
+		this.population = new Population(width, windowTo - windowFrom, windowFrom, height, capacity, seed,
+				creator.scenario, creator.sparseGrid, creator.createStorage());
+		population.setNumberOfThreads(params.getInteger("numberOfThreads", 1));
+		creator.createPlaces(population);
+		creator.createPeople(population, seed, bandFrom, bandTo);
+	}
+
+	/**
+	 * Opens the links with the neighbouring processes. Each process waits for the process below, then
+	 * connects to the process above.
+	 * @param port the first port
+	 * @throws IOException if a link can not be opened
+	 */
+	void connect(int port) throws IOException {
+		if (rank < nbProcesses - 1)
+			down = PartitionLink.accept(port + rank);
+		if (rank > 0)
+			up = PartitionLink.connect(port + rank - 1);
+	}
+
+	/**
+	 * Runs the simulation. The first process prints the counters of each tick.
+	 * @param nbTicks the number of ticks
+	 * @param out the output of the counters
+	 * @throws IOException if a link fails
+	 */
+	void run(int nbTicks, PrintStream out) throws IOException {
+		if (rank == 0)
+			out.println(HEADER);
+		for (int t = 1; t <= nbTicks; t++) {
+			tick();
+			report(t, out);
+		}
+	}
+
+	/**
+	 * Closes the links and releases the threads.
+	 * @throws IOException if a link can not be closed
+	 */
+	void close() throws IOException {
+		population.dispose();
+		if (up != null)
+			up.close();
+		if (down != null)
+			down.close();
+	}
+
+	/**
+	 * Computes one tick : the same phases as Population, with an exchange with the neighbours between them.
+	 * @throws IOException if a link fails
+	 */
+	void tick() throws IOException {
+		population.clearGhosts();
+		exchange(this::sendBorderPeople, this::receiveGhosts);
+
+		population.computeNextStatuses();
+		exchange(this::sendContaminations, this::receiveContaminations);
+
+		population.engine.decideNextPositions(population);
+		exchange(this::sendClaims, this::receiveClaims);
+		population.engine.resolveClaims(population);
+
+		population.applyAll();
+		exchange(this::sendMigrants, this::receiveMigrants);
+	}
+
+	/**
+	 * Writes a message to a neighbour.
+	 */
+	private interface Sender {
+		void send(DataOutputStream out, boolean towardsUp) throws IOException;
+	}
+
+	/**
+	 * Reads a message from a neighbour.
+	 */
+	private interface Receiver {
+		void receive(DataInputStream in, boolean fromUp) throws IOException;
+	}
+
+	/**
+	 * Exchanges a message with each neighbour. A process first reads the message of the process above, then
+	 * writes to the process below : the messages flow down the bands and back up without deadlock.
+	 * @param sender writes the message for a neighbour
+	 * @param receiver reads the message of a neighbour
+	 * @throws IOException if a link fails
+	 */
+	private void exchange(Sender sender, Receiver receiver) throws IOException {
+		if (up != null) {
+			receiver.receive(up.in, true);
+			sender.send(up.out, true);
+			up.out.flush();
+		}
+		if (down != null) {
+			sender.send(down.out, false);
+			down.out.flush();
+			receiver.receive(down.in, false);
+		}
+	}
+
+	/**
+	 * Returns the local row of a global row.
+	 */
+	private int local(int gy) {
+		return gy - population.originY;
+	}
+
+	/**
+	 * Returns the global row of a local row.
+	 */
+	private int global(int ly) {
+		return ly + population.originY;
+	}
+
+	/**
+	 * Returns the id of the person of this band located in a cell.
+	 * @param px the x coordinate
+	 * @param gy the global row
+	 * @return the id, -1 if the cell is free or occupied by a ghost
+	 */
+	private int ownerAt(int px, int gy) {
+		int id = population.getAgentAt(px, local(gy));
+		return (id >= 0 && !population.isGhost(id)) ? id : -1;
+	}
+
+	/**
+	 * Sends the people of the border rows, which are ghosts for the neighbour.
+	 */
+	private void sendBorderPeople(DataOutputStream out, boolean towardsUp) throws IOException {
+		int from = towardsUp ? bandFrom : bandTo - HALO;
+		List<Integer> ids = new ArrayList<>();
+		for (int gy = from; gy < from + HALO; gy++)
+			for (int px = 0; px < population.width; px++) {
+				int id = ownerAt(px, gy);
+				if (id >= 0)
+					ids.add(id);
+			}
+
+		out.writeInt(ids.size());
+		for (int id : ids) {
+			out.writeInt(population.globalId.get(id));
+			out.writeInt(population.x.get(id));
+			out.writeInt(global(population.y.get(id)));
+			out.writeByte(population.getStatus(id));
+			out.writeByte(population.getFlags(id));
+		}
+	}
+
+	/**
+	 * Receives the people of the border rows of a neighbour as ghosts.
+	 */
+	private void receiveGhosts(DataInputStream in, boolean fromUp) throws IOException {
+		int nb = in.readInt();
+		for (int i = 0; i < nb; i++) {
+			int key = in.readInt();
+			int px = in.readInt();
+			int gy = in.readInt();
+			int status = in.readByte();
+			int flags = in.readByte();
+			population.addGhost(key, px, local(gy), status, flags);
+		}
+	}
+
+	/**
+	 * Sends the contaminations caused by the ghosts back to their owner.
+	 */
+	private void sendContaminations(DataOutputStream out, boolean towardsUp) throws IOException {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < population.getNbGhosts(); i++) {
+			int id = population.getGhost(i);
+			if (population.contaminated.get(id) > 0 && (global(population.y.get(id)) < bandFrom) == towardsUp)
+				ids.add(id);
+		}
+
+		out.writeInt(ids.size());
+		for (int id : ids) {
+			out.writeInt(population.x.get(id));
+			out.writeInt(global(population.y.get(id)));
+			out.writeInt(population.contaminated.get(id));
+		}
+	}
+
+	/**
+	 * Adds the contaminations caused by the people of this band as ghosts of a neighbour.
+	 * Nobody has moved since the ghosts were sent, so the people are found at the same position.
+	 */
+	private void receiveContaminations(DataInputStream in, boolean fromUp) throws IOException {
+		int nb = in.readInt();
+		for (int i = 0; i < nb; i++) {
+			int px = in.readInt();
+			int gy = in.readInt();
+			int count = in.readInt();
+			population.addContaminations(ownerAt(px, gy), count);
+		}
+	}
+
+	/**
+	 * Sends the claims of the cells of the two rows on each side of the border.
+	 */
+	private void sendClaims(DataOutputStream out, boolean towardsUp) throws IOException {
+		// The first row which can be claimed by both sides, and the two rows of this band whose people can claim it
+		int contested = towardsUp ? bandFrom - 1 : bandTo - 1;
+		int from = towardsUp ? bandFrom : bandTo - 2;
+		List<Integer> ids = new ArrayList<>();
+		for (int gy = Math.max(from, bandFrom); gy < Math.min(from + 2, bandTo); gy++)
+			for (int px = 0; px < population.width; px++) {
+				int id = ownerAt(px, gy);
+				if (id < 0 || (population.nextX.get(id) == px && population.nextY.get(id) == population.y.get(id)))
+					continue;
+				int target = global(population.nextY.get(id));
+				if (target == contested || target == contested + 1)
+					ids.add(id);
+			}
+
+		out.writeInt(ids.size());
+		for (int id : ids) {
+			out.writeInt(population.nextX.get(id));
+			out.writeInt(global(population.nextY.get(id)));
+			out.writeInt(population.globalId.get(id));
+		}
+	}
+
+	/**
+	 * Adds the claims of a neighbour to the claims of this band.
+	 */
+	private void receiveClaims(DataInputStream in, boolean fromUp) throws IOException {
+		int nb = in.readInt();
+		for (int i = 0; i < nb; i++) {
+			int px = in.readInt();
+			int gy = in.readInt();
+			int key = in.readInt();
+			population.engine.claim((long) local(gy) * population.width + px, key);
+		}
+	}
+
+	/**
+	 * Sends the people who have moved out of the band, and removes them from this band.
+	 */
+	private void sendMigrants(DataOutputStream out, boolean towardsUp) throws IOException {
+		int gy = towardsUp ? bandFrom - 1 : bandTo;
+		List<Integer> ids = new ArrayList<>();
+		for (int px = 0; px < population.width; px++) {
+			int id = ownerAt(px, gy);
+			if (id >= 0)
+				ids.add(id);
+		}
+
+		out.writeInt(ids.size());
+		for (int id : ids) {
+			out.writeInt(population.globalId.get(id));
+			out.writeInt(population.x.get(id));
+			out.writeInt(gy);
+			out.writeByte(population.getStatus(id));
+			out.writeByte(population.getGoal(id));
+			out.writeByte(population.getAge(id));
+			out.writeByte(population.getFlags(id));
+			out.writeInt(population.getTimer(id));
+			out.writeInt(population.contaminated.get(id));
+			out.writeLong(population.random.getState(id));
+			population.release(id);
+		}
+	}
+
+	/**
+	 * Receives the people who have moved into the band.
+	 */
+	private void receiveMigrants(DataInputStream in, boolean fromUp) throws IOException {
+		int nb = in.readInt();
+		for (int i = 0; i < nb; i++) {
+			int key = in.readInt();
+			int px = in.readInt();
+			int gy = in.readInt();
+			int status = in.readByte();
+			int goal = in.readByte();
+			int age = in.readByte();
+			int flags = in.readByte();
+			int timer = in.readInt();
+
+			// The person has already been counted as infected by the band he comes from.
+			int id = population.addAt(key, px, local(gy));
+			population.setMigrantAttributes(id, Population.pack(status, status, goal, age,
+					flags & (Population.FLAG_AT_RISK | Population.FLAG_MASK), timer));
+			population.addContaminations(id, in.readInt());
+			population.random.setState(id, in.readLong());
+		}
+	}
+
+	/**
+	 * Sums the counters of all the bands : each process adds its counters to the sums of the bands below and
+	 * sends them to the process above. The first process prints them.
+	 * @param tick the current tick
+	 * @param out the output of the counters
+	 * @throws IOException if a link fails
+	 */
+	private void report(int tick, PrintStream out) throws IOException {
+		TickCounters counters = new TickCounters();
+		if (down != null)
+			for (int i = 0; i < counters.values.length; i++)
+				counters.values[i] = down.in.readLong();
+
+		counters.add(population);
+
+		if (up != null) {
+			for (long value : counters.values)
+				up.out.writeLong(value);
+			up.out.flush();
+			return;
+		}
+		out.println(tick + "," + counters.toCsv());
+	}
+
+	/**
+	 * Starts the processes of a simulation (or runs a process when called with --worker).
+	 * @param args the parameters file, the number of processes, the number of ticks and the modified parameters
+	 * @throws Exception if the simulation fails
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("--worker")) {
+			int rank = Integer.parseInt(args[1]);
+			int nbProcesses = Integer.parseInt(args[2]);
+			int port = Integer.parseInt(args[3]);
+			HeadlessParameters params = new HeadlessParameters(new File(args[4]));
+			int nbTicks = Integer.parseInt(args[5]);
+			params.setAll(Arrays.copyOfRange(args, 6, args.length));
+
+			PartitionedSimulation simulation = new PartitionedSimulation(params, rank, nbProcesses);
+			simulation.connect(port);
+			simulation.run(nbTicks, System.out);
+			simulation.close();
+			return;
+		}
+
+		if (args.length < 3) {
+			System.err.println("Usage : PartitionedSimulation <parameters.xml> <number of processes> <number of ticks> [name=value ...]");
+			System.exit(1);
+		}
+
+		File file = new File(args[0]);
+		int nbProcesses = Integer.parseInt(args[1]);
+		int nbTicks = Integer.parseInt(args[2]);
+		HeadlessParameters params = new HeadlessParameters(file);
+		params.setAll(Arrays.copyOfRange(args, 3, args.length));
+
+		// All the processes must use the same seed
+		if (params.getValue("randomSeed") == null)
+			params.set("randomSeed", Integer.toString((int) System.currentTimeMillis()));
+
+		if (nbProcesses == 1) {
+			PartitionedSimulation simulation = new PartitionedSimulation(params, 0, 1);
+			simulation.run(nbTicks, System.out);
+			simulation.close();
+			return;
+		}
+
+		String java = ProcessHandle.current().info().command().orElse("java");
+		List<Process> processes = new ArrayList<>();
+		for (int rank = 0; rank < nbProcesses; rank++) {
+			List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+					PartitionedSimulation.class.getName(), "--worker", Integer.toString(rank),
+					Integer.toString(nbProcesses), Integer.toString(PORT), file.getPath(), Integer.toString(nbTicks)));
+			command.addAll(Arrays.asList(params.toAssignments()));
+
+			ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+			if (rank == 0)
+				builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			else builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+			processes.add(builder.start());
+		}
+
+		int exitCode = 0;
+		for (Process process : processes)
+			exitCode = Math.max(exitCode, process.waitFor());
+		System.exit(exitCode);
+	}
+}
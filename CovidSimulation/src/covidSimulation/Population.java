@@ -0,0 +1,2269 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import repast.simphony.context.Context;
+import repast.simphony.engine.schedule.ScheduledMethod;
+import repast.simphony.space.grid.Grid;
+import repast.simphony.space.grid.GridPoint;
+import repast.simphony.space.projection.ProjectionEvent;
+import repast.simphony.space.projection.ProjectionListener;
+
+/**
+ * Struct-of-arrays store of all the people of the simulation.
+ * Each person is identified by a stable id, which is the index of his attributes in the arrays below.
+ * The status phase and the movement phase of each tick are computed by sweeping these arrays linearly :
+ * the Agent objects added to the context are only thin views on this store, used by the Repast displays
+ * and data sets. A change of status is a write in the arrays, the view of a person stays in the context
+ * until he disappears.
+ * The population listens to the grid so that the positions and the occupancy grid stay in sync with
+ * every move, add and remove of an agent.
+ * <p>
+ * Each array is a column (see WorldStorage) : an array on the heap, or buffers outside the heap when the population
+ * is run without Repast with a world larger than the heap.
+ * @author Natacha
+ *
+ */
+public class Population implements ProjectionListener<Agent> {
+
+	/**
+	 * Status of a slot whose deceased agent has disappeared from the context.
+	 * This slot is skipped by the sweeps.
+	 */
+	public static final int REMOVED_STATUS = 5;
+
+	/**
+	 * The bits used in the flags of a person.
+	 */
+	static final int FLAG_AT_RISK = 1;
+	static final int FLAG_MASK = 2;
+	static final int FLAG_GHOST = 4;
+
+	/**
+	 * The number of people stored (the ids are between 0 and size - 1).
+	 */
+	int size;
+
+	/**
+	 * The position and the mask of each attribute packed in the long of a person.
+	 * The timer takes the 32 high bits, so that it keeps the range of an int.
+	 */
+	private static final int STATUS_SHIFT = 0;
+	private static final int NEXT_STATUS_SHIFT = 3;
+	private static final int GOAL_SHIFT = 6;
+	private static final int AGE_SHIFT = 8;
+	private static final int FLAGS_SHIFT = 15;
+	private static final int TIMER_SHIFT = 32;
+	private static final long STATUS_MASK = 0x7;
+	private static final long GOAL_MASK = 0x3;
+	private static final long AGE_MASK = 0x7f;
+	private static final long FLAGS_MASK = 0x7;
+
+	/**
+	 * The attributes of each person packed in a long : the current status (susceptible, infected, infected without
+	 * symptoms, recovered, deceased or removed) and the next status computed during the status phase (3 bits each),
+	 * the goal (school, hospital, shopping, no goal, 2 bits), the age (7 bits), the flags (at increased risk, wears
+	 * a mask, ghost, 3 bits) and the timer (32 bits). A sweep reads all the attributes of a person in one load.
+	 * They are read and written with the accessors below (getStatus, setStatus...).
+	 */
+	LongColumn attributes;
+
+	/**
+	 * The current position of each person on the grid (-1 when the person is not on the grid).
+	 */
+	IntColumn x;
+	IntColumn y;
+
+	/**
+	 * The next position of each person, computed during the movement phase.
+	 */
+	IntColumn nextX;
+	IntColumn nextY;
+
+	/**
+	 * The number of people contaminated by each infected person. Used to compute R0.
+	 */
+	IntColumn contaminated;
+
+	/**
+	 * The view of each person added to the context (null when removed, or when the population has no context).
+	 */
+	Agent[] views;
+
+	/**
+	 * The global id of each person : the id of the person in the whole simulation, when the simulation is split
+	 * between several stores (equal to the id otherwise). It keys the random stream of the person and decides
+	 * which person moves when several people want to move to the same cell.
+	 */
+	IntColumn globalId;
+
+	/**
+	 * The ids of the slots which can be reused by the next people added (a person moved to another store,
+	 * or a ghost).
+	 */
+	int[] freeIds = new int[16];
+	int nbFreeIds;
+
+	/**
+	 * The ghosts : copies of the people of another store located around the rows of this store. They are seen by
+	 * the people of this store (they occupy their cell and can infect them) but they are not computed.
+	 */
+	private int[] ghosts = new int[16];
+	private int nbGhosts;
+
+	/**
+	 * The active people : the infected and deceased people, whose timers are running.
+	 * activeIndex gives the index of each person in the active array (-1 if not active).
+	 */
+	IntColumn active;
+	IntColumn activeIndex;
+	int activeCount;
+
+	/**
+	 * The last status sweep during which each person was visited, used to visit each susceptible
+	 * agent of the frontier only once.
+	 */
+	private IntColumn visitStamp;
+	private int stamp;
+
+	/**
+	 * The people visited by the current status phase : the active people and the susceptible agents around
+	 * the infected agents.
+	 */
+	IntColumn frontier;
+
+	/**
+	 * The engine running the phases, on one thread or on several threads.
+	 */
+	ParallelTickEngine engine = new ParallelTickEngine(1);
+
+	/**
+	 * The metrics of the ticks (null if the ticks are not measured).
+	 */
+	TickMetrics metrics;
+
+	/**
+	 * The context and the grid the people live in (both null for a population run without Repast).
+	 */
+	final Context<Agent> context;
+	final Grid<Agent> grid;
+
+	/**
+	 * The grid dimensions.
+	 */
+	final int width;
+	final int height;
+
+	/**
+	 * The rows of the grid stored by this population : the row y of the population is the row originY + y
+	 * of a grid of globalHeight rows (originY is 0 and globalHeight is height when the whole grid is stored).
+	 */
+	final int originY;
+	final int globalHeight;
+
+	/**
+	 * The memory where the columns of the people and the occupancy grid are stored.
+	 */
+	final WorldStorage storage;
+
+	/**
+	 * The occupied cells of the grid, with the id of the person located in each of them.
+	 */
+	final OccupancyGrid occupancy;
+
+	/**
+	 * The occupancy grid when every cell is stored (null on a sparse grid) : only a dense grid can be modified by
+	 * several threads, when the tiles are applied in parallel.
+	 */
+	private final DenseOccupancyGrid denseOccupancy;
+
+	/**
+	 * The number of occupied cells around each cell, the cell (x, y) being the element y * width + x.
+	 * It is created with the population or at the first tick with distancing, then updated at each move
+	 * (null before, and always null on a sparse grid).
+	 */
+	private byte[] neighbourCounts;
+
+	/**
+	 * Handle used to modify atomically the neighbour counts, when the tiles are applied by several threads.
+	 */
+	private static final VarHandle NEIGHBOUR_COUNT = MethodHandles.arrayElementVarHandle(byte[].class);
+
+	/**
+	 * The current tick : the number of status phases computed.
+	 */
+	long tick;
+
+	/**
+	 * The settings of the current tick, computed at the beginning of the status phase.
+	 */
+	TickContext tickContext;
+
+	/**
+	 * The number of people in the frontier of the current tick.
+	 */
+	private int nbFrontier;
+
+	/**
+	 * The decomposition of the grid into tiles used by the parallel engine (null if the people are split by id).
+	 */
+	TileDecomposition tiles;
+
+	/**
+	 * The lists of each tile used when the tiles are computed by several threads without Repast : the changes of
+	 * the active people deferred while the tiles are applied (the id of a person activated, ~id for a person
+	 * deactivated), the people of the frontier found in the tile, and the susceptible agents of other tiles
+	 * located around the infected agents of the tile.
+	 */
+	private int[][] activityChanges;
+	private int[] nbActivityChanges;
+	private int[][] tileFrontier;
+	private int[] nbTileFrontier;
+	private int[][] crossFrontier;
+	private int[] nbCrossFrontier;
+
+	/**
+	 * The active people sorted by tile, the people of the tile t being the elements tileStart[t] to
+	 * tileStart[t + 1] - 1 (the active people out of the grid are in a last bucket). Once the frontier of
+	 * the tiles is collected, tileStart gives the first element of the frontier of each tile.
+	 */
+	private int[] tileActive = new int[16];
+	private int[] tileStart;
+
+	/**
+	 * The settings of the simulation : probabilities and strategies.
+	 */
+	final Scenario scenario;
+
+	/**
+	 * The statistics of the population, updated at each transition.
+	 */
+	final PopulationStatistics statistics = new PopulationStatistics();
+
+	/**
+	 * The random streams of the people and of the simulation.
+	 */
+	final RandomStreams random;
+
+	/**
+	 * The fields of the moves towards the places, indexed by goal (null for the random goal).
+	 * They store the rows of this population, but their rows and their sites are the rows of the whole grid.
+	 */
+	final FlowField[] places = new FlowField[Agent.HOSPITAL_GOAL + 1];
+
+	/**
+	 * Scratch array used to store the ids of the infected neighbours of a susceptible agent.
+	 */
+	private final int[] infectedNeighbours = new int[8];
+
+	/**
+	 * The infection pressure field used in push mode (null in pull mode) : for each cell, the number of infected
+	 * neighbours of each infection class, 4 bits per class.
+	 */
+	private char[] pressure;
+
+	/**
+	 * Scratch arrays used to store the possible points to move on of an agent.
+	 */
+	private final int[] candidateX = new int[8];
+	private final int[] candidateY = new int[8];
+
+	/**
+	 * Constructor.
+	 * @param context the context the views are added to
+	 * @param grid the grid projection of the context
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 */
+	public Population(Context<Agent> context, Grid<Agent> grid, int capacity, long seed, Scenario scenario) {
+		this(context, grid, capacity, seed, scenario, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param context the context the views are added to
+	 * @param grid the grid projection of the context
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 * @param sparse true to store only the occupied cells of the grid (see SparseOccupancyGrid)
+	 */
+	public Population(Context<Agent> context, Grid<Agent> grid, int capacity, long seed, Scenario scenario,
+			boolean sparse) {
+		this(context, grid, capacity, seed, scenario, sparse, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Constructor.
+	 * @param context the context the views are added to
+	 * @param grid the grid projection of the context
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 * @param sparse true to store only the occupied cells of the grid (see SparseOccupancyGrid)
+	 * @param storage the memory where the people and the occupancy grid are stored (the views stay on the heap)
+	 */
+	public Population(Context<Agent> context, Grid<Agent> grid, int capacity, long seed, Scenario scenario,
+			boolean sparse, WorldStorage storage) {
+		this(context, grid, grid.getDimensions().getWidth(), grid.getDimensions().getHeight(), 0,
+				grid.getDimensions().getHeight(), capacity, seed, scenario, sparse, storage);
+		grid.addProjectionListener(this);
+	}
+
+	/**
+	 * Constructor of a population run without Repast : the people are placed with addAt and the phases are
+	 * called directly.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 */
+	public Population(int width, int height, int capacity, long seed, Scenario scenario) {
+		this(width, height, capacity, seed, scenario, false);
+	}
+
+	/**
+	 * Constructor of a population run without Repast : the people are placed with addAt and the phases are
+	 * called directly.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 * @param sparse true to store only the occupied cells of the grid (see SparseOccupancyGrid)
+	 */
+	public Population(int width, int height, int capacity, long seed, Scenario scenario, boolean sparse) {
+		this(width, height, capacity, seed, scenario, sparse, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Constructor of a population run without Repast : the people are placed with addAt and the phases are
+	 * called directly.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 * @param sparse true to store only the occupied cells of the grid (see SparseOccupancyGrid)
+	 * @param storage the memory where the people and the occupancy grid are stored
+	 */
+	public Population(int width, int height, int capacity, long seed, Scenario scenario, boolean sparse,
+			WorldStorage storage) {
+		this(null, null, width, height, 0, height, capacity, seed, scenario, sparse, storage);
+	}
+
+	/**
+	 * Constructor of a population run without Repast which stores only some rows of the grid.
+	 * @param width the grid width
+	 * @param height the number of rows stored
+	 * @param originY the first row stored
+	 * @param globalHeight the height of the whole grid
+	 * @param capacity the expected number of people (the arrays grow if needed)
+	 * @param seed the seed of the random streams
+	 * @param scenario the settings of the simulation
+	 * @param sparse true to store only the occupied cells of the grid (see SparseOccupancyGrid)
+	 * @param storage the memory where the people and the occupancy grid are stored
+	 */
+	Population(int width, int height, int originY, int globalHeight, int capacity, long seed, Scenario scenario,
+			boolean sparse, WorldStorage storage) {
+		this(null, null, width, height, originY, globalHeight, capacity, seed, scenario, sparse, storage);
+	}
+
+	/**
+	 * Common constructor.
+	 */
+	private Population(Context<Agent> context, Grid<Agent> grid, int width, int height, int originY,
+			int globalHeight, int capacity, long seed, Scenario scenario, boolean sparse, WorldStorage storage) {
+		this.context = context;
+		this.grid = grid;
+		this.scenario = scenario;
+		this.storage = storage;
+		this.random = new RandomStreams(seed, capacity, storage);
+		this.width = width;
+		this.height = height;
+		this.originY = originY;
+		this.globalHeight = globalHeight;
+		if (sparse) {
+			this.denseOccupancy = null;
+			this.occupancy = new SparseOccupancyGrid(width, height, storage);
+		}
+		else {
+			this.denseOccupancy = new DenseOccupancyGrid(width, height, storage);
+			this.occupancy = denseOccupancy;
+		}
+
+		capacity = Math.max(capacity, 1);
+		attributes = storage.newLongColumn("attributes", capacity);
+		x = storage.newIntColumn("x", capacity);
+		y = storage.newIntColumn("y", capacity);
+		nextX = storage.newIntColumn("nextX", capacity);
+		nextY = storage.newIntColumn("nextY", capacity);
+		contaminated = storage.newIntColumn("contaminated", capacity);
+		views = (context != null) ? new Agent[capacity] : null;
+		globalId = storage.newIntColumn("globalId", capacity);
+		active = storage.newIntColumn("active", capacity);
+		activeIndex = storage.newIntColumn("activeIndex", capacity);
+		visitStamp = storage.newIntColumn("visitStamp", capacity);
+		frontier = storage.newIntColumn("frontier", capacity);
+		tickContext = new TickContext(tick, scenario, width, globalHeight);
+		if (scenario.isDistancing() && !sparse)
+			neighbourCounts = new byte[width * height];
+
+		// The moves of the agents do not wrap around the borders of the grid, neither do the fields.
+		// A field is computed when the first person goes to the place, on the rows of this population only.
+		// On a sparse grid, the fields only store their sites.
+		for (int g = Agent.SCHOOL_GOAL; g <= Agent.HOSPITAL_GOAL; g++)
+			places[g] = new FlowField(width, globalHeight, originY, height, sparse);
+		// We assume that school is located in position (0,0) (top left corner).
+		places[Agent.SCHOOL_GOAL].addSite(0, 0);
+		// We assume that shopping center is located in position (width - 1,height - 1).
+		places[Agent.SHOPPING_GOAL].addSite(width-1, globalHeight-1);
+		// We assume that hospital is located at the center of the grid.
+		places[Agent.HOSPITAL_GOAL].addSite(width/2, globalHeight/2);
+	}
+
+	/**
+	 * Adds a new susceptible person at the specified free cell.
+	 * His attributes can then be modified with setAttributes, for example with numbers drawn from his stream.
+	 * @param key the global id of the person, which keys his random stream
+	 * @param px the x coordinate of the cell
+	 * @param py the y coordinate of the cell
+	 * @return the id of the new person
+	 */
+	int addAt(int key, int px, int py) {
+		return addAt(key, px, py,
+				pack(Agent.SUSCEPTIBLE_STATUS, Agent.SUSCEPTIBLE_STATUS, Agent.RANDOM_GOAL, 0, 0, 0));
+	}
+
+	/**
+	 * Adds a new person at the specified free cell. In a population run with Repast, his view is added
+	 * to the context and moved to the cell.
+	 * @param key the global id of the person, which keys his random stream
+	 * @param px the x coordinate of the cell
+	 * @param py the y coordinate of the cell
+	 * @param attributes the packed attributes of the person (see pack)
+	 * @return the id of the new person
+	 */
+	int addAt(int key, int px, int py, long attributes) {
+		int id = newSlot();
+		globalId.set(id, key);
+		random.init(id, key);
+		setAttributes(id, attributes);
+
+		if (context != null) {
+			views[id] = new Agent(this, id);
+			context.add(views[id]);
+			grid.moveTo(views[id], px, py);
+			syncLocation(id);
+		}
+		else setLocation(id, px, py);
+		nextX.set(id, px);
+		nextY.set(id, py);
+		if (tiles != null)
+			tiles.assign(id, px, py);
+
+		return id;
+	}
+
+	/**
+	 * Sets the attributes of a person. A person with an infected or deceased status becomes active.
+	 * The statistics count the person with his new status.
+	 * @param id the id of the person
+	 * @param status the status of the person
+	 * @param goal the goal of the person
+	 * @param age the age of the person
+	 * @param atRisk true if the person has an increased risk due to medical conditions
+	 * @param hasMask true if the person wears a mask
+	 */
+	void setAttributes(int id, int status, int goal, int age, boolean atRisk, boolean hasMask) {
+		setAttributes(id, pack(status, status, goal, age, (atRisk ? FLAG_AT_RISK : 0) | (hasMask ? FLAG_MASK : 0),
+				(status == Agent.DECEASED_STATUS) ? Agent.TIME_APPEARANCE : 0));
+	}
+
+	/**
+	 * Sets the packed attributes of a person (see pack). A person with an infected or deceased status becomes active.
+	 * The statistics count the person with his new status.
+	 * @param id the id of the person
+	 * @param attributes the packed attributes
+	 */
+	void setAttributes(int id, long attributes) {
+		setAttributes(id, attributes, false);
+	}
+
+	/**
+	 * Sets the packed attributes of a person who has just moved from another store (see pack). The statistics count
+	 * the person with his status, but not as a new infection : the store he comes from has already counted it.
+	 * @param id the id of the person
+	 * @param attributes the packed attributes
+	 */
+	void setMigrantAttributes(int id, long attributes) {
+		setAttributes(id, attributes, true);
+	}
+
+	/**
+	 * Sets the packed attributes of a person and counts him in the statistics.
+	 * @param id the id of the person
+	 * @param attributes the packed attributes
+	 * @param migrant true if the person comes from another store
+	 */
+	private void setAttributes(int id, long attributes, boolean migrant) {
+		if (getStatus(id) != REMOVED_STATUS)
+			statistics.remove(getStatus(id), contaminated.get(id));
+		this.attributes.set(id, attributes);
+		this.contaminated.set(id, 0);
+		int status = getStatus(id);
+		if (isInfected(status) || status == Agent.DECEASED_STATUS)
+			activate(id);
+		else deactivate(id);
+		if (migrant)
+			statistics.arrive(status);
+		else statistics.add(status);
+	}
+
+	/**
+	 * Returns a free slot for a new person : a released slot, or a new one at the end of the arrays.
+	 * The new person is not located on the grid and is not active.
+	 * @return the id of the slot
+	 */
+	private int newSlot() {
+		int id;
+		if (nbFreeIds > 0)
+			id = freeIds[--nbFreeIds];
+		else {
+			if (size == attributes.length())
+				grow();
+			id = size++;
+			setStatus(id, REMOVED_STATUS);
+			setNextStatus(id, REMOVED_STATUS);
+			x.set(id, -1);
+			y.set(id, -1);
+			activeIndex.set(id, -1);
+		}
+		return id;
+	}
+
+	/**
+	 * Removes a person from the store, in a population run without Repast : his slot can be reused.
+	 * @param id the id of the person
+	 */
+	void release(int id) {
+		if (!isGhost(id) && getStatus(id) != REMOVED_STATUS)
+			statistics.remove(getStatus(id), contaminated.get(id));
+		setLocation(id, -1, -1);
+		deactivate(id);
+		setStatus(id, REMOVED_STATUS);
+		setNextStatus(id, REMOVED_STATUS);
+		setFlags(id, 0);
+		contaminated.set(id, 0);
+		if (nbFreeIds == freeIds.length)
+			freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+		freeIds[nbFreeIds++] = id;
+	}
+
+	/**
+	 * Adds a ghost : the copy of a person of another store, seen by the people of this store but not computed.
+	 * @param key the global id of the person
+	 * @param px the x coordinate of the person
+	 * @param py the y coordinate of the person
+	 * @param status the status of the person
+	 * @param flags the flags of the person
+	 * @return the id of the ghost
+	 */
+	int addGhost(int key, int px, int py, int status, int flags) {
+		int id = newSlot();
+		globalId.set(id, key);
+		setStatus(id, status);
+		setNextStatus(id, status);
+		setFlags(id, flags | FLAG_GHOST);
+		this.contaminated.set(id, 0);
+		setLocation(id, px, py);
+		nextX.set(id, px);
+		nextY.set(id, py);
+
+		if (nbGhosts == ghosts.length)
+			ghosts = Arrays.copyOf(ghosts, ghosts.length * 2);
+		ghosts[nbGhosts++] = id;
+		return id;
+	}
+
+	/**
+	 * Removes all the ghosts.
+	 */
+	void clearGhosts() {
+		for (int i = 0; i < nbGhosts; i++)
+			release(ghosts[i]);
+		nbGhosts = 0;
+	}
+
+	/**
+	 * Returns the number of ghosts.
+	 * @return the number of ghosts
+	 */
+	int getNbGhosts() {
+		return nbGhosts;
+	}
+
+	/**
+	 * Returns the id of a ghost.
+	 * @param i the index of the ghost (between 0 and getNbGhosts() - 1)
+	 * @return the id of the ghost
+	 */
+	int getGhost(int i) {
+		return ghosts[i];
+	}
+
+	/**
+	 * Returns true if the person is a ghost.
+	 * @param id the id of the person
+	 * @return true if the person is the copy of a person of another store
+	 */
+	boolean isGhost(int id) {
+		return (getFlags(id) & FLAG_GHOST) != 0;
+	}
+
+	/**
+	 * Doubles the capacity of the arrays.
+	 */
+	private void grow() {
+		int capacity = attributes.length() * 2;
+		attributes = attributes.copyOf(capacity);
+		x = x.copyOf(capacity);
+		y = y.copyOf(capacity);
+		nextX = nextX.copyOf(capacity);
+		nextY = nextY.copyOf(capacity);
+		contaminated = contaminated.copyOf(capacity);
+		if (views != null)
+			views = Arrays.copyOf(views, capacity);
+		globalId = globalId.copyOf(capacity);
+		active = active.copyOf(capacity);
+		activeIndex = activeIndex.copyOf(capacity);
+		visitStamp = visitStamp.copyOf(capacity);
+		frontier = frontier.copyOf(capacity);
+	}
+
+	/**
+	 * Creates the views of the people of a population run without Repast, so that the methods of Agent can be
+	 * called on them. The views are not added to any context.
+	 */
+	void createViews() {
+		views = new Agent[attributes.length()];
+		for (int id = 0; id < size; id++)
+			views[id] = new Agent(this, id);
+	}
+
+	/**
+	 * Prepares the population to receive a state read from a snapshot : removes all the people from the grid
+	 * (and their views from the context) and makes room for the people of the snapshot.
+	 * The arrays of the people must then be filled, and endRestore called.
+	 * @param size the number of people stored in the snapshot
+	 */
+	void beginRestore(int size) {
+		if (nbGhosts > 0)
+			throw new IllegalStateException("A population with ghosts can not be restored");
+		for (int id = 0; id < this.size; id++) {
+			if (views != null && views[id] != null) {
+				context.remove(views[id]);
+				views[id] = null;
+			}
+			setLocation(id, -1, -1);
+		}
+		while (attributes.length() < size)
+			grow();
+		this.size = size;
+		activeCount = 0;
+		nbFreeIds = 0;
+		stamp = 0;
+		visitStamp.fill(0, visitStamp.length(), 0);
+		if (tiles != null)
+			tiles.clear();
+	}
+
+	/**
+	 * Ends the restoration of a snapshot, once the arrays of the people are filled : places the people on the grid
+	 * (with their views in the context), and rebuilds the index of the active people and the tiles.
+	 */
+	void endRestore() {
+		tickContext = new TickContext(tick, scenario, width, globalHeight);
+		nbFrontier = 0;
+		int[] savedX = new int[size];
+		int[] savedY = new int[size];
+		for (int id = 0; id < size; id++) {
+			savedX[id] = x.get(id);
+			savedY[id] = y.get(id);
+		}
+		x.fill(0, size, -1);
+		y.fill(0, size, -1);
+		activeIndex.fill(0, size, -1);
+		for (int i = 0; i < activeCount; i++)
+			activeIndex.set(active.get(i), i);
+
+		for (int id = 0; id < size; id++) {
+			if (getStatus(id) == REMOVED_STATUS || savedX[id] < 0)
+				continue;
+			if (context != null) {
+				// The adder of the grid does not place the view : it is moved to its cell, which is free as
+				// the people already placed are at their own cells.
+				views[id] = new Agent(this, id);
+				context.add(views[id]);
+				grid.moveTo(views[id], savedX[id], savedY[id]);
+			}
+			setLocation(id, savedX[id], savedY[id]);
+			if (tiles != null)
+				tiles.assign(id, savedX[id], savedY[id]);
+		}
+	}
+
+	/**
+	 * Saves the state of the simulation in a snapshot, which can be restored to continue the run.
+	 * Can be scheduled at the end of a tick.
+	 * @param file the snapshot file
+	 * @throws IOException if the file can not be written
+	 */
+	public void saveSnapshot(String file) throws IOException {
+		Snapshot.save(this, Paths.get(file));
+	}
+
+	/**
+	 * Returns the occupied cells, which can be used by custom movement rules.
+	 * @return the occupancy grid
+	 */
+	public OccupancyGrid getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * Returns the random streams of the simulation.
+	 * @return the random streams
+	 */
+	public RandomStreams getRandom() {
+		return random;
+	}
+
+	/**
+	 * Returns the statistics of the population.
+	 * @return the statistics
+	 */
+	public PopulationStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Adds people contaminated by a person in another store, or brought by a person coming from another store.
+	 * @param id the id of the person
+	 * @param nb the number of people contaminated
+	 */
+	void addContaminations(int id, int nb) {
+		contaminated.set(id, contaminated.get(id) + nb);
+		// R0 only counts the contaminations of the people currently infected.
+		if (isInfected(getStatus(id)))
+			statistics.addContaminations(nb);
+	}
+
+	/**
+	 * Returns the metrics of the ticks.
+	 * @return the metrics, null if the ticks are not measured
+	 */
+	public TickMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics measuring the ticks.
+	 * @param metrics the metrics, null to stop measuring the ticks
+	 */
+	public void setMetrics(TickMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Keeps the positions and the occupancy grid in sync with the grid when an agent is added,
+	 * moved or removed.
+	 */
+	@Override
+	public void projectionEventOccurred(ProjectionEvent<Agent> evt) {
+		Agent a = evt.getSubject();
+		if (a == null || a.population != this)
+			return;
+
+		switch (evt.getType()) {
+			case OBJECT_ADDED:
+			case OBJECT_MOVED:
+			case OBJECT_REMOVED:
+				syncLocation(a.id);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Reads the location of a person on the grid and updates his position and the occupancy grid.
+	 * @param id the id of the person
+	 */
+	private void syncLocation(int id) {
+		GridPoint p = grid.getLocation(views[id]);
+		if (p == null)
+			setLocation(id, -1, -1);
+		else setLocation(id, p.getX(), p.getY());
+	}
+
+	/**
+	 * Updates the position of a person and the occupancy grid.
+	 * @param id the id of the person
+	 * @param nx the new x coordinate (-1 if the person leaves the grid)
+	 * @param ny the new y coordinate (-1 if the person leaves the grid)
+	 */
+	void setLocation(int id, int nx, int ny) {
+		setLocation(id, nx, ny, false);
+	}
+
+	/**
+	 * Updates the position of a person and the occupancy grid.
+	 * @param id the id of the person
+	 * @param nx the new x coordinate (-1 if the person leaves the grid)
+	 * @param ny the new y coordinate (-1 if the person leaves the grid)
+	 * @param concurrent true if other threads move other people at the same time (only with tiles, on a dense grid)
+	 */
+	private void setLocation(int id, int nx, int ny, boolean concurrent) {
+		if (x.get(id) == nx && y.get(id) == ny)
+			return;
+		if (x.get(id) >= 0) {
+			if (concurrent)
+				denseOccupancy.clearConcurrently(x.get(id), y.get(id));
+			else occupancy.clear(x.get(id), y.get(id));
+			if (neighbourCounts != null)
+				addToNeighbourCounts(x.get(id), y.get(id), -1, concurrent);
+		}
+		x.set(id, nx);
+		y.set(id, ny);
+		if (nx >= 0) {
+			if (concurrent)
+				denseOccupancy.setConcurrently(nx, ny, id);
+			else occupancy.set(nx, ny, id);
+			if (neighbourCounts != null)
+				addToNeighbourCounts(nx, ny, 1, concurrent);
+		}
+	}
+
+	/**
+	 * Adds a number to the neighbour counts of the cells around a cell.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @param delta 1 when the cell becomes occupied, -1 when it becomes free
+	 * @param concurrent true if other threads modify the counts at the same time
+	 */
+	private void addToNeighbourCounts(int cx, int cy, int delta, boolean concurrent) {
+		for (int ny = Math.max(cy-1, 0); ny <= Math.min(cy+1, height-1); ny++) {
+			int row = ny * width;
+			for (int nx = Math.max(cx-1, 0); nx <= Math.min(cx+1, width-1); nx++) {
+				// The cell itself is not one of its neighbours.
+				if (nx == cx && ny == cy)
+					continue;
+				if (concurrent)
+					NEIGHBOUR_COUNT.getAndAdd(neighbourCounts, row + nx, (byte) delta);
+				else neighbourCounts[row + nx] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Creates the neighbour counts from the occupancy grid, so that they are then updated at each move.
+	 */
+	private void startNeighbourCounts() {
+		neighbourCounts = new byte[width * height];
+		for (int cy = 0; cy < height; cy++)
+			for (int cx = 0; cx < width; cx++)
+				neighbourCounts[cy * width + cx] = (byte) countNeighbours(cx, cy);
+	}
+
+	/**
+	 * Adds a person to the active people.
+	 * @param id the id of the person
+	 */
+	private void activate(int id) {
+		if (activeIndex.get(id) >= 0)
+			return;
+		active.set(activeCount, id);
+		activeIndex.set(id, activeCount);
+		activeCount++;
+	}
+
+	/**
+	 * Removes a person from the active people.
+	 * @param id the id of the person
+	 */
+	private void deactivate(int id) {
+		int index = activeIndex.get(id);
+		if (index < 0)
+			return;
+		activeCount--;
+		int last = active.get(activeCount);
+		active.set(index, last);
+		activeIndex.set(last, index);
+		activeIndex.set(id, -1);
+	}
+
+	/**
+	 * Adds a person to the active people or removes him, at once or after the tiles are applied.
+	 * @param id the id of the person
+	 * @param activated true to add the person, false to remove him
+	 * @param tile the tile being applied by the current thread (-1 to change the active people at once)
+	 */
+	private void setActive(int id, boolean activated, int tile) {
+		if (tile >= 0)
+			addToTile(activityChanges, nbActivityChanges, tile, activated ? id : ~id);
+		else if (activated)
+			activate(id);
+		else deactivate(id);
+	}
+
+	/**
+	 * Applies the changes of the active people deferred while the tiles were applied, in the order of the tiles.
+	 */
+	private void applyActivityChanges() {
+		for (int tile = 0; tile < nbActivityChanges.length; tile++) {
+			int[] changes = activityChanges[tile];
+			for (int i = 0; i < nbActivityChanges[tile]; i++) {
+				if (changes[i] >= 0)
+					activate(changes[i]);
+				else deactivate(~changes[i]);
+			}
+			nbActivityChanges[tile] = 0;
+		}
+	}
+
+	/**
+	 * Adds an id to a list of a tile, which grows if needed.
+	 * @param lists the lists of the tiles
+	 * @param nbIds the number of ids of each list
+	 * @param tile the tile
+	 * @param id the id added
+	 */
+	private static void addToTile(int[][] lists, int[] nbIds, int tile, int id) {
+		if (nbIds[tile] == lists[tile].length)
+			lists[tile] = Arrays.copyOf(lists[tile], lists[tile].length * 2);
+		lists[tile][nbIds[tile]++] = id;
+	}
+
+	/**
+	 * Returns the number of active people (infected or deceased).
+	 * @return the number of active people
+	 */
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	/**
+	 * Returns the number of people stored (including the deceased ones).
+	 * @return the number of people stored
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Packs the attributes of a person in a long.
+	 * @param status the status
+	 * @param nextStatus the next status
+	 * @param goal the goal
+	 * @param age the age (at most 127)
+	 * @param flags the flags
+	 * @param timer the timer
+	 * @return the packed attributes
+	 */
+	static long pack(int status, int nextStatus, int goal, int age, int flags, int timer) {
+		return (status & STATUS_MASK) << STATUS_SHIFT
+				| (nextStatus & STATUS_MASK) << NEXT_STATUS_SHIFT
+				| (goal & GOAL_MASK) << GOAL_SHIFT
+				| (age & AGE_MASK) << AGE_SHIFT
+				| (flags & FLAGS_MASK) << FLAGS_SHIFT
+				| (long) timer << TIMER_SHIFT;
+	}
+
+	/**
+	 * Returns an attribute of a person.
+	 * @param id the id of the person
+	 * @param shift the position of the attribute
+	 * @param mask the mask of the attribute
+	 * @return the value of the attribute
+	 */
+	private int getField(int id, int shift, long mask) {
+		return (int) ((attributes.get(id) >>> shift) & mask);
+	}
+
+	/**
+	 * Sets an attribute of a person, without changing the others.
+	 * Only the thread computing the person may call it.
+	 * @param id the id of the person
+	 * @param shift the position of the attribute
+	 * @param mask the mask of the attribute
+	 * @param value the new value of the attribute
+	 */
+	private void setField(int id, int shift, long mask, int value) {
+		attributes.set(id, (attributes.get(id) & ~(mask << shift)) | ((value & mask) << shift));
+	}
+
+	/**
+	 * Returns the status of a person : susceptible, infected, infected without symptoms, recovered, deceased or removed.
+	 * @param id the id of the person
+	 * @return the status
+	 */
+	int getStatus(int id) {
+		return getField(id, STATUS_SHIFT, STATUS_MASK);
+	}
+
+	/**
+	 * Sets the status of a person.
+	 * @param id the id of the person
+	 * @param status the new status
+	 */
+	void setStatus(int id, int status) {
+		setField(id, STATUS_SHIFT, STATUS_MASK, status);
+	}
+
+	/**
+	 * Returns the next status of a person, computed during the status phase and applied during the movement phase.
+	 * @param id the id of the person
+	 * @return the next status
+	 */
+	int getNextStatus(int id) {
+		return getField(id, NEXT_STATUS_SHIFT, STATUS_MASK);
+	}
+
+	/**
+	 * Sets the next status of a person.
+	 * @param id the id of the person
+	 * @param nextStatus the new next status
+	 */
+	void setNextStatus(int id, int nextStatus) {
+		setField(id, NEXT_STATUS_SHIFT, STATUS_MASK, nextStatus);
+	}
+
+	/**
+	 * Returns the goal of a person (school, hospital, shopping, no goal).
+	 * @param id the id of the person
+	 * @return the goal
+	 */
+	int getGoal(int id) {
+		return getField(id, GOAL_SHIFT, GOAL_MASK);
+	}
+
+	/**
+	 * Sets the goal of a person.
+	 * @param id the id of the person
+	 * @param goal the new goal
+	 */
+	void setGoal(int id, int goal) {
+		setField(id, GOAL_SHIFT, GOAL_MASK, goal);
+	}
+
+	/**
+	 * Returns the age of a person.
+	 * @param id the id of the person
+	 * @return the age
+	 */
+	int getAge(int id) {
+		return getField(id, AGE_SHIFT, AGE_MASK);
+	}
+
+	/**
+	 * Returns the flags of a person (FLAG_AT_RISK, FLAG_MASK, FLAG_GHOST).
+	 * @param id the id of the person
+	 * @return the flags
+	 */
+	int getFlags(int id) {
+		return getField(id, FLAGS_SHIFT, FLAGS_MASK);
+	}
+
+	/**
+	 * Sets the flags of a person.
+	 * @param id the id of the person
+	 * @param flags the new flags
+	 */
+	void setFlags(int id, int flags) {
+		setField(id, FLAGS_SHIFT, FLAGS_MASK, flags);
+	}
+
+	/**
+	 * Returns the timer of a person : the time of infection for infected people,
+	 * the remaining time of appearance for deceased people.
+	 * @param id the id of the person
+	 * @return the timer
+	 */
+	int getTimer(int id) {
+		return (int) (attributes.get(id) >> TIMER_SHIFT);
+	}
+
+	/**
+	 * Sets the timer of a person.
+	 * @param id the id of the person
+	 * @param timer the new timer
+	 */
+	void setTimer(int id, int timer) {
+		attributes.set(id, (attributes.get(id) & 0xffffffffL) | (long) timer << TIMER_SHIFT);
+	}
+
+	/**
+	 * Returns true if the person wears a mask.
+	 * @param id the id of the person
+	 * @return true if the person wears a mask
+	 */
+	boolean hasMask(int id) {
+		return (getFlags(id) & FLAG_MASK) != 0;
+	}
+
+	/**
+	 * Returns true if the person has an increased risk due to medical conditions.
+	 * @param id the id of the person
+	 * @return true if the person is at increased risk
+	 */
+	boolean isAtRisk(int id) {
+		return (getFlags(id) & FLAG_AT_RISK) != 0;
+	}
+
+	/**
+	 * Returns true if the status is one of the infected status.
+	 * @param s the status
+	 * @return true if the status is infected with or without symptoms
+	 */
+	static boolean isInfected(int s) {
+		return s == Agent.INFECTED_WITH_SYMPTOMS_STATUS || s == Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS;
+	}
+
+	// ************************************************************************************************
+	// Status phase
+	// ************************************************************************************************
+
+	/**
+	 * Computes the next status of the people who can change status : the frontier.
+	 * The frontier is made of the active people (infected agents and deceased agents, whose timers are running)
+	 * and of the susceptible agents located around an infected agent. The recovered agents and the susceptible
+	 * agents far from any infected agent can not change status, they are not visited.
+	 * In push mode, each infected agent first scatters his contribution into the pressure field,
+	 * which is cleared at the end of the sweep.
+	 * This method must be called before modifying really the status and the position.
+	 * The priority is thus higher than computeNextPositionsAndApply.
+	 */
+	@ScheduledMethod(start = 1, interval = 1, priority = 2)
+	public void computeNextStatuses() {
+		tick++;
+		tickContext = new TickContext(tick, scenario, width, globalHeight);
+		if (tickContext.isDistancing() && neighbourCounts == null && !occupancy.isSparse())
+			startNeighbourCounts();
+		if (metrics != null)
+			metrics.beginStatusPhase();
+
+		if (pressure != null)
+			scatterPressure(1);
+
+		nbFrontier = collectFrontier();
+		engine.computeNextStatuses(this, nbFrontier);
+
+		if (pressure != null)
+			scatterPressure(-1);
+
+		if (metrics != null)
+			metrics.endStatusPhase(nbFrontier);
+	}
+
+	/**
+	 * Stores the frontier in the frontier column : the active people, then the susceptible agents located
+	 * around an infected agent, each of them stored once even if he has several infected neighbours.
+	 * The active people do not change during the status phase.
+	 * Without Repast, the frontier of the tiles is collected by the threads of the engine : the people are then
+	 * stored tile by tile. The order of the frontier does not change the next statuses.
+	 * @return the number of people in the frontier
+	 */
+	private int collectFrontier() {
+		if (grid == null && tiles != null)
+			return collectFrontierByTile();
+
+		for (int i = 0; i < activeCount; i++)
+			frontier.set(i, active.get(i));
+		int nbFrontier = activeCount;
+
+		stamp++;
+		for (int i = 0; i < activeCount; i++)
+			nbFrontier = addSusceptibleNeighbours(active.get(i), nbFrontier);
+
+		// The infected ghosts can infect the people of this store
+		for (int i = 0; i < nbGhosts; i++)
+			nbFrontier = addSusceptibleNeighbours(ghosts[i], nbFrontier);
+
+		return nbFrontier;
+	}
+
+	/**
+	 * Collects the frontier tile by tile on the threads of the engine. Each thread marks only the people of its
+	 * tile : the susceptible agents of another tile are marked afterwards, with the ghosts and the active people
+	 * out of the grid.
+	 * @return the number of people in the frontier
+	 */
+	private int collectFrontierByTile() {
+		int nbTiles = tiles.getNbTiles();
+		// Sorts the active people by tile (counting sort keeping their order)
+		Arrays.fill(tileStart, 0);
+		for (int i = 0; i < activeCount; i++)
+			tileStart[getActiveBucket(active.get(i)) + 2]++;
+		for (int t = 2; t < tileStart.length; t++)
+			tileStart[t] += tileStart[t-1];
+		if (tileActive.length < activeCount)
+			tileActive = new int[Math.max(activeCount, tileActive.length * 2)];
+		for (int i = 0; i < activeCount; i++) {
+			int id = active.get(i);
+			tileActive[tileStart[getActiveBucket(id) + 1]++] = id;
+		}
+		int offGrid = tileStart[nbTiles];
+
+		stamp++;
+		engine.forEach(0, nbTiles, this::collectTileFrontier);
+
+		int nbFrontier = 0;
+		for (int t = 0; t < nbTiles; t++) {
+			tileStart[t] = nbFrontier;
+			nbFrontier += nbTileFrontier[t];
+		}
+		engine.forEach(0, nbTiles, this::storeTileFrontier);
+
+		for (int i = offGrid; i < activeCount; i++) {
+			frontier.set(nbFrontier++, tileActive[i]);
+			nbFrontier = addSusceptibleNeighbours(tileActive[i], nbFrontier);
+		}
+		for (int t = 0; t < nbTiles; t++) {
+			for (int i = 0; i < nbCrossFrontier[t]; i++) {
+				int n = crossFrontier[t][i];
+				if (visitStamp.get(n) != stamp) {
+					visitStamp.set(n, stamp);
+					frontier.set(nbFrontier++, n);
+				}
+			}
+		}
+
+		// The infected ghosts can infect the people of this store
+		for (int i = 0; i < nbGhosts; i++)
+			nbFrontier = addSusceptibleNeighbours(ghosts[i], nbFrontier);
+
+		return nbFrontier;
+	}
+
+	/**
+	 * Returns the bucket of an active person when they are sorted by tile.
+	 * @param id the id of the person
+	 * @return the tile of the person, or the number of tiles if the person is out of the grid
+	 */
+	private int getActiveBucket(int id) {
+		int tile = tiles.getTile(x.get(id), y.get(id));
+		return (tile < 0) ? tiles.getNbTiles() : tile;
+	}
+
+	/**
+	 * Collects the frontier of a tile : its active people and the susceptible agents of the tile located around
+	 * them. The susceptible agents of the other tiles are kept in the cross frontier of the tile.
+	 * @param tile the tile
+	 */
+	private void collectTileFrontier(int tile) {
+		nbTileFrontier[tile] = 0;
+		nbCrossFrontier[tile] = 0;
+		for (int i = tileStart[tile]; i < tileStart[tile + 1]; i++) {
+			int id = tileActive[i];
+			addToTile(tileFrontier, nbTileFrontier, tile, id);
+			if (!isInfected(getStatus(id)))
+				continue;
+
+			int px = x.get(id);
+			int py = y.get(id);
+			for (int nx = Math.max(px-1, 0); nx <= Math.min(px+1, width-1); nx++) {
+				for (int ny = Math.max(py-1, 0); ny <= Math.min(py+1, height-1); ny++) {
+					if (nx == px && ny == py)
+						continue;
+					int n = getAgentAt(nx, ny);
+					if (n < 0 || getStatus(n) != Agent.SUSCEPTIBLE_STATUS || isGhost(n))
+						continue;
+					if (tiles.getTile(nx, ny) != tile)
+						addToTile(crossFrontier, nbCrossFrontier, tile, n);
+					else if (visitStamp.get(n) != stamp) {
+						visitStamp.set(n, stamp);
+						addToTile(tileFrontier, nbTileFrontier, tile, n);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the frontier of a tile in the frontier column, from the first element of the tile.
+	 * @param tile the tile
+	 */
+	private void storeTileFrontier(int tile) {
+		int[] ids = tileFrontier[tile];
+		for (int i = 0; i < nbTileFrontier[tile]; i++)
+			frontier.set(tileStart[tile] + i, ids[i]);
+	}
+
+	/**
+	 * Adds the susceptible agents located around an infected person to the frontier, if they are not already in it.
+	 * Nothing is added if the person is not infected or is not on the grid.
+	 * @param id the id of the person
+	 * @param nbFrontier the number of people in the frontier
+	 * @return the new number of people in the frontier
+	 */
+	private int addSusceptibleNeighbours(int id, int nbFrontier) {
+		if (!isInfected(getStatus(id)) || x.get(id) < 0)
+			return nbFrontier;
+
+		int px = x.get(id);
+		int py = y.get(id);
+		for (int nx = Math.max(px-1, 0); nx <= Math.min(px+1, width-1); nx++) {
+			for (int ny = Math.max(py-1, 0); ny <= Math.min(py+1, height-1); ny++) {
+				if (nx == px && ny == py)
+					continue;
+				int n = getAgentAt(nx, ny);
+				if (n >= 0 && getStatus(n) == Agent.SUSCEPTIBLE_STATUS && !isGhost(n) && visitStamp.get(n) != stamp) {
+					visitStamp.set(n, stamp);
+					frontier.set(nbFrontier++, n);
+				}
+			}
+		}
+		return nbFrontier;
+	}
+
+	/**
+	 * Runs the phases of each tick on several threads. The next positions are always computed from the occupancy
+	 * of the grid at the beginning of the movement phase, so that a run gives the same result whatever the number
+	 * of threads.
+	 * @param nbThreads the number of threads (1 or less to run the phases on the calling thread)
+	 */
+	public void setNumberOfThreads(int nbThreads) {
+		engine.shutdown();
+		engine = new ParallelTickEngine(Math.max(nbThreads, 1));
+	}
+
+	/**
+	 * Runs an action for each index of a range, on the threads of the engine.
+	 * @param from the first index
+	 * @param to the index after the last one
+	 * @param action the action, which may be run by several threads at the same time
+	 */
+	void forEach(int from, int to, IntConsumer action) {
+		engine.forEach(from, to, action);
+	}
+
+	/**
+	 * Splits the grid into square tiles for the parallel engine : the people of a tile are computed together
+	 * by one thread. The tiles cover the whole grid : on a sparse grid, the people are always split by id.
+	 * @param tileSize the width and height of a tile (0 or less to split the people by id)
+	 * @param periodic true if the borders of the grid wrap around
+	 */
+	public void setTileSize(int tileSize, boolean periodic) {
+		if (tileSize <= 0 || denseOccupancy == null) {
+			tiles = null;
+			return;
+		}
+		tiles = new TileDecomposition(width, height, tileSize, periodic);
+		for (int id = 0; id < size; id++)
+			tiles.assign(id, x.get(id), y.get(id));
+
+		int nbTiles = tiles.getNbTiles();
+		activityChanges = new int[nbTiles][16];
+		nbActivityChanges = new int[nbTiles];
+		tileFrontier = new int[nbTiles][16];
+		nbTileFrontier = new int[nbTiles];
+		crossFrontier = new int[nbTiles][16];
+		nbCrossFrontier = new int[nbTiles];
+		tileStart = new int[nbTiles + 3];
+	}
+
+	/**
+	 * Releases the threads of the parallel engine, the metrics and the storage. Called at the end of the run.
+	 */
+	public void dispose() {
+		setNumberOfThreads(1);
+		if (metrics != null)
+			metrics.close();
+		storage.close();
+	}
+
+	/**
+	 * Enables or disables the push mode of infection. In push mode, the infected agents scatter their contribution
+	 * into a per-cell pressure field, and each susceptible agent reads only his own cell instead of scanning
+	 * his 8 neighbours. The infection outcome and the R0 attribution are the same in both modes.
+	 * The pressure field covers the whole grid : on a sparse grid, the infection stays in pull mode.
+	 * @param pushInfection true to enable the push mode
+	 */
+	public void setPushInfection(boolean pushInfection) {
+		this.pressure = (pushInfection && !occupancy.isSparse()) ? new char[width * height] : null;
+	}
+
+	/**
+	 * Returns true if the push mode of infection is enabled.
+	 * @return true if the infected agents scatter their contribution into the pressure field
+	 */
+	public boolean isPushInfection() {
+		return pressure != null;
+	}
+
+	/**
+	 * Adds (or removes) the contribution of all infected agents to the pressure of the cells around them.
+	 * @param sign 1 to add the contributions, -1 to remove them
+	 */
+	private void scatterPressure(int sign) {
+		for (int i = 0; i < activeCount; i++) {
+			int id = active.get(i);
+			if (!isInfected(getStatus(id)) || x.get(id) < 0)
+				continue;
+
+			int delta = sign * (1 << (4 * getInfectionClass(id)));
+			int px = x.get(id);
+			int py = y.get(id);
+			for (int nx = Math.max(px-1, 0); nx <= Math.min(px+1, width-1); nx++) {
+				for (int ny = Math.max(py-1, 0); ny <= Math.min(py+1, height-1); ny++) {
+					if (nx != px || ny != py) {
+						int cell = ny * width + nx;
+						pressure[cell] = (char) (pressure[cell] + delta);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the next status of one person according to the neighborhood and his current status.
+	 * @param id the id of the person
+	 */
+	void computeNextStatus(int id) {
+		computeNextStatus(id, infectedNeighbours);
+	}
+
+	/**
+	 * Computes the next status of one person according to the neighborhood and his current status.
+	 * Several people can be computed at the same time by different threads, each one with its own scratch array.
+	 * @param id the id of the person
+	 * @param neighbours a scratch array of at least 8 elements
+	 */
+	void computeNextStatus(int id, int[] neighbours) {
+		switch (getStatus(id)) {
+			case Agent.SUSCEPTIBLE_STATUS:
+				computeNextStatusOfSusceptible(id, neighbours);
+				break;
+			case Agent.INFECTED_WITH_SYMPTOMS_STATUS:
+				computeNextStatusOfInfectedWithSymptoms(id);
+				break;
+			case Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS:
+				computeNextStatusOfInfectedWithoutSymptoms(id);
+				break;
+			case Agent.DECEASED_STATUS:
+				// At each step, the time of appearance decreases.
+				setTimer(id, getTimer(id) - 1);
+				break;
+			default:
+				// A recovered agent can not any more be infected, a removed slot is not used any more.
+				break;
+		}
+	}
+
+	/**
+	 * A suceptible agent can be infected if one of his neighbor is infected, according to a certain probability based on probInf
+	 * and adjusted according to the neighbourhood.
+	 * Then, a susceptible agent can become infected either with symptoms or without symptoms, according
+	 * to a certain probability.
+	 * @param id the id of the susceptible agent
+	 * @param neighbours a scratch array of at least 8 elements
+	 */
+	private void computeNextStatusOfSusceptible(int id, int[] neighbours) {
+		// The number of infected neighbours of each infection class, 4 bits per class
+		int neighbourhood;
+		if (pressure != null)
+			neighbourhood = pressure[y.get(id) * width + x.get(id)];
+		else neighbourhood = getNeighbourhoodPressure(id, neighbours);
+
+		// If there are no infected neighbours, the status does not change
+		if (neighbourhood == 0)
+			return;
+
+		// Add all neighbours probabilities, by infection class.
+		int nbInfected = 0;
+		double probaNeighbourhood = 0;
+		int responsibleClass = -1;
+		for (int c = 0; c < 4; c++) {
+			int nb = (neighbourhood >>> (4 * c)) & 15;
+			if (nb > 0) {
+				nbInfected += nb;
+				probaNeighbourhood += nb * getInfectionClassProb(c);
+				if (responsibleClass < 0)
+					responsibleClass = c;
+			}
+		}
+
+		// Average of all neighbours probabilities
+		probaNeighbourhood = probaNeighbourhood / nbInfected;
+
+		// Multiply by a factor depending on the number of neighbours
+		probaNeighbourhood = probaNeighbourhood * (1 + 0.05*(nbInfected - 1));
+
+		// If this agent wears a mask, decrease the probability
+		if (hasMask(id))
+			probaNeighbourhood = probaNeighbourhood * Agent.FACTOR_WITH_MASK;
+
+		// Range [0;1]
+		if (probaNeighbourhood < 0)
+			probaNeighbourhood = 0;
+		else if (probaNeighbourhood > 1)
+			probaNeighbourhood = 1;
+
+		// Infect the susceptible agent based on probaNeighbourhood probability
+		double rand = random.nextDouble(id);
+		if (rand < probaNeighbourhood) {
+
+			// The next status of the agent is infected with or without symptoms (by default, proba = 0.5)
+			double probaWithSymptoms = Agent.PROBA_INFECTED_WITH_SYMPTOMS;
+
+			// the elderly and the people with specific medical conditions are more susceptible
+			// to be infected with symptoms.
+			if (getAge(id) > 65) {
+				if (getAge(id) < 75)
+					probaWithSymptoms = probaWithSymptoms * 1.2;
+				else probaWithSymptoms = probaWithSymptoms * 1.4;
+			}
+			if (isAtRisk(id)) {
+				probaWithSymptoms = probaWithSymptoms * 1.2;
+			}
+
+			// Range [0;1]
+			if (probaWithSymptoms > 1)
+				probaWithSymptoms = 1;
+
+			rand = random.nextDouble(id);
+			if (rand < probaWithSymptoms)
+				setNextStatus(id, Agent.INFECTED_WITH_SYMPTOMS_STATUS);
+			else setNextStatus(id, Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS);
+
+			// One of the infected neighbor is responsible for the infection of the agent.
+			int responsible = findResponsible(id, responsibleClass, neighbours);
+			// The contaminated column can be modified by several threads during a parallel status phase.
+			contaminated.getAndAdd(responsible, 1);
+			// The contaminations of a ghost are counted by his own store.
+			if (!isGhost(responsible))
+				statistics.addContaminations(1);
+		}
+	}
+
+	/**
+	 * Computes the next status of an infected agent with symptoms. If the maximum time of infection is reached,
+	 * it becomes either recovered or deceased.
+	 * @param id the id of the infected agent
+	 */
+	private void computeNextStatusOfInfectedWithSymptoms(int id) {
+		setTimer(id, getTimer(id) + 1);
+
+		// If the time of infection has been reached, the status changes to recover or deceased
+		// according to the probability probRec.
+		if (getTimer(id) == Agent.MAX_TIME_OF_INFECTION_WITH_SYMPTOMS) {
+			double rand = random.nextDouble(id);
+
+			double probaRecovering = tickContext.getProbRec();
+
+			// If you are old, the mean probability of recovering should be decreased
+			if (getAge(id) > 65) {
+				if (getAge(id) < 75)
+					probaRecovering = probaRecovering * 0.8;
+				else probaRecovering = probaRecovering * 0.7;
+			}
+			// If you are at increased risk, the mean probability of recovering should be decreased
+			if (isAtRisk(id)) {
+				probaRecovering = probaRecovering * 0.8;
+			}
+
+			if (rand < probaRecovering)
+				setNextStatus(id, Agent.RECOVERED_STATUS);
+			else setNextStatus(id, Agent.DECEASED_STATUS);
+		}
+	}
+
+	/**
+	 * Computes the next status of an infected agent without symptoms. If the maximum time of infection is reached,
+	 * it becomes recovered.
+	 * @param id the id of the infected agent
+	 */
+	private void computeNextStatusOfInfectedWithoutSymptoms(int id) {
+		setTimer(id, getTimer(id) + 1);
+
+		if (getTimer(id) == Agent.MAX_TIME_OF_INFECTION_WITHOUT_SYMPTOMS)
+			setNextStatus(id, Agent.RECOVERED_STATUS);
+	}
+
+	/**
+	 * Returns the contamination probability of an infected agent, adjusted with the fact that he has symptoms
+	 * or not and wears the mask or not.
+	 * @param id the id of the infected agent
+	 * @return the contamination probability for this infected agent
+	 */
+	double computeContaminationProb(int id) {
+		return getInfectionClassProb(getInfectionClass(id));
+	}
+
+	/**
+	 * Returns the infection class of an infected agent. The classes are ordered by responsibility :
+	 * with symptoms without mask, without symptoms without mask, with symptoms with mask, without symptoms with mask.
+	 * @param id the id of the infected agent
+	 * @return the infection class, between 0 and 3
+	 */
+	int getInfectionClass(int id) {
+		return (getStatus(id) == Agent.INFECTED_WITH_SYMPTOMS_STATUS ? 0 : 1) + (hasMask(id) ? 2 : 0);
+	}
+
+	/**
+	 * Returns the contamination probability of the infected agents of an infection class.
+	 * @param c the infection class
+	 * @return the contamination probability for this class
+	 */
+	double getInfectionClassProb(int c) {
+		double ownprob;
+		if ((c & 1) == 0)
+			ownprob = tickContext.getProbInf() * Agent.FACTOR_WITH_SYMPTOMS;
+		else ownprob = tickContext.getProbInf() * Agent.FACTOR_WITHOUT_SYMPTOMS;
+		if ((c & 2) != 0)
+			ownprob = ownprob * Agent.FACTOR_WITH_MASK;
+		return ownprob;
+	}
+
+	/**
+	 * Counts the infected neighbours of a person by scanning his neighbourhood (pull mode).
+	 * @param id the id of the person
+	 * @param neighbours a scratch array of at least 8 elements
+	 * @return the number of infected neighbours of each infection class, 4 bits per class
+	 */
+	private int getNeighbourhoodPressure(int id, int[] neighbours) {
+		int nbInfected = getInfectedNeighbours(id, neighbours);
+		int neighbourhood = 0;
+		for (int i = 0; i < nbInfected; i++)
+			neighbourhood += 1 << (4 * getInfectionClass(neighbours[i]));
+		return neighbourhood;
+	}
+
+	/**
+	 * Returns the infected neighbour responsible for the infection of a person : by default, the first
+	 * infected neighbour of the lowest infection class present in the neighbourhood.
+	 * @param id the id of the infected person
+	 * @param responsibleClass the lowest infection class present in the neighbourhood
+	 * @param neighbours a scratch array of at least 8 elements
+	 * @return the id of the responsible neighbour
+	 */
+	private int findResponsible(int id, int responsibleClass, int[] neighbours) {
+		int nbInfected = getInfectedNeighbours(id, neighbours);
+		for (int i = 0; i < nbInfected; i++) {
+			if (getInfectionClass(neighbours[i]) == responsibleClass)
+				return neighbours[i];
+		}
+		return neighbours[0];
+	}
+
+	/**
+	 * Stores the ids of the infected neighbours of a person (the grid is "static", we don't count the neighbours "outside" the grid).
+	 * @param id the id of the person
+	 * @param neighbours an array of at least 8 elements where the ids are stored
+	 * @return the number of infected neighbours
+	 */
+	int getInfectedNeighbours(int id, int[] neighbours) {
+		int px = x.get(id);
+		int py = y.get(id);
+		int nb = 0;
+
+		if (px+1 < width) {
+			nb = addIfInfected(px+1, py, neighbours, nb);
+			if (py+1 < height)
+				nb = addIfInfected(px+1, py+1, neighbours, nb);
+			if (py-1 >= 0)
+				nb = addIfInfected(px+1, py-1, neighbours, nb);
+		}
+		if (px-1 >= 0) {
+			nb = addIfInfected(px-1, py, neighbours, nb);
+			if (py+1 < height)
+				nb = addIfInfected(px-1, py+1, neighbours, nb);
+			if (py-1 >= 0)
+				nb = addIfInfected(px-1, py-1, neighbours, nb);
+		}
+		if (py+1 < height)
+			nb = addIfInfected(px, py+1, neighbours, nb);
+		if (py-1 >= 0)
+			nb = addIfInfected(px, py-1, neighbours, nb);
+
+		return nb;
+	}
+
+	/**
+	 * Adds the id of the agent located in the specified cell to the array if he is infected.
+	 * @return the new number of elements in the array
+	 */
+	private int addIfInfected(int cx, int cy, int[] neighbours, int nb) {
+		int n = getAgentAt(cx, cy);
+		if (n >= 0 && isInfected(getStatus(n)))
+			neighbours[nb++] = n;
+		return nb;
+	}
+
+	/**
+	 * Returns the id of the agent located in the specified cell.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @return the id of the agent, -1 if the cell is free
+	 */
+	int getAgentAt(int cx, int cy) {
+		return occupancy.getOwner(cx, cy);
+	}
+
+	// ************************************************************************************************
+	// Movement phase
+	// ************************************************************************************************
+
+	/**
+	 * Computes the next position of all people and applies the new status and the new position.
+	 * The next positions are computed by the engine from the occupancy of the grid at the beginning of the phase :
+	 * when several people want to move to the same cell, the one with the lowest global id moves.
+	 * When nobody can move (lockdown, or curfew at night), the sweep is skipped : only the frontier is applied.
+	 * The next status must have been previously computed. The priority is thus lower than computeNextStatuses.
+	 */
+	@ScheduledMethod(start = 1, interval = 1, priority = 1)
+	public void computeNextPositionsAndApply() {
+		if (metrics != null)
+			metrics.beginMovementPhase();
+
+		if (tickContext.isMovementBlocked()) {
+			// Nobody can move : only the people of the frontier can change status or disappear.
+			for (int i = 0; i < nbFrontier; i++)
+				apply(frontier.get(i));
+		}
+		else {
+			engine.computeNextPositions(this);
+			applyAll();
+		}
+
+		if (metrics != null)
+			metrics.endMovementPhase();
+	}
+
+	/**
+	 * Applies the new status and the new position of all people, once their next positions have been computed.
+	 * Without Repast, the tiles are applied by the threads of the engine : two people never move to the same cell,
+	 * so only the words of the occupancy bitmap and the neighbour counts shared by several cells are modified
+	 * atomically, and the changes of the active people are applied once all the tiles are done.
+	 */
+	void applyAll() {
+		if (grid == null && tiles != null) {
+			engine.forEach(0, tiles.getNbTiles(), this::applyTile);
+			applyActivityChanges();
+		}
+		else {
+			for (int id = 0; id < size; id++)
+				apply(id);
+		}
+		if (tiles != null)
+			tiles.handOff(this);
+	}
+
+	/**
+	 * Applies the new status and the new position of the people of a tile. Several tiles are applied at the same time.
+	 * @param tile the tile
+	 */
+	private void applyTile(int tile) {
+		int[] members = tiles.getMembers(tile);
+		int nbMembers = tiles.getNbMembers(tile);
+		for (int i = 0; i < nbMembers; i++)
+			apply(members[i], tile);
+	}
+
+	/**
+	 * Computes the next position of one person and applies his new status and his new position.
+	 * The new position is computed according to current grid. This avoid several agents being on same cell.
+	 * @param id the id of the person
+	 */
+	void computeNextPositionAndApply(int id) {
+		if (canMove(id))
+			computeNextPosition(id, candidateX, candidateY);
+		apply(id);
+	}
+
+	/**
+	 * Returns true if the person can move : a deceased agent does not move anymore, and a ghost is moved
+	 * by his own store.
+	 * @param id the id of the person
+	 * @return true if the person is alive and is not a ghost
+	 */
+	boolean canMove(int id) {
+		return getStatus(id) < Agent.DECEASED_STATUS && !isGhost(id);
+	}
+
+	/**
+	 * Applies the new status and the new position of a person, once his next position has been computed.
+	 * @param id the id of the person
+	 */
+	void apply(int id) {
+		apply(id, -1);
+	}
+
+	/**
+	 * Applies the new status and the new position of a person, once his next position has been computed.
+	 * @param id the id of the person
+	 * @param tile the tile being applied by the current thread (-1 if the people are applied by one thread)
+	 */
+	private void apply(int id, int tile) {
+		if (isGhost(id))
+			return;
+
+		switch (getStatus(id)) {
+			case REMOVED_STATUS:
+				return;
+			case Agent.DECEASED_STATUS:
+				// A deceased agent does not move anymore. It "disappears" at the end of its time of appearance.
+				if (getTimer(id) == 0) {
+					if (context != null) {
+						context.remove(views[id]);
+						views[id] = null;
+					}
+					setLocation(id, -1, -1, tile >= 0);
+					setActive(id, false, tile);
+					setStatus(id, REMOVED_STATUS);
+					setNextStatus(id, REMOVED_STATUS);
+					statistics.remove(Agent.DECEASED_STATUS, 0);
+					if (metrics != null)
+						metrics.countTransition(TickMetrics.REMOVAL);
+				}
+				return;
+			default:
+				if (getNextStatus(id) != getStatus(id))
+					applyNextStatus(id, tile);
+
+				if (tile >= 0)
+					setLocation(id, nextX.get(id), nextY.get(id), true);
+				else moveTo(id, nextX.get(id), nextY.get(id));
+		}
+	}
+
+	/**
+	 * Applies the next status of a person. The status is modified in place : the view of the person
+	 * stays in the context.
+	 * @param id the id of the person
+	 * @param tile the tile being applied by the current thread (-1 if the people are applied by one thread)
+	 */
+	private void applyNextStatus(int id, int tile) {
+		int newStatus = getNextStatus(id);
+		statistics.change(getStatus(id), newStatus, contaminated.get(id));
+
+		if (isInfected(newStatus)) {
+			if (tickContext.isInfectedIsolation())
+				setGoal(id, Agent.HOSPITAL_GOAL);
+			setTimer(id, 0);
+			contaminated.set(id, 0);
+			setActive(id, true, tile);
+			if (metrics != null)
+				metrics.countTransition(TickMetrics.INFECTION);
+		}
+		else if (newStatus == Agent.RECOVERED_STATUS) {
+			setGoal(id, Agent.RANDOM_GOAL);
+			setActive(id, false, tile);
+			if (metrics != null)
+				metrics.countTransition(TickMetrics.RECOVERY);
+		}
+		else if (newStatus == Agent.DECEASED_STATUS) {
+			setTimer(id, Agent.TIME_APPEARANCE);
+			if (metrics != null)
+				metrics.countTransition(TickMetrics.DEATH);
+		}
+		setStatus(id, newStatus);
+	}
+
+	/**
+	 * Moves a person on the grid.
+	 * @param id the id of the person
+	 * @param nx the new x coordinate
+	 * @param ny the new y coordinate
+	 */
+	void moveTo(int id, int nx, int ny) {
+		if (grid == null)
+			setLocation(id, nx, ny);
+		else if (grid.moveTo(views[id], nx, ny))
+			setLocation(id, nx, ny);
+	}
+
+	/**
+	 * Computes next position (distance of moving is 1 and only on a free cell).
+	 * Stores it in nextX and nextY. The possible points are stored in scratch arrays, so that nothing
+	 * is allocated for each agent.
+	 * @param id the id of the person
+	 */
+	void computeNextPosition(int id) {
+		computeNextPosition(id, candidateX, candidateY);
+	}
+
+	/**
+	 * Computes next position (distance of moving is 1 and only on a free cell).
+	 * Stores it in nextX and nextY. Several people can be computed at the same time by different threads,
+	 * each one with its own scratch arrays.
+	 * @param id the id of the person
+	 * @param candidateX a scratch array of at least 8 elements
+	 * @param candidateY a scratch array of at least 8 elements
+	 */
+	void computeNextPosition(int id, int[] candidateX, int[] candidateY) {
+		// By default, the agent stays at the same position.
+		nextX.set(id, x.get(id));
+		nextY.set(id, y.get(id));
+
+		// If there is a lockdown or if there is a curfew and the current time is in the curfew, the agent does not move.
+		if (tickContext.isMovementBlocked())
+			return;
+
+		// Otherwise, compute the possible points according to his goal.
+		int nbCandidates = collectCandidates(id, candidateX, candidateY);
+
+		// If there is no possible point, the agent does not move.
+		if (nbCandidates == 0)
+			return;
+
+		// If distancing is enabled, keep only the points with the lower number of direct neighbors
+		if (tickContext.isDistancing())
+			nbCandidates = keepLeastCrowded(candidateX, candidateY, nbCandidates);
+
+		// Choose one of the points randomly to avoid taking always the same direction...
+		int chosen = random.nextInt(id, nbCandidates);
+		nextX.set(id, candidateX[chosen]);
+		nextY.set(id, candidateY[chosen]);
+	}
+
+	/**
+	 * Stores the possible points to move on according to the goal of the person.
+	 * @param id the id of the person
+	 * @param cx an array of at least 8 elements where the x coordinates are stored
+	 * @param cy an array of at least 8 elements where the y coordinates are stored
+	 * @return the number of possible points
+	 */
+	int collectCandidates(int id, int[] cx, int[] cy) {
+		FlowField field = places[getGoal(id)];
+		if (field == null)
+			return collectRandomCandidates(id, cx, cy);
+		return collectCandidatesDownhill(id, field, cx, cy);
+	}
+
+	/**
+	 * Keeps only the possible points with the lower number of direct neighbors, at the beginning of the arrays.
+	 * @param cx the x coordinates of the possible points
+	 * @param cy the y coordinates of the possible points
+	 * @param nbCandidates the number of possible points
+	 * @return the number of points kept
+	 */
+	int keepLeastCrowded(int[] cx, int[] cy, int nbCandidates) {
+		int minNeighbours = 10;
+		int nbKept = 0;
+		for (int i = 0; i < nbCandidates; i++) {
+			int nbNeighbours = getNbNeighbours(cx[i], cy[i]);
+			if (nbNeighbours < minNeighbours) {
+				minNeighbours = nbNeighbours;
+				nbKept = 0;
+			}
+			if (nbNeighbours == minNeighbours) {
+				cx[nbKept] = cx[i];
+				cy[nbKept] = cy[i];
+				nbKept++;
+			}
+		}
+		return nbKept;
+	}
+
+	/**
+	 * When there is a curfew, agents must not move between 10PM and 8AM.
+	 * @return true if the time tick corresponds to the period of curfew
+	 */
+	boolean mustNotMove() {
+		// The status phase of the current tick has already been computed.
+		return tickContext.isCurfewTime();
+	}
+
+	/**
+	 * Returns true if the specified cell is free.
+	 * @param cx the x coordinate of the cell
+	 * @param cy the y coordinate of the cell
+	 * @return true if no agent is located in this cell
+	 */
+	boolean isFree(int cx, int cy) {
+		return occupancy.isFree(cx, cy);
+	}
+
+	/**
+	 * Returns the number of occupied cells around the specified point. With distancing, the number is read
+	 * from the neighbour counts, updated at each move.
+	 * @param px the x coordinate of the point
+	 * @param py the y coordinate of the point
+	 * @return the number of direct neighbours of this point
+	 */
+	int getNbNeighbours(int px, int py) {
+		if (neighbourCounts != null)
+			return neighbourCounts[py * width + px];
+		return countNeighbours(px, py);
+	}
+
+	/**
+	 * Counts the occupied cells around the specified point in the occupancy grid.
+	 * @param px the x coordinate of the point
+	 * @param py the y coordinate of the point
+	 * @return the number of direct neighbours of this point
+	 */
+	private int countNeighbours(int px, int py) {
+		int nbNeighbours = 0;
+
+		if (px+1 < width) {
+			if (!isFree(px+1, py))
+				nbNeighbours++;
+			if (py+1 < height && !isFree(px+1, py+1))
+				nbNeighbours++;
+			if (py-1 >= 0 && !isFree(px+1, py-1))
+				nbNeighbours++;
+		}
+		if (px-1 >= 0) {
+			if (!isFree(px-1, py))
+				nbNeighbours++;
+			if (py+1 < height && !isFree(px-1, py+1))
+				nbNeighbours++;
+			if (py-1 >= 0 && !isFree(px-1, py-1))
+				nbNeighbours++;
+		}
+		if (py+1 < height && !isFree(px, py+1))
+			nbNeighbours++;
+		if (py-1 >= 0 && !isFree(px, py-1))
+			nbNeighbours++;
+
+		return nbNeighbours;
+	}
+
+	/**
+	 * Stores the possible points to move on (max 8) by respecting the grid dimensions and the cell must be free.
+	 * @param id the id of the person
+	 * @param cx an array of at least 8 elements where the x coordinates are stored
+	 * @param cy an array of at least 8 elements where the y coordinates are stored
+	 * @return the number of possible points
+	 */
+	int collectRandomCandidates(int id, int[] cx, int[] cy) {
+		int px = x.get(id);
+		int py = y.get(id);
+		int nb = 0;
+
+		for (int dx = -1; dx <= 1; dx++) {
+			int nx = px + dx;
+			if (nx < 0 || nx >= width)
+				continue;
+			for (int dy = -1; dy <= 1; dy++) {
+				int ny = py + dy;
+				if ((dx == 0 && dy == 0) || ny < 0 || ny >= height)
+					continue;
+				if (isFree(nx, ny)) {
+					cx[nb] = nx;
+					cy[nb] = ny;
+					nb++;
+				}
+			}
+		}
+		return nb;
+	}
+
+	/**
+	 * Stores the possible points to move of a distance of 1 towards the specified point.
+	 * @param id the id of the person
+	 * @param tx the x coordinate of the destination point
+	 * @param ty the y coordinate of the destination point
+	 * @param cx an array of at least 3 elements where the x coordinates are stored
+	 * @param cy an array of at least 3 elements where the y coordinates are stored
+	 * @return the number of possible points
+	 */
+	int collectCandidatesTowards(int id, int tx, int ty, int[] cx, int[] cy) {
+		int px = x.get(id);
+		int py = y.get(id);
+		int nb = 0;
+
+		// The horizontal and vertical steps towards the destination (-1, 0 or 1)
+		int dx = Integer.signum(tx - px);
+		int dy = Integer.signum(ty - py);
+
+		// only move if we are not already in this grid location
+		if (dx != 0) {
+			if (isFree(px+dx, py)) {
+				cx[nb] = px+dx;
+				cy[nb] = py;
+				nb++;
+			}
+			if (dy != 0 && isFree(px+dx, py+dy)) {
+				cx[nb] = px+dx;
+				cy[nb] = py+dy;
+				nb++;
+			}
+		}
+		if (dy != 0 && isFree(px, py+dy)) {
+			cx[nb] = px;
+			cy[nb] = py+dy;
+			nb++;
+		}
+		return nb;
+	}
+
+	/**
+	 * Stores the possible points to move of a distance of 1 towards the nearest site of a place :
+	 * the free cells in the downhill directions of the field.
+	 * @param id the id of the person
+	 * @param field the field of the place
+	 * @param cx an array of at least 8 elements where the x coordinates are stored
+	 * @param cy an array of at least 8 elements where the y coordinates are stored
+	 * @return the number of possible points
+	 */
+	int collectCandidatesDownhill(int id, FlowField field, int[] cx, int[] cy) {
+		int px = x.get(id);
+		int py = y.get(id);
+		int nb = 0;
+
+		int directions = field.getDownhill(px, py + originY);
+		while (directions != 0) {
+			int dir = Integer.numberOfTrailingZeros(directions);
+			directions &= directions - 1;
+			int nx = px + FlowField.DX[dir];
+			int ny = py + FlowField.DY[dir];
+			if (isFree(nx, ny)) {
+				cx[nb] = nx;
+				cy[nb] = ny;
+				nb++;
+			}
+		}
+		return nb;
+	}
+
+	/**
+	 * Returns the field of the moves towards a place.
+	 * @param goal the goal of the people going to the place (SCHOOL_GOAL, SHOPPING_GOAL or HOSPITAL_GOAL)
+	 * @return the field of the place
+	 */
+	public FlowField getPlace(int goal) {
+		return places[goal];
+	}
+
+	/**
+	 * Adds a site to a place : the people going to the place then go to the nearest site.
+	 * Only the cells nearer to the new site are updated. Must not be called during a tick.
+	 * @param goal the goal of the people going to the place
+	 * @param px the x coordinate of the site
+	 * @param py the y coordinate of the site, in the whole grid
+	 * @return the index of the site
+	 */
+	public int addPlaceSite(int goal, int px, int py) {
+		return places[goal].addSite(px, py);
+	}
+
+	/**
+	 * Replaces the sites of a place. The field of the place is computed once, from all the sites.
+	 * Must not be called during a tick.
+	 * @param goal the goal of the people going to the place
+	 * @param px the x coordinates of the sites
+	 * @param py the y coordinates of the sites, in the whole grid
+	 * @param nb the number of sites
+	 */
+	public void setPlaceSites(int goal, int[] px, int[] py, int nb) {
+		places[goal].setSites(px, py, nb);
+	}
+
+	/**
+	 * Returns the nearest site of a place.
+	 * @param goal the goal of the people going to the place
+	 * @param px the x coordinate of the point
+	 * @param py the y coordinate of the point, in the whole grid
+	 * @return the index of the nearest site, -1 if the place has no site
+	 */
+	public int getNearestPlaceSite(int goal, int px, int py) {
+		return places[goal].getNearestSite(px, py);
+	}
+
+	/**
+	 * Moves a site of a place. Must not be called during a tick.
+	 * @param goal the goal of the people going to the place
+	 * @param site the index of the site
+	 * @param px the new x coordinate of the site
+	 * @param py the new y coordinate of the site, in the whole grid
+	 */
+	public void movePlaceSite(int goal, int site, int px, int py) {
+		places[goal].moveSite(site, px, py);
+	}
+
+	/**
+	 * Converts possible points stored in arrays to a list of GridPoint objects.
+	 * @return the list of possible points
+	 */
+	private static ArrayList<GridPoint> toList(int[] cx, int[] cy, int nb) {
+		ArrayList<GridPoint> possiblePointsList = new ArrayList<GridPoint>(nb);
+		for (int i = 0; i < nb; i++)
+			possiblePointsList.add(new GridPoint(cx[i], cy[i]));
+		return possiblePointsList;
+	}
+
+	/**
+	 * Returns the possible points to move on (max 8) by respecting the grid dimensions and the cell must be free.
+	 * @param id the id of the person
+	 * @return the list of possible points to move on
+	 */
+	ArrayList<GridPoint> moveRandomly(int id) {
+		int[] cx = new int[8];
+		int[] cy = new int[8];
+		return toList(cx, cy, collectRandomCandidates(id, cx, cy));
+	}
+
+	/**
+	 * Computes the possible points to move of a distance of 1 towards the specified point.
+	 * @param id the id of the person
+	 * @param tx the x coordinate of the destination point
+	 * @param ty the y coordinate of the destination point
+	 * @return the list of possible points to move
+	 */
+	ArrayList<GridPoint> moveTowards(int id, int tx, int ty) {
+		int[] cx = new int[3];
+		int[] cy = new int[3];
+		return toList(cx, cy, collectCandidatesTowards(id, tx, ty, cx, cy));
+	}
+
+	/**
+	 * By default, school is located in position (0,0) (top left corner).
+	 * @param id the id of the person
+	 * @return the list of possible points to move towards the nearest school
+	 */
+	ArrayList<GridPoint> moveTowardsSchool(int id) {
+		return moveTowardsPlace(id, Agent.SCHOOL_GOAL);
+	}
+
+	/**
+	 * By default, shopping center is located in position (width - 1,height - 1).
+	 * @param id the id of the person
+	 * @return the list of possible points to move towards the nearest shopping center
+	 */
+	ArrayList<GridPoint> moveTowardsShoppingCenter(int id) {
+		return moveTowardsPlace(id, Agent.SHOPPING_GOAL);
+	}
+
+	/**
+	 * By default, hospital is located at the center of the grid.
+	 * @param id the id of the person
+	 * @return the list of possible points to move towards the nearest hospital
+	 */
+	ArrayList<GridPoint> moveTowardsHospital(int id) {
+		return moveTowardsPlace(id, Agent.HOSPITAL_GOAL);
+	}
+
+	/**
+	 * Computes the possible points to move of a distance of 1 towards the nearest site of a place.
+	 * @param id the id of the person
+	 * @param goal the goal of the people going to the place
+	 * @return the list of possible points to move
+	 */
+	ArrayList<GridPoint> moveTowardsPlace(int id, int goal) {
+		int[] cx = new int[8];
+		int[] cy = new int[8];
+		return toList(cx, cy, collectCandidatesDownhill(id, places[goal], cx, cy));
+	}
+}
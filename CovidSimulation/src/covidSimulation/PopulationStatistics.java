@@ -0,0 +1,189 @@
+package covidSimulation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of a population, updated at each transition instead of being computed by scanning the agents :
+ * the number of people of each status, the total numbers of infections and of deaths, and the sum of the numbers
+ * of people contaminated by the infected people, used to compute R0. Reading them takes a constant time,
+ * whatever the size of the population.
+ * The counters can be updated by several threads at the same time, when the people of the tiles are applied
+ * in parallel.
+ * The ghosts of a population run on several processes are not counted.
+ * @author Natacha
+ *
+ */
+public class PopulationStatistics {
+
+	/**
+	 * The number of people of each status (the removed people are not counted).
+	 */
+	private final LongAdder[] nbPeople = new LongAdder[Agent.DECEASED_STATUS + 1];
+
+	/**
+	 * The total number of people infected since the beginning, including the initial infected people.
+	 */
+	private final LongAdder nbInfections = new LongAdder();
+
+	/**
+	 * The total number of deaths since the beginning.
+	 */
+	private final LongAdder nbDeaths = new LongAdder();
+
+	/**
+	 * The sum of the numbers of people contaminated by the people currently infected.
+	 * The contaminations are counted by the threads of the status phase.
+	 */
+	private final LongAdder sumContaminated = new LongAdder();
+
+	/**
+	 * Constructor. Nobody is counted.
+	 */
+	public PopulationStatistics() {
+		for (int status = 0; status < nbPeople.length; status++)
+			nbPeople[status] = new LongAdder();
+	}
+
+	/**
+	 * Counts a new person.
+	 * @param status the status of the person
+	 */
+	void add(int status) {
+		nbPeople[status].increment();
+		if (Population.isInfected(status))
+			nbInfections.increment();
+	}
+
+	/**
+	 * Counts a person coming from another store : only the number of people of his status changes, the infections
+	 * and the deaths are counted by the store where they happened.
+	 * @param status the status of the person
+	 */
+	void arrive(int status) {
+		nbPeople[status].increment();
+	}
+
+	/**
+	 * Counts a person leaving the population.
+	 * @param status the status of the person
+	 * @param contaminated the number of people contaminated by the person
+	 */
+	void remove(int status, int contaminated) {
+		nbPeople[status].decrement();
+		if (Population.isInfected(status))
+			sumContaminated.add(-contaminated);
+	}
+
+	/**
+	 * Counts the change of status of a person.
+	 * @param status the current status of the person
+	 * @param newStatus the new status of the person
+	 * @param contaminated the number of people contaminated by the person
+	 */
+	void change(int status, int newStatus, int contaminated) {
+		nbPeople[status].decrement();
+		nbPeople[newStatus].increment();
+		if (Population.isInfected(newStatus)) {
+			if (!Population.isInfected(status))
+				nbInfections.increment();
+		}
+		else if (Population.isInfected(status))
+			sumContaminated.add(-contaminated);
+		if (newStatus == Agent.DECEASED_STATUS)
+			nbDeaths.increment();
+	}
+
+	/**
+	 * Counts people contaminated by an infected person. Can be called by several threads.
+	 * @param nb the number of people contaminated
+	 */
+	void addContaminations(int nb) {
+		sumContaminated.add(nb);
+	}
+
+	/**
+	 * Sets all the statistics, read from a snapshot.
+	 * @param nbPeople the number of people of each status
+	 * @param nbInfections the total number of infections
+	 * @param nbDeaths the total number of deaths
+	 * @param sumContaminated the sum of the numbers of people contaminated by the people currently infected
+	 */
+	void restore(long[] nbPeople, long nbInfections, long nbDeaths, long sumContaminated) {
+		for (int status = 0; status < this.nbPeople.length; status++)
+			set(this.nbPeople[status], nbPeople[status]);
+		set(this.nbInfections, nbInfections);
+		set(this.nbDeaths, nbDeaths);
+		set(this.sumContaminated, sumContaminated);
+	}
+
+	/**
+	 * Sets the value of a counter.
+	 * @param counter the counter
+	 * @param value the new value
+	 */
+	private static void set(LongAdder counter, long value) {
+		counter.reset();
+		counter.add(value);
+	}
+
+	/**
+	 * Returns the number of people of a status.
+	 * @param status the status
+	 * @return the number of people
+	 */
+	public long getNbPeople(int status) {
+		return nbPeople[status].sum();
+	}
+
+	/**
+	 * Returns the number of people still on the grid, whatever their status.
+	 * @return the number of people alive (and of deceased people not removed yet)
+	 */
+	public long getNbAlive() {
+		long nb = 0;
+		for (LongAdder n : nbPeople)
+			nb += n.sum();
+		return nb;
+	}
+
+	/**
+	 * Returns the number of infected people, with or without symptoms.
+	 * @return the number of infected people
+	 */
+	public long getNbInfected() {
+		return nbPeople[Agent.INFECTED_WITH_SYMPTOMS_STATUS].sum() + nbPeople[Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS].sum();
+	}
+
+	/**
+	 * Returns the total number of people infected since the beginning.
+	 * @return the number of infections
+	 */
+	public long getNbInfections() {
+		return nbInfections.sum();
+	}
+
+	/**
+	 * Returns the total number of deaths since the beginning.
+	 * @return the number of deaths
+	 */
+	public long getNbDeaths() {
+		return nbDeaths.sum();
+	}
+
+	/**
+	 * Returns the sum of the numbers of people contaminated by the people currently infected.
+	 * @return the sum of the numbers of people contaminated
+	 */
+	public long getSumContaminated() {
+		return sumContaminated.sum();
+	}
+
+	/**
+	 * Returns R0 : the mean number of people contaminated by the people currently infected.
+	 * @return R0, NaN if nobody is infected
+	 */
+	public double getR0() {
+		long nbInfected = getNbInfected();
+		return (nbInfected == 0) ? Double.NaN : (double) getSumContaminated() / nbInfected;
+	}
+}
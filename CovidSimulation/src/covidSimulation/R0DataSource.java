@@ -0,0 +1,25 @@
+package covidSimulation;
+
+/**
+ * Aggregate data source giving R0 : the mean number of people contaminated by the agents currently infected.
+ * It is read from the statistics of the population, updated at each contamination and each transition.
+ * @author Natacha
+ *
+ */
+public class R0DataSource extends StatisticsDataSource {
+
+	/**
+	 * Constructor.
+	 */
+	public R0DataSource() {
+		super("R0", Double.class);
+	}
+
+	/**
+	 * Returns the current R0 (NaN if there is no infected agent).
+	 */
+	@Override
+	Object get(PopulationStatistics statistics) {
+		return statistics.getR0();
+	}
+}
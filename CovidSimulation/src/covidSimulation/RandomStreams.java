@@ -0,0 +1,227 @@
+package covidSimulation;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Random numbers of the simulation, derived from the randomSeed parameter.
+ * Each person has his own stream (a SplitMix64 generator, the algorithm of java.util.SplittableRandom) whose
+ * state is a long in a column indexed by the id of the person : the numbers drawn by a person only depend on the
+ * seed, his id and the number of draws he already made, and not on the thread computing him or on the order
+ * in which the people are computed. The decisions which do not belong to a person use a main stream.
+ * @author Natacha
+ *
+ */
+public class RandomStreams {
+
+	/**
+	 * The increment of the SplitMix64 generator (odd approximation of the golden ratio).
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * The seed of the simulation.
+	 */
+	private final long seed;
+
+	/**
+	 * The state of the main stream.
+	 */
+	private long mainState;
+
+	/**
+	 * The state of the stream of each person.
+	 */
+	private LongColumn states;
+
+	/**
+	 * Constructor.
+	 * @param seed the seed of the simulation
+	 * @param capacity the expected number of people (the column grows if needed)
+	 */
+	public RandomStreams(long seed, int capacity) {
+		this(seed, capacity, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Constructor.
+	 * @param seed the seed of the simulation
+	 * @param capacity the expected number of people (the column grows if needed)
+	 * @param storage the memory where the states of the streams are stored
+	 */
+	public RandomStreams(long seed, int capacity, WorldStorage storage) {
+		this.seed = seed;
+		this.mainState = mix64(seed);
+		this.states = storage.newLongColumn("randomStates", Math.max(capacity, 1));
+	}
+
+	/**
+	 * Returns the seed of the simulation.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Starts the stream of a person. The stream only depends on the seed and the key of the person.
+	 * @param id the id of the person
+	 * @param key the key of the stream (the global id of the person)
+	 */
+	void init(int id, long key) {
+		if (id >= states.length())
+			states = states.copyOf(Math.max(states.length() * 2, id + 1));
+		states.set(id, getInitialState(key));
+	}
+
+	/**
+	 * Returns the initial state of the stream of a person.
+	 * @param key the key of the stream (the global id of the person)
+	 * @return the initial state
+	 */
+	private long getInitialState(long key) {
+		return mix64(seed + (key + 1L) * GOLDEN_GAMMA) ^ mix64(~seed);
+	}
+
+	/**
+	 * Returns a copy of the stream of a person which is not stored yet : it draws the same numbers as the stream
+	 * started by init, and can be used by any thread. Its state is then stored with setState.
+	 * @param key the key of the stream (the global id of the person)
+	 * @return the stream
+	 */
+	Stream newStream(long key) {
+		return new Stream(getInitialState(key));
+	}
+
+	/**
+	 * Returns the state of the stream of a person, to move the person to another store.
+	 * @param id the id of the person
+	 * @return the state of his stream
+	 */
+	long getState(int id) {
+		return states.get(id);
+	}
+
+	/**
+	 * Restores the state of the stream of a person.
+	 * @param id the id of the person
+	 * @param state the state of his stream
+	 */
+	void setState(int id, long state) {
+		if (id >= states.length())
+			states = states.copyOf(Math.max(states.length() * 2, id + 1));
+		states.set(id, state);
+	}
+
+	/**
+	 * Returns the state of the main stream, to save it in a snapshot.
+	 * @return the state of the main stream
+	 */
+	long getMainState() {
+		return mainState;
+	}
+
+	/**
+	 * Restores the state of the main stream.
+	 * @param mainState the state of the main stream
+	 */
+	void setMainState(long mainState) {
+		this.mainState = mainState;
+	}
+
+	/**
+	 * Returns the next double of the main stream, uniformly distributed in [0;1).
+	 * @return the next double
+	 */
+	public double nextDouble() {
+		mainState += GOLDEN_GAMMA;
+		return toDouble(mix64(mainState));
+	}
+
+	/**
+	 * Returns the next int of the main stream, uniformly distributed in [0;bound).
+	 * @param bound the upper bound (excluded), must be positive
+	 * @return the next int
+	 */
+	public int nextInt(int bound) {
+		return (int) (nextDouble() * bound);
+	}
+
+	/**
+	 * Returns the next double of the stream of a person, uniformly distributed in [0;1).
+	 * Only the thread computing this person may call it.
+	 * @param id the id of the person
+	 * @return the next double
+	 */
+	public double nextDouble(int id) {
+		long s = states.get(id) + GOLDEN_GAMMA;
+		states.set(id, s);
+		return toDouble(mix64(s));
+	}
+
+	/**
+	 * Returns the next int of the stream of a person, uniformly distributed in [0;bound).
+	 * Only the thread computing this person may call it.
+	 * @param id the id of the person
+	 * @param bound the upper bound (excluded), must be positive
+	 * @return the next int
+	 */
+	public int nextInt(int id, int bound) {
+		return (int) (nextDouble(id) * bound);
+	}
+
+	/**
+	 * The stream of a person outside the array of the states (see newStream).
+	 */
+	static final class Stream implements DoubleSupplier {
+
+		/**
+		 * The state of the stream.
+		 */
+		private long state;
+
+		/**
+		 * Constructor.
+		 * @param state the initial state
+		 */
+		private Stream(long state) {
+			this.state = state;
+		}
+
+		/**
+		 * Returns the next double of the stream, uniformly distributed in [0;1).
+		 */
+		@Override
+		public double getAsDouble() {
+			state += GOLDEN_GAMMA;
+			return toDouble(mix64(state));
+		}
+
+		/**
+		 * Returns the state of the stream.
+		 * @return the state
+		 */
+		long getState() {
+			return state;
+		}
+	}
+
+	/**
+	 * Converts 53 random bits to a double in [0;1).
+	 * @param bits the random bits
+	 * @return the double
+	 */
+	private static double toDouble(long bits) {
+		return (bits >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * The output function of SplitMix64 (a variant of the MurmurHash3 finalizer).
+	 * @param z the state
+	 * @return the mixed bits
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
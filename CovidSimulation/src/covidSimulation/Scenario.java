@@ -0,0 +1,163 @@
+package covidSimulation;
+
+/**
+ * The settings of one simulation : the probabilities of infection and of recovering and the strategies of
+ * limitation.
+ * Each Population reads its own scenario, so that several simulations can run at the same time in one JVM
+ * with different settings. The static methods of Agent give access to the scenario of the simulation run by Repast.
+ * @author Natacha
+ *
+ */
+public class Scenario {
+
+	/**
+	 * Probability of being infected when an infected agent is in the neighborhood.
+	 */
+	private float probInf;
+
+	/**
+	 * Probability of recovering when infected. The probability of decease equals 1-probRec.
+	 */
+	private float probRec;
+
+	/**
+	 * The different strategies of limitation.
+	 */
+	private boolean distancing = false;
+	private boolean infectedIsolation = false;
+	private boolean lockdown = false;
+	private boolean curfew = false;
+	private boolean mask = false;
+
+	/**
+	 * Constructor. No strategy is activated.
+	 */
+	public Scenario() {
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param other the scenario copied
+	 */
+	public Scenario(Scenario other) {
+		this.probInf = other.probInf;
+		this.probRec = other.probRec;
+		this.distancing = other.distancing;
+		this.infectedIsolation = other.infectedIsolation;
+		this.lockdown = other.lockdown;
+		this.curfew = other.curfew;
+		this.mask = other.mask;
+	}
+
+	/**
+	 * Returns the average probability of contamination.
+	 * @return the probability of contamination
+	 */
+	public float getProbInf() {
+		return probInf;
+	}
+
+	/**
+	 * Sets the average probability of contamination.
+	 * @param probInf the probability of contamination
+	 */
+	public void setProbInf(float probInf) {
+		this.probInf = probInf;
+	}
+
+	/**
+	 * Returns the average probability of recovering.
+	 * @return the probability of recovering
+	 */
+	public float getProbRec() {
+		return probRec;
+	}
+
+	/**
+	 * Sets the average probability of recovering.
+	 * @param probRec the probability of recovering
+	 */
+	public void setProbRec(float probRec) {
+		this.probRec = probRec;
+	}
+
+	/**
+	 * Returns true if the distancing strategy is activated.
+	 * @return true if the distancing strategy is activated.
+	 */
+	public boolean isDistancing() {
+		return distancing;
+	}
+
+	/**
+	 * Sets the distancing strategy.
+	 * @param distancing a boolean stating if the distancing strategy is activated.
+	 */
+	public void setDistancing(boolean distancing) {
+		this.distancing = distancing;
+	}
+
+	/**
+	 * Returns true if the isolation of infected agents strategy is activated.
+	 * @return true if the isolation of infected agents strategy is activated.
+	 */
+	public boolean isInfectedIsolation() {
+		return infectedIsolation;
+	}
+
+	/**
+	 * Sets the strategy of isolation of infected agents.
+	 * @param infectedIsolation a boolean stating if the strategy of isolation of infected agents is activated.
+	 */
+	public void setInfectedIsolation(boolean infectedIsolation) {
+		this.infectedIsolation = infectedIsolation;
+	}
+
+	/**
+	 * Returns true if the lockdown strategy is activated.
+	 * @return true if the lockdown strategy is activated.
+	 */
+	public boolean isLockdown() {
+		return lockdown;
+	}
+
+	/**
+	 * Sets the lockdown strategy attribute.
+	 * @param lockdown true if the lockdown strategy is activated.
+	 */
+	public void setLockdown(boolean lockdown) {
+		this.lockdown = lockdown;
+	}
+
+	/**
+	 * Returns true if the curfew strategy is activated.
+	 * @return true if the curfew strategy is activated.
+	 */
+	public boolean isCurfew() {
+		return curfew;
+	}
+
+	/**
+	 * Sets the curfew strategy attribute.
+	 * @param curfew true if the curfew strategy is activated.
+	 */
+	public void setCurfew(boolean curfew) {
+		this.curfew = curfew;
+	}
+
+	/**
+	 * Returns true if the mask strategy is activated.
+	 * @return true if the mask strategy is activated.
+	 */
+	public boolean isMask() {
+		return mask;
+	}
+
+	/**
+	 * Sets the mask strategy attribute.
+	 * @param mask true if the mask strategy is activated.
+	 */
+	public void setMask(boolean mask) {
+		this.mask = mask;
+	}
+}
@@ -0,0 +1,112 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Forks a simulation at a given tick into several branches, one for each scenario (for example one for each mix of
+ * strategies of limitation), instead of computing the same beginning of the epidemic again for each scenario.
+ * <p>
+ * The state of the simulation at the fork is captured once in a snapshot in memory (see Snapshot), which is never
+ * modified and is shared by all the branches. A branch only gets its own arrays when it is created, by bulk copies
+ * of this snapshot, so that creating a branch costs much less than computing the ticks before the fork.
+ * The branches continue with the random streams of the forked simulation : the differences between two branches
+ * only come from their scenarios.
+ * @author Natacha
+ *
+ */
+public class ScenarioFork {
+
+	/**
+	 * The state of the simulation at the fork.
+	 */
+	private final ByteBuffer snapshot;
+
+	/**
+	 * The tick of the fork.
+	 */
+	private final long tick;
+
+	/**
+	 * Forks a simulation at its current tick. The simulation can continue, the branches do not depend on it.
+	 * @param population the population forked, run on one process
+	 */
+	public ScenarioFork(Population population) {
+		this.snapshot = Snapshot.capture(population);
+		this.tick = population.tick;
+	}
+
+	/**
+	 * Returns the tick of the fork.
+	 * @return the tick
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Creates a branch : a population run without Repast, in the state of the fork, with another scenario.
+	 * @param scenario the scenario of the branch (copied)
+	 * @return the population of the branch
+	 * @throws IOException if the snapshot can not be read
+	 */
+	public Population branch(Scenario scenario) throws IOException {
+		return Snapshot.load(snapshot, new Scenario(scenario));
+	}
+
+	/**
+	 * Runs one branch for each scenario, several branches at the same time. A branch stops as soon as
+	 * nobody is infected or deceased anymore.
+	 * @param scenarios the scenarios of the branches
+	 * @param nbTicks the number of ticks computed after the fork
+	 * @param nbThreads the number of branches computed at the same time
+	 * @return the counters of each tick after the fork, for each branch
+	 * @throws Exception if a branch fails
+	 */
+	public List<TickCounters[]> run(List<Scenario> scenarios, int nbTicks, int nbThreads) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(nbThreads);
+		try {
+			List<Future<TickCounters[]>> futures = new ArrayList<>();
+			for (Scenario scenario : scenarios)
+				futures.add(pool.submit(() -> runBranch(scenario, nbTicks)));
+
+			List<TickCounters[]> results = new ArrayList<>();
+			for (Future<TickCounters[]> future : futures)
+				results.add(future.get());
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs a branch.
+	 * @param scenario the scenario of the branch
+	 * @param nbTicks the number of ticks computed after the fork
+	 * @return the counters of each tick computed
+	 */
+	private TickCounters[] runBranch(Scenario scenario, int nbTicks) throws IOException {
+		Population population = branch(scenario);
+		try {
+			TickCounters[] counters = new TickCounters[nbTicks];
+			int tick = 0;
+			while (tick < nbTicks && population.getActiveCount() > 0) {
+				population.computeNextStatuses();
+				population.computeNextPositionsAndApply();
+
+				counters[tick] = new TickCounters();
+				counters[tick].add(population);
+				tick++;
+			}
+			return Arrays.copyOf(counters, tick);
+		} finally {
+			population.dispose();
+		}
+	}
+}
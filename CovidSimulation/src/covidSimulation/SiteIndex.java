@@ -0,0 +1,209 @@
+package covidSimulation;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index of the sites of a place : the grid is divided into square buckets, each bucket giving the list
+ * of its sites. The nearest site of a point is searched in the bucket of the point, then in the rings of buckets
+ * around it, until no other ring can hold a nearer site. The buckets are made smaller as sites are added,
+ * so that a bucket holds a few sites : a search visits a few buckets, whatever the number of sites.
+ * <p>
+ * The distances are counted in steps along the rows and the columns, as in FlowField. Among several sites
+ * at the same distance, the site with the lowest index is the nearest.
+ * @author Natacha
+ *
+ */
+public class SiteIndex {
+
+	/**
+	 * The grid dimensions.
+	 */
+	private final int width;
+	private final int height;
+
+	/**
+	 * The size of the buckets and their number along x and y.
+	 */
+	private int bucketSize;
+	private int nbBucketsX;
+	private int nbBucketsY;
+
+	/**
+	 * The first site of each bucket (-1 if empty), and the next site of the same bucket for each site.
+	 */
+	private int[] first;
+	private int[] next = new int[4];
+
+	/**
+	 * The coordinates of the sites.
+	 */
+	private int[] sitesX = new int[4];
+	private int[] sitesY = new int[4];
+	private int nbSites;
+
+	/**
+	 * Constructor. The index has no site.
+	 * @param width the grid width
+	 * @param height the grid height
+	 */
+	public SiteIndex(int width, int height) {
+		this.width = width;
+		this.height = height;
+		resize(1);
+	}
+
+	/**
+	 * Returns the number of sites.
+	 * @return the number of sites
+	 */
+	public int size() {
+		return nbSites;
+	}
+
+	/**
+	 * Returns the x coordinate of a site.
+	 * @param site the index of the site
+	 * @return the x coordinate
+	 */
+	public int getX(int site) {
+		return sitesX[site];
+	}
+
+	/**
+	 * Returns the y coordinate of a site.
+	 * @param site the index of the site
+	 * @return the y coordinate
+	 */
+	public int getY(int site) {
+		return sitesY[site];
+	}
+
+	/**
+	 * Adds a site.
+	 * @param sx the x coordinate of the site
+	 * @param sy the y coordinate of the site
+	 * @return the index of the site
+	 */
+	public int add(int sx, int sy) {
+		if (sx < 0 || sx >= width || sy < 0 || sy >= height)
+			throw new IllegalArgumentException("Site outside the grid : " + sx + "," + sy);
+		if (nbSites == sitesX.length) {
+			sitesX = Arrays.copyOf(sitesX, nbSites * 2);
+			sitesY = Arrays.copyOf(sitesY, nbSites * 2);
+			next = Arrays.copyOf(next, nbSites * 2);
+		}
+		int site = nbSites++;
+		sitesX[site] = sx;
+		sitesY[site] = sy;
+		if (nbSites > 4 * first.length)
+			resize(nbSites);
+		else link(site);
+		return site;
+	}
+
+	/**
+	 * Moves a site.
+	 * @param site the index of the site
+	 * @param sx the new x coordinate of the site
+	 * @param sy the new y coordinate of the site
+	 */
+	public void move(int site, int sx, int sy) {
+		if (sx < 0 || sx >= width || sy < 0 || sy >= height)
+			throw new IllegalArgumentException("Site outside the grid : " + sx + "," + sy);
+		unlink(site);
+		sitesX[site] = sx;
+		sitesY[site] = sy;
+		link(site);
+	}
+
+	/**
+	 * Removes a site. The last site takes its index.
+	 * @param site the index of the site
+	 */
+	public void remove(int site) {
+		unlink(site);
+		int last = --nbSites;
+		if (site != last) {
+			unlink(last);
+			sitesX[site] = sitesX[last];
+			sitesY[site] = sitesY[last];
+			link(site);
+		}
+	}
+
+	/**
+	 * Returns the nearest site of a point.
+	 * @param px the x coordinate of the point
+	 * @param py the y coordinate of the point
+	 * @return the index of the nearest site, -1 if there is no site
+	 */
+	public int nearest(int px, int py) {
+		int bx = px / bucketSize;
+		int by = py / bucketSize;
+		int best = -1;
+		int bestDistance = Integer.MAX_VALUE;
+		int maxRing = Math.max(Math.max(bx, nbBucketsX - 1 - bx), Math.max(by, nbBucketsY - 1 - by));
+
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// The sites of this ring and of the next ones are at least at (ring - 1) * bucketSize + 1 steps.
+			if (best >= 0 && bestDistance <= (long) (ring - 1) * bucketSize)
+				break;
+			for (int cy = by - ring; cy <= by + ring; cy++) {
+				if (cy < 0 || cy >= nbBucketsY)
+					continue;
+				boolean edge = cy == by - ring || cy == by + ring;
+				int step = edge ? 1 : 2 * ring;
+				for (int cx = bx - ring; cx <= bx + ring; cx += step) {
+					if (cx < 0 || cx >= nbBucketsX)
+						continue;
+					for (int site = first[cy * nbBucketsX + cx]; site >= 0; site = next[site]) {
+						int d = Math.abs(sitesX[site] - px) + Math.abs(sitesY[site] - py);
+						if (d < bestDistance || (d == bestDistance && site < best)) {
+							best = site;
+							bestDistance = d;
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Divides the grid into buckets holding about one site each, and stores the sites in them.
+	 * @param nbExpected the expected number of sites
+	 */
+	private void resize(int nbExpected) {
+		bucketSize = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * height / Math.max(nbExpected, 1))));
+		nbBucketsX = (width + bucketSize - 1) / bucketSize;
+		nbBucketsY = (height + bucketSize - 1) / bucketSize;
+		first = new int[nbBucketsX * nbBucketsY];
+		Arrays.fill(first, -1);
+		for (int site = 0; site < nbSites; site++)
+			link(site);
+	}
+
+	/**
+	 * Adds a site to the list of its bucket.
+	 */
+	private void link(int site) {
+		int bucket = (sitesY[site] / bucketSize) * nbBucketsX + sitesX[site] / bucketSize;
+		next[site] = first[bucket];
+		first[bucket] = site;
+	}
+
+	/**
+	 * Removes a site from the list of its bucket.
+	 */
+	private void unlink(int site) {
+		int bucket = (sitesY[site] / bucketSize) * nbBucketsX + sitesX[site] / bucketSize;
+		if (first[bucket] == site) {
+			first[bucket] = next[site];
+			return;
+		}
+		int previous = first[bucket];
+		while (next[previous] != site)
+			previous = next[previous];
+		next[previous] = next[site];
+	}
+}
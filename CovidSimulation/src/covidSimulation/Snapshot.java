@@ -0,0 +1,301 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves the whole state of a simulation in a memory-mapped file, and restores it : the attributes and the positions
+ * of all the people, the active people, the tick, the scenario, the statistics and the state of every random stream.
+ * A restored simulation computes exactly the same ticks as the simulation which was saved.
+ * The snapshot is taken between two ticks, for a population run on one process (without ghosts).
+ * The sites of the places are saved too.
+ * <p>
+ * The file is made of a header (the magic number, the version, the dimensions, the kind of grid, the number of people,
+ * the tick, the scenario and the statistics), then the arrays of the people : the longs first (the random streams and
+ * the packed attributes), then the ints, then the sites of each place (their number, their x coordinates and their
+ * y coordinates), so that every array is aligned. All the numbers are little endian.
+ * @author Natacha
+ *
+ */
+public class Snapshot {
+
+	/**
+	 * The magic number of the files ("CVSN") and the version of the format.
+	 */
+	static final int MAGIC = 0x4e535643;
+	static final int VERSION = 3;
+
+	/**
+	 * The size of the header in bytes (a multiple of 8).
+	 */
+	private static final int HEADER_SIZE = 160;
+
+	/**
+	 * The bits of the strategies in the header.
+	 */
+	private static final int DISTANCING = 1;
+	private static final int INFECTED_ISOLATION = 2;
+	private static final int LOCKDOWN = 4;
+	private static final int CURFEW = 8;
+	private static final int MASK = 16;
+
+	/**
+	 * The bit of the sparse grids in the header.
+	 */
+	private static final int SPARSE_GRID = 1;
+
+	/**
+	 * Saves the state of a population.
+	 * @param population the population
+	 * @param file the snapshot file (replaced if it exists)
+	 * @throws IOException if the file can not be written
+	 */
+	public static void save(Population population, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, getLength(population));
+			write(population, buffer);
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Saves the state of a population in memory, with the format of the files.
+	 * @param population the population
+	 * @return the snapshot, read-only
+	 */
+	public static ByteBuffer capture(Population population) {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(getLength(population)));
+		write(population, buffer);
+		buffer.flip();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Replaces the state of a population by the state saved in a snapshot. The population must have the same grid
+	 * dimensions. Its scenario takes the settings of the snapshot.
+	 * @param population the population
+	 * @param file the snapshot file
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static void restore(Population population, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			read(population, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+		}
+	}
+
+	/**
+	 * Replaces the state of a population by the state saved in a snapshot in memory. The snapshot is not modified,
+	 * so that it can be restored in several populations at the same time.
+	 * @param population the population
+	 * @param snapshot the snapshot, returned by capture
+	 * @param withScenario true if the scenario of the population takes the settings of the snapshot
+	 * @throws IOException if the buffer is not a snapshot
+	 */
+	public static void restore(Population population, ByteBuffer snapshot, boolean withScenario) throws IOException {
+		read(population, snapshot.duplicate(), withScenario);
+	}
+
+	/**
+	 * Returns the length of the snapshot of a population.
+	 */
+	private static long getLength(Population population) {
+		int size = population.size;
+		long nbSiteInts = 0;
+		for (int goal = Agent.SCHOOL_GOAL; goal <= Agent.HOSPITAL_GOAL; goal++)
+			nbSiteInts += 1 + 2L * population.places[goal].getNbSites();
+		return HEADER_SIZE + 16L * size + 4L * (6L * size + population.activeCount + population.nbFreeIds + nbSiteInts);
+	}
+
+	/**
+	 * Writes the state of a population in a buffer, from its current position.
+	 */
+	private static void write(Population population, ByteBuffer buffer) {
+		if (population.getNbGhosts() > 0 || population.originY != 0 || population.globalHeight != population.height)
+			throw new IllegalStateException("Only a population run on one process can be saved");
+
+		int size = population.size;
+		int activeCount = population.activeCount;
+		int nbFreeIds = population.nbFreeIds;
+		int start = buffer.position();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		Scenario scenario = population.scenario;
+		PopulationStatistics statistics = population.statistics;
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(population.width).putInt(population.height);
+		buffer.putInt(size).putInt(activeCount).putInt(nbFreeIds).putInt(population.occupancy.isSparse() ? SPARSE_GRID : 0);
+		buffer.putLong(population.tick);
+		buffer.putLong(population.random.getSeed()).putLong(population.random.getMainState());
+		buffer.putFloat(scenario.getProbInf()).putFloat(scenario.getProbRec());
+		buffer.putInt((scenario.isDistancing() ? DISTANCING : 0)
+				| (scenario.isInfectedIsolation() ? INFECTED_ISOLATION : 0)
+				| (scenario.isLockdown() ? LOCKDOWN : 0)
+				| (scenario.isCurfew() ? CURFEW : 0)
+				| (scenario.isMask() ? MASK : 0)).putInt(0);
+		for (int s = 0; s <= Agent.DECEASED_STATUS; s++)
+			buffer.putLong(statistics.getNbPeople(s));
+		buffer.putLong(statistics.getNbInfections()).putLong(statistics.getNbDeaths());
+		buffer.putLong(statistics.getSumContaminated());
+		buffer.position(start + HEADER_SIZE);
+
+		for (int id = 0; id < size; id++)
+			buffer.putLong(population.random.getState(id));
+		population.attributes.write(buffer, size);
+		population.x.write(buffer, size);
+		population.y.write(buffer, size);
+		population.nextX.write(buffer, size);
+		population.nextY.write(buffer, size);
+		population.contaminated.write(buffer, size);
+		population.globalId.write(buffer, size);
+		population.active.write(buffer, activeCount);
+		putInts(buffer, population.freeIds, nbFreeIds);
+		for (int goal = Agent.SCHOOL_GOAL; goal <= Agent.HOSPITAL_GOAL; goal++) {
+			FlowField place = population.places[goal];
+			int nbSites = place.getNbSites();
+			buffer.putInt(nbSites);
+			for (int site = 0; site < nbSites; site++)
+				buffer.putInt(place.getSiteX(site));
+			for (int site = 0; site < nbSites; site++)
+				buffer.putInt(place.getSiteY(site));
+		}
+	}
+
+	/**
+	 * Reads the state of a population from a buffer, from its current position.
+	 */
+	private static void read(Population population, ByteBuffer buffer, boolean withScenario) throws IOException {
+		int start = buffer.position();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Not a snapshot");
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		if (width != population.width || height != population.height)
+			throw new IOException("The snapshot has a grid of " + width + "x" + height);
+		int size = buffer.getInt();
+		int activeCount = buffer.getInt();
+		int nbFreeIds = buffer.getInt();
+		buffer.getInt();
+		long tick = buffer.getLong();
+		buffer.getLong();
+		long mainState = buffer.getLong();
+
+		float probInf = buffer.getFloat();
+		float probRec = buffer.getFloat();
+		int strategies = buffer.getInt();
+		buffer.getInt();
+		if (withScenario) {
+			Scenario scenario = population.scenario;
+			scenario.setProbInf(probInf);
+			scenario.setProbRec(probRec);
+			scenario.setDistancing((strategies & DISTANCING) != 0);
+			scenario.setInfectedIsolation((strategies & INFECTED_ISOLATION) != 0);
+			scenario.setLockdown((strategies & LOCKDOWN) != 0);
+			scenario.setCurfew((strategies & CURFEW) != 0);
+			scenario.setMask((strategies & MASK) != 0);
+		}
+
+		long[] nbPeople = new long[Agent.DECEASED_STATUS + 1];
+		for (int s = 0; s < nbPeople.length; s++)
+			nbPeople[s] = buffer.getLong();
+		long nbInfections = buffer.getLong();
+		long nbDeaths = buffer.getLong();
+		long sumContaminated = buffer.getLong();
+		buffer.position(start + HEADER_SIZE);
+
+		population.beginRestore(size);
+		population.statistics.restore(nbPeople, nbInfections, nbDeaths, sumContaminated);
+		population.tick = tick;
+		population.random.setMainState(mainState);
+		for (int id = 0; id < size; id++)
+			population.random.setState(id, buffer.getLong());
+		population.attributes.read(buffer, size);
+		population.x.read(buffer, size);
+		population.y.read(buffer, size);
+		population.nextX.read(buffer, size);
+		population.nextY.read(buffer, size);
+		population.contaminated.read(buffer, size);
+		population.globalId.read(buffer, size);
+		population.active.read(buffer, activeCount);
+		if (population.freeIds.length < nbFreeIds)
+			population.freeIds = new int[nbFreeIds];
+		getInts(buffer, population.freeIds, nbFreeIds);
+		for (int goal = Agent.SCHOOL_GOAL; goal <= Agent.HOSPITAL_GOAL; goal++) {
+			int nbSites = buffer.getInt();
+			int[] sitesX = new int[nbSites];
+			int[] sitesY = new int[nbSites];
+			getInts(buffer, sitesX, nbSites);
+			getInts(buffer, sitesY, nbSites);
+			population.setPlaceSites(goal, sitesX, sitesY, nbSites);
+		}
+		population.activeCount = activeCount;
+		population.nbFreeIds = nbFreeIds;
+		population.endRestore();
+	}
+
+	/**
+	 * Creates a population run without Repast from a snapshot, with the seed and the scenario of the snapshot.
+	 * @param file the snapshot file
+	 * @return the population
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static Population load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			Population population = newPopulation(buffer, new Scenario());
+			read(population, buffer, true);
+			return population;
+		}
+	}
+
+	/**
+	 * Creates a population run without Repast from a snapshot in memory, with the seed of the snapshot
+	 * and another scenario. The snapshot is not modified.
+	 * @param snapshot the snapshot, returned by capture
+	 * @param scenario the scenario of the population
+	 * @return the population
+	 * @throws IOException if the buffer is not a snapshot
+	 */
+	public static Population load(ByteBuffer snapshot, Scenario scenario) throws IOException {
+		ByteBuffer buffer = snapshot.duplicate();
+		Population population = newPopulation(buffer, scenario);
+		read(population, buffer, false);
+		return population;
+	}
+
+	/**
+	 * Creates an empty population with the dimensions, the kind of grid, the capacity and the seed read in the header
+	 * of a snapshot.
+	 */
+	private static Population newPopulation(ByteBuffer buffer, Scenario scenario) throws IOException {
+		int start = buffer.position();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(start) != MAGIC || buffer.getInt(start + 4) != VERSION)
+			throw new IOException("Not a snapshot");
+		return new Population(buffer.getInt(start + 8), buffer.getInt(start + 12), buffer.getInt(start + 16),
+				buffer.getLong(start + 40), scenario, (buffer.getInt(start + 28) & SPARSE_GRID) != 0);
+	}
+
+	/**
+	 * Writes the first elements of an array of ints.
+	 */
+	private static void putInts(ByteBuffer buffer, int[] values, int length) {
+		buffer.asIntBuffer().put(values, 0, length);
+		buffer.position(buffer.position() + 4 * length);
+	}
+
+	/**
+	 * Reads the first elements of an array of ints.
+	 */
+	private static void getInts(ByteBuffer buffer, int[] values, int length) {
+		buffer.asIntBuffer().get(values, 0, length);
+		buffer.position(buffer.position() + 4 * length);
+	}
+}
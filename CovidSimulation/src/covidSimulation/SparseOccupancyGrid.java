@@ -0,0 +1,209 @@
+package covidSimulation;
+
+/**
+ * Occupancy grid storing only the occupied cells, for huge grids with few agents : a hash table from the index
+ * of a cell (y * width + x, as a long) to the id of the agent located in it. The keys and the ids are stored in two
+ * columns of primitives (open addressing with linear probing), so that a cell costs 12 bytes per slot of the table,
+ * and the table has at most twice as many slots as occupied cells.
+ * A removed cell is not marked as deleted : the following cells of its run are moved back, so that the table
+ * does not fill up with deleted cells as the agents move.
+ * @author Natacha
+ *
+ */
+public class SparseOccupancyGrid extends OccupancyGrid {
+
+	/**
+	 * The key of the free slots.
+	 */
+	private static final long EMPTY = -1;
+
+	/**
+	 * The initial number of slots (a power of 2).
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The cell stored in each slot (EMPTY if the slot is free).
+	 */
+	private LongColumn keys;
+
+	/**
+	 * The id of the agent located in the cell of each slot.
+	 */
+	private IntColumn owners;
+
+	/**
+	 * The memory where the slots are stored.
+	 */
+	private final WorldStorage storage;
+
+	/**
+	 * The number of slots minus 1, and the shift giving a slot from the hash of a key.
+	 */
+	private int mask;
+	private int shift;
+
+	/**
+	 * The number of occupied cells.
+	 */
+	private int count;
+
+	/**
+	 * Constructor. All the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 */
+	public SparseOccupancyGrid(int width, int height) {
+		this(width, height, WorldStorage.HEAP);
+	}
+
+	/**
+	 * Constructor. All the cells are free.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param storage the memory where the slots are stored
+	 */
+	public SparseOccupancyGrid(int width, int height, WorldStorage storage) {
+		super(width, height);
+		this.storage = storage;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Returns the number of occupied cells.
+	 * @return the number of occupied cells
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * A sparse grid only stores the occupied cells.
+	 */
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
+	/**
+	 * Searches the cell in the table.
+	 */
+	@Override
+	public boolean isFree(int x, int y) {
+		return find((long) y * width + x) < 0;
+	}
+
+	/**
+	 * Searches the cell in the table.
+	 */
+	@Override
+	int getOwner(int x, int y) {
+		int slot = find((long) y * width + x);
+		return slot < 0 ? -1 : owners.get(slot);
+	}
+
+	/**
+	 * Stores the cell in the table, or replaces its owner.
+	 */
+	@Override
+	void set(int x, int y, int id) {
+		long key = (long) y * width + x;
+		int slot = getSlot(key);
+		long k;
+		while ((k = keys.get(slot)) != EMPTY) {
+			if (k == key) {
+				owners.set(slot, id);
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys.set(slot, key);
+		owners.set(slot, id);
+		if (++count * 2 > keys.length())
+			rehash(keys.length() * 2);
+	}
+
+	/**
+	 * Removes the cell from the table, and moves back the following cells of its run which can take its slot.
+	 */
+	@Override
+	void clear(int x, int y) {
+		int free = find((long) y * width + x);
+		if (free < 0)
+			return;
+		int slot = free;
+		while (true) {
+			slot = (slot + 1) & mask;
+			long key = keys.get(slot);
+			if (key == EMPTY)
+				break;
+			// The cell can take the free slot if its own slot is not between the free slot and its current slot.
+			int home = getSlot(key);
+			boolean between = (free <= slot) ? (free < home && home <= slot) : (free < home || home <= slot);
+			if (!between) {
+				keys.set(free, key);
+				owners.set(free, owners.get(slot));
+				free = slot;
+			}
+		}
+		keys.set(free, EMPTY);
+		count--;
+	}
+
+	/**
+	 * Returns the slot of a cell.
+	 * @param key the index of the cell
+	 * @return the slot, -1 if the cell is free
+	 */
+	private int find(long key) {
+		int slot = getSlot(key);
+		long k;
+		while ((k = keys.get(slot)) != EMPTY) {
+			if (k == key)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the first slot where a cell can be stored (Fibonacci hashing of the index of the cell).
+	 * @param key the index of the cell
+	 * @return the slot
+	 */
+	private int getSlot(long key) {
+		return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift);
+	}
+
+	/**
+	 * Creates empty columns of slots.
+	 * @param capacity the number of slots (a power of 2)
+	 */
+	private void allocate(int capacity) {
+		keys = storage.newLongColumn("keys", capacity);
+		owners = storage.newIntColumn("owners", capacity);
+		keys.fill(0, capacity, EMPTY);
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Stores the cells in new columns of slots.
+	 * @param capacity the new number of slots (a power of 2)
+	 */
+	private void rehash(int capacity) {
+		LongColumn oldKeys = keys;
+		IntColumn oldOwners = owners;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length(); i++) {
+			long key = oldKeys.get(i);
+			if (key == EMPTY)
+				continue;
+			int slot = getSlot(key);
+			while (keys.get(slot) != EMPTY)
+				slot = (slot + 1) & mask;
+			keys.set(slot, key);
+			owners.set(slot, oldOwners.get(i));
+		}
+	}
+}
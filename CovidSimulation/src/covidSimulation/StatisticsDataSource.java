@@ -0,0 +1,178 @@
+package covidSimulation;
+
+import java.util.Iterator;
+
+import repast.simphony.data2.AggregateDataSource;
+
+/**
+ * Aggregate data source reading a value of the statistics of the population, in a constant time, instead of
+ * aggregating a value of each agent. The statistics are reached through any agent of the context.
+ * The nested classes are the data sources of the data set, referenced by their binary names
+ * (covidSimulation.StatisticsDataSource$Infected...).
+ * @author Natacha
+ *
+ */
+public abstract class StatisticsDataSource implements AggregateDataSource {
+
+	/**
+	 * The id of the data source.
+	 */
+	private final String id;
+
+	/**
+	 * The type of the data produced.
+	 */
+	private final Class<?> dataType;
+
+	/**
+	 * The statistics read the last time, used when the context is empty.
+	 */
+	private PopulationStatistics statistics;
+
+	/**
+	 * Constructor.
+	 * @param id the id of the data source
+	 * @param dataType the type of the data produced
+	 */
+	StatisticsDataSource(String id, Class<?> dataType) {
+		this.id = id;
+		this.dataType = dataType;
+	}
+
+	/**
+	 * Returns the id of this data source.
+	 */
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the type of the data produced by this data source.
+	 */
+	@Override
+	public Class<?> getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * Returns the type of the objects this data source is applied to.
+	 */
+	@Override
+	public Class<?> getSourceType() {
+		return Agent.class;
+	}
+
+	/**
+	 * Returns the value read from the statistics of the population of the agents.
+	 * @param objs the agents of the context (only the first one is read)
+	 * @param size the number of agents
+	 * @return the value
+	 */
+	@Override
+	public Object get(Iterable<?> objs, int size) {
+		Iterator<?> it = objs.iterator();
+		if (it.hasNext())
+			statistics = ((Agent) it.next()).population.getStatistics();
+		return get((statistics != null) ? statistics : new PopulationStatistics());
+	}
+
+	/**
+	 * Returns the value read from the statistics.
+	 * @param statistics the statistics of the population
+	 * @return the value
+	 */
+	abstract Object get(PopulationStatistics statistics);
+
+	/**
+	 * Forgets the statistics read at the previous run.
+	 */
+	@Override
+	public void reset() {
+		statistics = null;
+	}
+
+	/**
+	 * The total number of deaths.
+	 */
+	public static class TotalDeaths extends StatisticsDataSource {
+		public TotalDeaths() {
+			super("Total of deaths", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbDeaths();
+		}
+	}
+
+	/**
+	 * The number of infected agents, with or without symptoms.
+	 */
+	public static class Infected extends StatisticsDataSource {
+		public Infected() {
+			super("Number of infected agents", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbInfected();
+		}
+	}
+
+	/**
+	 * The number of recovered agents.
+	 */
+	public static class Recovered extends StatisticsDataSource {
+		public Recovered() {
+			super("Number of recovered agents", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbPeople(Agent.RECOVERED_STATUS);
+		}
+	}
+
+	/**
+	 * The number of agents infected with symptoms.
+	 */
+	public static class InfectedWithSymptoms extends StatisticsDataSource {
+		public InfectedWithSymptoms() {
+			super("Number of people infected with symptoms", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbPeople(Agent.INFECTED_WITH_SYMPTOMS_STATUS);
+		}
+	}
+
+	/**
+	 * The number of agents infected without symptoms.
+	 */
+	public static class InfectedWithoutSymptoms extends StatisticsDataSource {
+		public InfectedWithoutSymptoms() {
+			super("Number of people infected without symptoms", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbPeople(Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS);
+		}
+	}
+
+	/**
+	 * The number of agents in the context : alive, or deceased and not removed yet.
+	 */
+	public static class Alive extends StatisticsDataSource {
+		public Alive() {
+			super("Number of agents alive", Long.class);
+		}
+
+		@Override
+		Object get(PopulationStatistics statistics) {
+			return statistics.getNbAlive();
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package covidSimulation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a parameter sweep without Repast : every combination of the swept values, several replications each,
+ * many runs at the same time on a pool of threads. Each run is built with the ContextCreator logic and has its own
+ * scenario, so that the runs do not share any setting. The counters of each tick are streamed to a CSV file, or
+ * written as one binary time series for each run (see TimeSeriesWriter) when the output is a directory.
+ * <p>
+ * The sweep file has one line per parameter, name = values, where values is a value, a list of values separated
+ * by commas, or a range from:to:step. Two special lines give the number of replications and the number of ticks :
+ * <pre>
+ * probInf = 0.2:0.8:0.2
+ * limitationStrategy1 = None, Face_mask, Curfew
+ * replications = 10
+ * ticks = 500
+ * </pre>
+ * The replication r of every combination uses the seed randomSeed + r (0 + r if randomSeed is not set), so that the
+ * combinations are compared on the same random numbers. A run stops as soon as nobody is infected or deceased
+ * anymore : the counters can not change after that.
+ * In a directory, the run n is written in run-n.cvts, and runs.csv gives the replication, the seed and the swept
+ * values of each run.
+ * Usage : SweepRunner &lt;parameters.xml&gt; &lt;sweep file&gt; &lt;output.csv or directory&gt; [number of threads]
+ * @author Natacha
+ *
+ */
+public class SweepRunner {
+
+	/**
+	 * Number of ticks written at once by a run.
+	 */
+	static int FLUSH_INTERVAL = 256;
+
+	/**
+	 * The default parameters.
+	 */
+	private final HeadlessParameters defaults;
+
+	/**
+	 * The values of each swept parameter.
+	 */
+	private final Map<String, List<String>> sweep = new LinkedHashMap<>();
+
+	/**
+	 * The number of replications of each combination and the number of ticks of each run.
+	 */
+	private int nbReplications = 1;
+	private int nbTicks = 1000;
+
+	/**
+	 * Constructor.
+	 * @param defaults the default parameters
+	 * @param sweepFile the sweep file
+	 * @throws IOException if the sweep file can not be read
+	 */
+	public SweepRunner(HeadlessParameters defaults, File sweepFile) throws IOException {
+		this.defaults = defaults;
+		for (String line : Files.readAllLines(sweepFile.toPath(), StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			int equal = line.indexOf('=');
+			if (equal <= 0)
+				throw new IllegalArgumentException("Expected name = values : " + line);
+			String name = line.substring(0, equal).trim();
+			String values = line.substring(equal + 1).trim();
+
+			if (name.equals("replications"))
+				nbReplications = Integer.parseInt(values);
+			else if (name.equals("ticks"))
+				nbTicks = Integer.parseInt(values);
+			else sweep.put(name, parseValues(values));
+		}
+	}
+
+	/**
+	 * Returns the values of a line of the sweep file : a list separated by commas or a range from:to:step.
+	 * @param values the text of the values
+	 * @return the values
+	 */
+	static List<String> parseValues(String values) {
+		List<String> list = new ArrayList<>();
+		String[] range = values.split(":");
+		if (range.length == 3) {
+			BigDecimal from = new BigDecimal(range[0].trim());
+			BigDecimal to = new BigDecimal(range[1].trim());
+			BigDecimal step = new BigDecimal(range[2].trim());
+			if (step.signum() <= 0)
+				throw new IllegalArgumentException("The step must be positive : " + values);
+			for (BigDecimal v = from; v.compareTo(to) <= 0; v = v.add(step))
+				list.add(v.toPlainString());
+		}
+		else {
+			for (String value : values.split(","))
+				list.add(value.trim());
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the parameters of every combination of the swept values.
+	 * @return the parameters of each combination
+	 */
+	List<HeadlessParameters> getCombinations() {
+		List<HeadlessParameters> combinations = new ArrayList<>();
+		combinations.add(new HeadlessParameters(defaults));
+		for (Map.Entry<String, List<String>> entry : sweep.entrySet()) {
+			List<HeadlessParameters> next = new ArrayList<>();
+			for (HeadlessParameters combination : combinations)
+				for (String value : entry.getValue()) {
+					HeadlessParameters params = new HeadlessParameters(combination);
+					params.set(entry.getKey(), value);
+					next.add(params);
+				}
+			combinations = next;
+		}
+		return combinations;
+	}
+
+	/**
+	 * Runs all the runs of the sweep and writes their counters.
+	 * @param output the CSV file written, or the directory of the time series if its name does not end with .csv
+	 * @param nbThreads the number of runs computed at the same time
+	 * @throws Exception if a run fails
+	 */
+	public void run(File output, int nbThreads) throws Exception {
+		List<HeadlessParameters> combinations = getCombinations();
+		int nbRuns = combinations.size() * nbReplications;
+		AtomicInteger nbDone = new AtomicInteger();
+
+		File directory = null;
+		if (!output.getName().endsWith(".csv")) {
+			directory = output;
+			Files.createDirectories(directory.toPath());
+			output = new File(directory, "runs.csv");
+		}
+		File seriesDirectory = directory;
+
+		ExecutorService pool = Executors.newFixedThreadPool(nbThreads);
+		try (BufferedWriter writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+			StringBuilder header = new StringBuilder("run,replication,seed");
+			for (String name : sweep.keySet())
+				header.append(',').append(name);
+			if (directory == null)
+				header.append(",tick,").append(TickCounters.HEADER);
+			writer.write(header.append('\n').toString());
+
+			List<Future<?>> futures = new ArrayList<>();
+			int run = 0;
+			for (HeadlessParameters combination : combinations)
+				for (int replication = 0; replication < nbReplications; replication++) {
+					int runNumber = run++;
+					int r = replication;
+					futures.add(pool.submit(() -> {
+						runOne(combination, runNumber, r, writer, seriesDirectory);
+						System.err.println("Run " + (nbDone.incrementAndGet()) + "/" + nbRuns + " done");
+						return null;
+					}));
+				}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Computes one run and writes its counters.
+	 * @param combination the parameters of the run
+	 * @param run the number of the run
+	 * @param replication the number of the replication
+	 * @param writer the CSV output, shared by the runs
+	 * @param directory the directory of the time series, null to write the counters in the CSV output
+	 * @throws IOException if the output can not be written
+	 */
+	private void runOne(HeadlessParameters combination, int run, int replication, Writer writer, File directory)
+			throws IOException {
+		long seed = combination.getInteger("randomSeed", 0) + replication;
+
+		ContextCreator creator = new ContextCreator();
+		creator.readParameters(combination::getValue);
+		Population population = new Population(creator.gridWidth, creator.gridHeight,
+				creator.numberOfSusceptibleAgents + creator.numberOfInfectedAgents, seed, creator.scenario,
+				creator.sparseGrid, creator.createStorage());
+		try {
+			creator.createPlaces(population);
+			creator.createPeople(population, seed, 0, creator.gridHeight);
+
+			StringBuilder prefix = new StringBuilder().append(run).append(',').append(replication).append(',').append(seed);
+			for (String name : sweep.keySet())
+				prefix.append(',').append(combination.getValue(name));
+			prefix.append(',');
+
+			if (directory != null) {
+				write(writer, prefix.substring(0, prefix.length() - 1) + "\n");
+				try (TimeSeriesWriter series = new TimeSeriesWriter(new File(directory, "run-" + run + ".cvts").toPath(),
+						TickCounters.COLUMNS, TickCounters.TYPES)) {
+					for (int tick = 1; tick <= nbTicks && population.getActiveCount() > 0; tick++) {
+						population.computeNextStatuses();
+						population.computeNextPositionsAndApply();
+
+						TickCounters counters = new TickCounters();
+						counters.add(population);
+						counters.write(series, tick);
+					}
+				}
+				return;
+			}
+
+			StringBuilder lines = new StringBuilder();
+			for (int tick = 1; tick <= nbTicks && population.getActiveCount() > 0; tick++) {
+				population.computeNextStatuses();
+				population.computeNextPositionsAndApply();
+
+				TickCounters counters = new TickCounters();
+				counters.add(population);
+				lines.append(prefix).append(tick).append(',').append(counters.toCsv()).append('\n');
+
+				if (tick % FLUSH_INTERVAL == 0) {
+					write(writer, lines);
+					lines.setLength(0);
+				}
+			}
+			write(writer, lines);
+		} finally {
+			population.dispose();
+		}
+	}
+
+	/**
+	 * Writes the lines of a run to the shared output.
+	 */
+	private static void write(Writer writer, CharSequence lines) throws IOException {
+		if (lines.length() == 0)
+			return;
+		synchronized (writer) {
+			writer.append(lines);
+		}
+	}
+
+	/**
+	 * Runs a sweep.
+	 * @param args the parameters file, the sweep file, the output file and the number of threads
+	 * @throws Exception if the sweep fails
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage : SweepRunner <parameters.xml> <sweep file> <output.csv or directory> [number of threads]");
+			System.exit(1);
+		}
+		int nbThreads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		SweepRunner runner = new SweepRunner(new HeadlessParameters(new File(args[0])), new File(args[1]));
+		runner.run(new File(args[2]), nbThreads);
+	}
+}
@@ -0,0 +1,169 @@
+package covidSimulation;
+
+/**
+ * The settings of the current tick, computed once at the beginning of the tick instead of being read
+ * by each agent : the tick, the period of curfew, the probabilities, the strategies of limitation and the grid
+ * dimensions. A scenario modified during a tick is thus taken into account at the next tick, for all the agents.
+ * @author Natacha
+ *
+ */
+public class TickContext {
+
+	/**
+	 * The tick.
+	 */
+	private final long tick;
+
+	/**
+	 * True if the tick is in the period of curfew (between 10PM and 8AM), whether the curfew is activated or not.
+	 */
+	private final boolean curfewTime;
+
+	/**
+	 * The probabilities of infection and of recovering.
+	 */
+	private final float probInf;
+	private final float probRec;
+
+	/**
+	 * The different strategies of limitation.
+	 */
+	private final boolean distancing;
+	private final boolean infectedIsolation;
+	private final boolean lockdown;
+	private final boolean curfew;
+	private final boolean mask;
+
+	/**
+	 * The grid dimensions (the height of the whole grid for a population run on several processes).
+	 */
+	private final int width;
+	private final int height;
+
+	/**
+	 * Constructor.
+	 * @param tick the tick
+	 * @param scenario the scenario of the simulation
+	 * @param width the grid width
+	 * @param height the grid height
+	 */
+	public TickContext(long tick, Scenario scenario, int width, int height) {
+		this.tick = tick;
+		this.curfewTime = isCurfewTime(tick);
+		this.probInf = scenario.getProbInf();
+		this.probRec = scenario.getProbRec();
+		this.distancing = scenario.isDistancing();
+		this.infectedIsolation = scenario.isInfectedIsolation();
+		this.lockdown = scenario.isLockdown();
+		this.curfew = scenario.isCurfew();
+		this.mask = scenario.isMask();
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * When there is a curfew, agents must not move between 10PM and 8AM.
+	 * @param tick the tick (one tick is one hour)
+	 * @return true if the tick corresponds to the period of curfew
+	 */
+	public static boolean isCurfewTime(long tick) {
+		return ((tick % 24 > 22) || (tick % 24 < 8));
+	}
+
+	/**
+	 * Returns the tick.
+	 * @return the tick
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * Returns true if the tick is in the period of curfew.
+	 * @return true if the tick is in the period of curfew
+	 */
+	public boolean isCurfewTime() {
+		return curfewTime;
+	}
+
+	/**
+	 * Returns true if nobody can move during this tick : there is a lockdown, or there is a curfew
+	 * and the tick is in the period of curfew.
+	 * @return true if nobody can move
+	 */
+	public boolean isMovementBlocked() {
+		return lockdown || (curfew && curfewTime);
+	}
+
+	/**
+	 * Returns the average probability of contamination.
+	 * @return the probability of contamination
+	 */
+	public float getProbInf() {
+		return probInf;
+	}
+
+	/**
+	 * Returns the probability of recovering.
+	 * @return the probability of recovering
+	 */
+	public float getProbRec() {
+		return probRec;
+	}
+
+	/**
+	 * Returns true if the distancing strategy is activated.
+	 * @return true if the distancing strategy is activated
+	 */
+	public boolean isDistancing() {
+		return distancing;
+	}
+
+	/**
+	 * Returns true if the isolation of infected agents is activated.
+	 * @return true if the isolation of infected agents is activated
+	 */
+	public boolean isInfectedIsolation() {
+		return infectedIsolation;
+	}
+
+	/**
+	 * Returns true if the lockdown is activated.
+	 * @return true if the lockdown is activated
+	 */
+	public boolean isLockdown() {
+		return lockdown;
+	}
+
+	/**
+	 * Returns true if the curfew is activated.
+	 * @return true if the curfew is activated
+	 */
+	public boolean isCurfew() {
+		return curfew;
+	}
+
+	/**
+	 * Returns true if the mask strategy is activated.
+	 * @return true if the mask strategy is activated
+	 */
+	public boolean isMask() {
+		return mask;
+	}
+
+	/**
+	 * Returns the grid width.
+	 * @return the grid width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the grid height.
+	 * @return the grid height
+	 */
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,98 @@
+package covidSimulation;
+
+import java.io.IOException;
+
+/**
+ * The counters reported at each tick by the runs without Repast : the number of people of each status,
+ * the total number of deaths and R0, the same values as the data sets of the Repast run.
+ * @author Natacha
+ *
+ */
+public class TickCounters {
+
+	/**
+	 * The names of the columns written by toCsv.
+	 */
+	public static final String HEADER = "susceptible,infected,infectedWithSymptoms,infectedWithoutSymptoms,"
+			+ "recovered,deceased,totalDeaths,R0";
+
+	/**
+	 * The names and the types of the columns of the time series written by write : the tick, then the columns of HEADER.
+	 */
+	public static final String[] COLUMNS = ("tick," + HEADER).split(",");
+	public static final char[] TYPES = {
+			TimeSeriesWriter.LONG, TimeSeriesWriter.LONG, TimeSeriesWriter.LONG, TimeSeriesWriter.LONG,
+			TimeSeriesWriter.LONG, TimeSeriesWriter.LONG, TimeSeriesWriter.LONG, TimeSeriesWriter.LONG,
+			TimeSeriesWriter.DOUBLE };
+
+	/**
+	 * The index of the total number of deaths and of the number of people contaminated by the infected people
+	 * in the values (the first values are the numbers of people of each status).
+	 */
+	static final int TOTAL_DEATHS = 5;
+	static final int CONTAMINATED = 6;
+
+	/**
+	 * The values.
+	 */
+	final long[] values = new long[7];
+
+	/**
+	 * Adds the counters of a population (the ghosts are not counted).
+	 * @param population the population
+	 */
+	public void add(Population population) {
+		PopulationStatistics statistics = population.getStatistics();
+		for (int s = 0; s < TOTAL_DEATHS; s++)
+			values[s] += statistics.getNbPeople(s);
+		values[TOTAL_DEATHS] += statistics.getNbDeaths();
+		values[CONTAMINATED] += statistics.getSumContaminated();
+	}
+
+	/**
+	 * Returns the number of infected people, with or without symptoms.
+	 * @return the number of infected people
+	 */
+	public long getInfected() {
+		return values[Agent.INFECTED_WITH_SYMPTOMS_STATUS] + values[Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS];
+	}
+
+	/**
+	 * Returns R0 : the mean number of people contaminated by the infected people.
+	 * @return R0, NaN if there is no infected people
+	 */
+	public double getR0() {
+		long infected = getInfected();
+		return (infected == 0) ? Double.NaN : (double) values[CONTAMINATED] / infected;
+	}
+
+	/**
+	 * Returns the counters as a line of CSV, in the order of HEADER.
+	 * @return the line
+	 */
+	public String toCsv() {
+		return values[Agent.SUSCEPTIBLE_STATUS] + "," + getInfected()
+				+ "," + values[Agent.INFECTED_WITH_SYMPTOMS_STATUS] + "," + values[Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS]
+				+ "," + values[Agent.RECOVERED_STATUS] + "," + values[Agent.DECEASED_STATUS]
+				+ "," + values[TOTAL_DEATHS] + "," + getR0();
+	}
+
+	/**
+	 * Writes the counters as a row of a time series, in the order of COLUMNS.
+	 * @param writer the time series
+	 * @param tick the current tick
+	 * @throws IOException if the time series can not be written
+	 */
+	public void write(TimeSeriesWriter writer, long tick) throws IOException {
+		writer.set(0, tick);
+		writer.set(1, values[Agent.SUSCEPTIBLE_STATUS]);
+		writer.set(2, getInfected());
+		writer.set(3, values[Agent.INFECTED_WITH_SYMPTOMS_STATUS]);
+		writer.set(4, values[Agent.INFECTED_WITHOUT_SYMPTOMS_STATUS]);
+		writer.set(5, values[Agent.RECOVERED_STATUS]);
+		writer.set(6, values[Agent.DECEASED_STATUS]);
+		writer.set(7, values[TOTAL_DEATHS]);
+		writer.set(8, getR0());
+		writer.endRow();
+	}
+}
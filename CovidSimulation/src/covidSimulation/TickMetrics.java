@@ -0,0 +1,362 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The metrics of the ticks of a population : the wall time of each tick, the time of each scheduled phase,
+ * the number of agents visited by the status phase, the number of transitions of each type and the number of bytes
+ * allocated. They are exposed as a JMX MBean and, optionally, as plain text on a local HTTP port (/metrics).
+ * The population measures its phases only when metrics are set, so that nothing is measured in the other runs.
+ * The values of a tick are published at the end of its movement phase, so that the last tick of a run is published
+ * too. The wall time of a tick is measured from the end of the previous tick : it includes the data collection and
+ * the display done by Repast between the two ticks.
+ * @author Natacha
+ *
+ */
+public class TickMetrics implements TickMetricsMBean {
+
+	/**
+	 * Indexes of the types of transitions.
+	 */
+	static final int INFECTION = 0;
+	static final int RECOVERY = 1;
+	static final int DEATH = 2;
+	static final int REMOVAL = 3;
+
+	/**
+	 * The allocations of the threads, null if the JVM can not measure them.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+
+	/**
+	 * The values of the tick being computed (written only by the thread running the simulation, except the
+	 * transitions which can be counted by the threads applying the tiles).
+	 */
+	private long tickStart;
+	private long statusPhaseStart;
+	private long movementPhaseStart;
+	private long statusPhaseTime;
+	private long movementPhaseTime;
+	private long allocatedAtStart;
+	private int nbVisited;
+	private final AtomicIntegerArray transitions = new AtomicIntegerArray(4);
+
+	/**
+	 * The values of the last complete tick, read by the JMX and HTTP threads.
+	 */
+	private volatile long nbTicks;
+	private volatile long lastTickTime;
+	private volatile long lastStatusPhaseTime;
+	private volatile long lastMovementPhaseTime;
+	private volatile long lastAllocatedBytes = -1;
+	private volatile int lastNbVisited;
+	private volatile int[] lastTransitions = new int[4];
+
+	/**
+	 * The sums and the maximum since the last reset (ns).
+	 */
+	private volatile long nbMeasured;
+	private volatile long totalTickTime;
+	private volatile long totalStatusPhaseTime;
+	private volatile long totalMovementPhaseTime;
+	private volatile long maxTickTime;
+
+	/**
+	 * The JMX name, null if the metrics are not registered.
+	 */
+	private ObjectName name;
+
+	/**
+	 * The HTTP server, null if the metrics are not published on a port.
+	 */
+	private HttpServer endpoint;
+
+	/**
+	 * Returns the bean measuring the allocations of the threads.
+	 */
+	private static com.sun.management.ThreadMXBean getThreads() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+		if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled())
+			return null;
+		return sunThreads;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by all the live threads since their start.
+	 */
+	private static long getAllocatedBytes() {
+		long total = 0;
+		for (long allocated : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds()))
+			if (allocated > 0)
+				total += allocated;
+		return total;
+	}
+
+	// ************************************************************************************************
+	// Measures, called by the population
+	// ************************************************************************************************
+
+	/**
+	 * Called at the beginning of the status phase : begins a new tick. The first tick begins here, the next ones
+	 * at the end of the previous tick.
+	 */
+	void beginStatusPhase() {
+		long now = System.nanoTime();
+		if (tickStart == 0) {
+			tickStart = now;
+			allocatedAtStart = (THREADS != null) ? getAllocatedBytes() : -1;
+		}
+
+		statusPhaseStart = now;
+		statusPhaseTime = 0;
+		movementPhaseTime = 0;
+		nbVisited = 0;
+		for (int i = 0; i < transitions.length(); i++)
+			transitions.set(i, 0);
+	}
+
+	/**
+	 * Called at the end of the status phase.
+	 * @param nbVisited the number of agents visited
+	 */
+	void endStatusPhase(int nbVisited) {
+		this.statusPhaseTime = System.nanoTime() - statusPhaseStart;
+		this.nbVisited = nbVisited;
+	}
+
+	/**
+	 * Called at the beginning of the movement phase.
+	 */
+	void beginMovementPhase() {
+		movementPhaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Called at the end of the movement phase : ends the tick and publishes its values.
+	 */
+	void endMovementPhase() {
+		long now = System.nanoTime();
+		long allocated = (THREADS != null) ? getAllocatedBytes() : -1;
+		movementPhaseTime = now - movementPhaseStart;
+		// The metrics may have been set between the two phases of a tick.
+		if (tickStart != 0)
+			publish(now - tickStart, allocated);
+
+		tickStart = now;
+		allocatedAtStart = allocated;
+	}
+
+	/**
+	 * Counts a transition. Can be called by several threads.
+	 * @param type the type of transition (INFECTION, RECOVERY, DEATH or REMOVAL)
+	 */
+	void countTransition(int type) {
+		transitions.incrementAndGet(type);
+	}
+
+	/**
+	 * Publishes the values of the tick which has just ended.
+	 * @param tickTime the wall time of the tick
+	 * @param allocated the number of bytes allocated since the start of the threads, -1 if unknown
+	 */
+	private synchronized void publish(long tickTime, long allocated) {
+		lastTickTime = tickTime;
+		lastStatusPhaseTime = statusPhaseTime;
+		lastMovementPhaseTime = movementPhaseTime;
+		// The threads ended during the tick are not counted anymore.
+		lastAllocatedBytes = (allocated < 0) ? -1 : Math.max(0, allocated - allocatedAtStart);
+		lastNbVisited = nbVisited;
+		int[] last = new int[transitions.length()];
+		for (int i = 0; i < last.length; i++)
+			last[i] = transitions.get(i);
+		lastTransitions = last;
+
+		nbTicks++;
+		nbMeasured++;
+		totalTickTime += tickTime;
+		totalStatusPhaseTime += statusPhaseTime;
+		totalMovementPhaseTime += movementPhaseTime;
+		maxTickTime = Math.max(maxTickTime, tickTime);
+	}
+
+	// ************************************************************************************************
+	// MBean
+	// ************************************************************************************************
+
+	@Override
+	public long getNbTicks() {
+		return nbTicks;
+	}
+
+	@Override
+	public long getLastTickTime() {
+		return lastTickTime / 1000;
+	}
+
+	@Override
+	public long getLastStatusPhaseTime() {
+		return lastStatusPhaseTime / 1000;
+	}
+
+	@Override
+	public long getLastMovementPhaseTime() {
+		return lastMovementPhaseTime / 1000;
+	}
+
+	@Override
+	public long getLastOtherTime() {
+		return Math.max(0, lastTickTime - lastStatusPhaseTime - lastMovementPhaseTime) / 1000;
+	}
+
+	@Override
+	public double getMeanTickTime() {
+		long nb = nbMeasured;
+		return (nb == 0) ? 0 : totalTickTime / 1000.0 / nb;
+	}
+
+	@Override
+	public long getMaxTickTime() {
+		return maxTickTime / 1000;
+	}
+
+	@Override
+	public double getMeanStatusPhaseTime() {
+		long nb = nbMeasured;
+		return (nb == 0) ? 0 : totalStatusPhaseTime / 1000.0 / nb;
+	}
+
+	@Override
+	public double getMeanMovementPhaseTime() {
+		long nb = nbMeasured;
+		return (nb == 0) ? 0 : totalMovementPhaseTime / 1000.0 / nb;
+	}
+
+	@Override
+	public int getLastNbVisited() {
+		return lastNbVisited;
+	}
+
+	@Override
+	public int getLastNbInfections() {
+		return lastTransitions[INFECTION];
+	}
+
+	@Override
+	public int getLastNbRecoveries() {
+		return lastTransitions[RECOVERY];
+	}
+
+	@Override
+	public int getLastNbDeaths() {
+		return lastTransitions[DEATH];
+	}
+
+	@Override
+	public int getLastNbRemoved() {
+		return lastTransitions[REMOVAL];
+	}
+
+	@Override
+	public long getLastAllocatedBytes() {
+		return lastAllocatedBytes;
+	}
+
+	@Override
+	public synchronized void reset() {
+		nbMeasured = 0;
+		totalTickTime = 0;
+		totalStatusPhaseTime = 0;
+		totalMovementPhaseTime = 0;
+		maxTickTime = 0;
+	}
+
+	/**
+	 * Returns the metrics as plain text, one metric by line : its name and its value.
+	 * @return the metrics
+	 */
+	public String toText() {
+		return "covid_ticks " + getNbTicks() + "\n"
+				+ "covid_tick_time_us " + getLastTickTime() + "\n"
+				+ "covid_status_phase_time_us " + getLastStatusPhaseTime() + "\n"
+				+ "covid_movement_phase_time_us " + getLastMovementPhaseTime() + "\n"
+				+ "covid_other_time_us " + getLastOtherTime() + "\n"
+				+ "covid_tick_time_mean_us " + getMeanTickTime() + "\n"
+				+ "covid_tick_time_max_us " + getMaxTickTime() + "\n"
+				+ "covid_status_phase_time_mean_us " + getMeanStatusPhaseTime() + "\n"
+				+ "covid_movement_phase_time_mean_us " + getMeanMovementPhaseTime() + "\n"
+				+ "covid_visited " + getLastNbVisited() + "\n"
+				+ "covid_transitions{type=\"infection\"} " + getLastNbInfections() + "\n"
+				+ "covid_transitions{type=\"recovery\"} " + getLastNbRecoveries() + "\n"
+				+ "covid_transitions{type=\"death\"} " + getLastNbDeaths() + "\n"
+				+ "covid_transitions{type=\"removal\"} " + getLastNbRemoved() + "\n"
+				+ "covid_allocated_bytes " + getLastAllocatedBytes() + "\n";
+	}
+
+	// ************************************************************************************************
+	// Publication
+	// ************************************************************************************************
+
+	/**
+	 * Registers the metrics in the JMX platform server, as covidSimulation:type=TickMetrics,name=...
+	 * @param simulationName the name of the simulation
+	 * @throws JMException if the metrics can not be registered
+	 */
+	public void register(String simulationName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		name = new ObjectName("covidSimulation:type=TickMetrics,name=" + ObjectName.quote(simulationName));
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+		server.registerMBean(this, name);
+	}
+
+	/**
+	 * Publishes the metrics as plain text on http://localhost:port/metrics.
+	 * @param port the local port
+	 * @throws IOException if the port can not be opened
+	 */
+	public void startEndpoint(int port) throws IOException {
+		endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		endpoint.createContext("/metrics", exchange -> {
+			byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		endpoint.start();
+	}
+
+	/**
+	 * Unregisters the metrics and stops the HTTP server.
+	 */
+	public void close() {
+		if (endpoint != null) {
+			endpoint.stop(0);
+			endpoint = null;
+		}
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+			name = null;
+		}
+	}
+}
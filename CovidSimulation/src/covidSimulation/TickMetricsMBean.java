@@ -0,0 +1,107 @@
+package covidSimulation;
+
+/**
+ * The metrics of the ticks exposed through JMX. The times are in microseconds.
+ * The values named last are the values of the last tick computed, the others are computed since the last reset.
+ * @author Natacha
+ *
+ */
+public interface TickMetricsMBean {
+
+	/**
+	 * Returns the number of ticks measured.
+	 * @return the number of ticks
+	 */
+	long getNbTicks();
+
+	/**
+	 * Returns the wall time of the last tick : the time between the end of the previous tick and the end of the
+	 * movement phase of this tick.
+	 * @return the wall time of the last tick
+	 */
+	long getLastTickTime();
+
+	/**
+	 * Returns the time of the status phase of the last tick.
+	 * @return the time of the status phase
+	 */
+	long getLastStatusPhaseTime();
+
+	/**
+	 * Returns the time of the movement phase of the last tick.
+	 * @return the time of the movement phase
+	 */
+	long getLastMovementPhaseTime();
+
+	/**
+	 * Returns the time of the last tick spent out of the two phases : the data collection, the display
+	 * and the scheduler.
+	 * @return the time out of the phases
+	 */
+	long getLastOtherTime();
+
+	/**
+	 * Returns the mean wall time of the ticks.
+	 * @return the mean wall time
+	 */
+	double getMeanTickTime();
+
+	/**
+	 * Returns the longest wall time of a tick.
+	 * @return the longest wall time
+	 */
+	long getMaxTickTime();
+
+	/**
+	 * Returns the mean time of the status phase.
+	 * @return the mean time of the status phase
+	 */
+	double getMeanStatusPhaseTime();
+
+	/**
+	 * Returns the mean time of the movement phase.
+	 * @return the mean time of the movement phase
+	 */
+	double getMeanMovementPhaseTime();
+
+	/**
+	 * Returns the number of agents visited by the status phase of the last tick.
+	 * @return the number of agents visited
+	 */
+	int getLastNbVisited();
+
+	/**
+	 * Returns the number of agents infected during the last tick.
+	 * @return the number of infections
+	 */
+	int getLastNbInfections();
+
+	/**
+	 * Returns the number of agents recovered during the last tick.
+	 * @return the number of recoveries
+	 */
+	int getLastNbRecoveries();
+
+	/**
+	 * Returns the number of agents deceased during the last tick.
+	 * @return the number of deaths
+	 */
+	int getLastNbDeaths();
+
+	/**
+	 * Returns the number of deceased agents removed from the grid during the last tick.
+	 * @return the number of agents removed
+	 */
+	int getLastNbRemoved();
+
+	/**
+	 * Returns the number of bytes allocated by the JVM during the last tick, -1 if the JVM can not measure it.
+	 * @return the number of bytes allocated
+	 */
+	long getLastAllocatedBytes();
+
+	/**
+	 * Resets the means and the maximum.
+	 */
+	void reset();
+}
@@ -0,0 +1,209 @@
+package covidSimulation;
+
+import java.util.Arrays;
+
+/**
+ * Decomposition of the grid into rectangular tiles, used by the parallel engine on large grids.
+ * Each tile keeps the list of the people located in it, and the people of one tile are computed together by
+ * one thread, so that a thread works on a small region of the grid and of the occupancy bitmap.
+ * A person only looks at and moves to the 8 cells around him, so the people of a tile only need their tile and
+ * the one-cell halo around it : as all the threads share the occupancy bitmap and the pressure field, which are
+ * not written during the decisions, the halo is read in place and no copy has to be exchanged. The only writes
+ * which can come from two tiles are the claims of the cells of the border of a tile. The claims of the other
+ * cells of the tile can only come from the people of the tile.
+ * A person whose move crosses the border of his tile is handed off to his new tile in a batch at the end of the
+ * tick : the tiles are scanned by the threads of the engine, then the people who have left their tile are added
+ * to their new tile in the order of the tiles.
+ * @author Natacha
+ *
+ */
+public class TileDecomposition {
+
+	/**
+	 * The grid dimensions.
+	 */
+	private final int width;
+	private final int height;
+
+	/**
+	 * The tile dimensions (the tiles of the last column and of the last row can be smaller).
+	 */
+	private final int tileWidth;
+	private final int tileHeight;
+
+	/**
+	 * The number of tiles on each axis.
+	 */
+	private final int nbTilesX;
+	private final int nbTilesY;
+
+	/**
+	 * True if the borders of the grid wrap around : the tiles of the edge of the grid then touch the tiles of
+	 * the opposite edge, and the cells of the edge of the grid are border cells.
+	 */
+	private final boolean periodic;
+
+	/**
+	 * The ids of the people located in each tile.
+	 */
+	private int[][] members;
+	private int[] nbMembers;
+
+	/**
+	 * The ids of the people who have left each tile at the end of the tick.
+	 */
+	private int[][] outgoing;
+	private int[] nbOutgoing;
+
+	/**
+	 * Constructor. All the tiles are empty.
+	 * @param width the grid width
+	 * @param height the grid height
+	 * @param tileSize the width and height of a tile
+	 * @param periodic true if the borders of the grid wrap around
+	 */
+	public TileDecomposition(int width, int height, int tileSize, boolean periodic) {
+		this.width = width;
+		this.height = height;
+		this.tileWidth = Math.min(Math.max(tileSize, 1), width);
+		this.tileHeight = Math.min(Math.max(tileSize, 1), height);
+		this.nbTilesX = (width + tileWidth - 1) / tileWidth;
+		this.nbTilesY = (height + tileHeight - 1) / tileHeight;
+		this.periodic = periodic;
+		this.members = new int[nbTilesX * nbTilesY][];
+		this.nbMembers = new int[nbTilesX * nbTilesY];
+		this.outgoing = new int[nbTilesX * nbTilesY][];
+		this.nbOutgoing = new int[nbTilesX * nbTilesY];
+		for (int t = 0; t < members.length; t++) {
+			members[t] = new int[16];
+			outgoing[t] = new int[16];
+		}
+	}
+
+	/**
+	 * Returns the number of tiles.
+	 * @return the number of tiles
+	 */
+	public int getNbTiles() {
+		return members.length;
+	}
+
+	/**
+	 * Returns the tile containing a cell.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return the index of the tile, or -1 if the cell is outside the grid
+	 */
+	public int getTile(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return -1;
+		return (y / tileHeight) * nbTilesX + x / tileWidth;
+	}
+
+	/**
+	 * Returns the number of people located in a tile.
+	 * @param tile the index of the tile
+	 * @return the number of people
+	 */
+	public int getNbMembers(int tile) {
+		return nbMembers[tile];
+	}
+
+	/**
+	 * Returns the ids of the people located in a tile (only the first getNbMembers(tile) ids are valid).
+	 * @param tile the index of the tile
+	 * @return the ids
+	 */
+	int[] getMembers(int tile) {
+		return members[tile];
+	}
+
+	/**
+	 * Returns true if a cell is on the border of its tile : a person of another tile can move to it.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return true if one of the 8 cells around is in another tile
+	 */
+	public boolean isBorder(int x, int y) {
+		return isBorder(x, width, tileWidth, nbTilesX) || isBorder(y, height, tileHeight, nbTilesY);
+	}
+
+	/**
+	 * Returns true if a coordinate is next to a coordinate of another tile on the same axis.
+	 * @param c the coordinate
+	 * @param size the grid dimension on this axis
+	 * @param tileSize the tile dimension on this axis
+	 * @param nbTiles the number of tiles on this axis
+	 * @return true if c - 1 or c + 1 is in another tile
+	 */
+	private boolean isBorder(int c, int size, int tileSize, int nbTiles) {
+		if (nbTiles == 1)
+			return false;
+		int r = c % tileSize;
+		boolean previousInOtherTile = r == 0 && (c > 0 || periodic);
+		boolean nextInOtherTile = (r == tileSize - 1 || c == size - 1) && (c < size - 1 || periodic);
+		return previousInOtherTile || nextInOtherTile;
+	}
+
+	/**
+	 * Empties all the tiles.
+	 */
+	void clear() {
+		Arrays.fill(nbMembers, 0);
+	}
+
+	/**
+	 * Adds a person to the tile containing his cell.
+	 * @param id the id of the person
+	 * @param x the x coordinate of the person
+	 * @param y the y coordinate of the person
+	 */
+	void assign(int id, int x, int y) {
+		int tile = getTile(x, y);
+		if (tile < 0)
+			return;
+		if (nbMembers[tile] == members[tile].length)
+			members[tile] = Arrays.copyOf(members[tile], members[tile].length * 2);
+		members[tile][nbMembers[tile]++] = id;
+	}
+
+	/**
+	 * Moves the people who have left their tile to their new tile, and forgets the people who have left the grid.
+	 * Called once all the moves of the tick have been applied.
+	 * @param population the population
+	 */
+	void handOff(Population population) {
+		population.forEach(0, members.length, tile -> removeOutgoing(population, tile));
+
+		for (int tile = 0; tile < members.length; tile++) {
+			for (int i = 0; i < nbOutgoing[tile]; i++) {
+				int id = outgoing[tile][i];
+				assign(id, population.x.get(id), population.y.get(id));
+			}
+		}
+	}
+
+	/**
+	 * Removes from a tile the people who have left it, and keeps them in the outgoing people of the tile.
+	 * Several tiles are scanned at the same time.
+	 * @param population the population
+	 * @param tile the tile
+	 */
+	private void removeOutgoing(Population population, int tile) {
+		int[] ids = members[tile];
+		nbOutgoing[tile] = 0;
+		int i = 0;
+		while (i < nbMembers[tile]) {
+			int id = ids[i];
+			if (getTile(population.x.get(id), population.y.get(id)) == tile) {
+				i++;
+				continue;
+			}
+			// Swap with the last member of the tile
+			ids[i] = ids[--nbMembers[tile]];
+			if (nbOutgoing[tile] == outgoing[tile].length)
+				outgoing[tile] = Arrays.copyOf(outgoing[tile], outgoing[tile].length * 2);
+			outgoing[tile][nbOutgoing[tile]++] = id;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package covidSimulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a time series written by TimeSeriesWriter. The blocks are memory-mapped : loading a column only reads
+ * the bytes of this column in each block, and copies or uncompresses them into an array, without parsing any text.
+ * @author Natacha
+ *
+ */
+public class TimeSeriesReader implements Closeable {
+
+	/**
+	 * The file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The names and the types of the columns.
+	 */
+	private final String[] names;
+	private final char[] types;
+
+	/**
+	 * The offset and the number of rows of each block.
+	 */
+	private final long[] blockOffsets;
+	private final int[] blockRows;
+
+	/**
+	 * The total number of rows.
+	 */
+	private final int nbRows;
+
+	/**
+	 * Opens a file and reads its header and its footer.
+	 * @param file the file
+	 * @throws IOException if the file can not be read or is not a time series
+	 */
+	public TimeSeriesReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			ByteBuffer end = map(size - 16, 16);
+			int nbBlocks = end.getInt();
+			long footerOffset = end.getLong();
+			if (end.getInt() != TimeSeriesWriter.MAGIC)
+				throw new IOException("Not a complete time series : " + file);
+
+			ByteBuffer footer = map(footerOffset, 12L * nbBlocks);
+			blockOffsets = new long[nbBlocks];
+			blockRows = new int[nbBlocks];
+			int total = 0;
+			for (int b = 0; b < nbBlocks; b++) {
+				blockOffsets[b] = footer.getLong();
+				blockRows[b] = footer.getInt();
+				total += blockRows[b];
+			}
+			nbRows = total;
+
+			ByteBuffer header = map(0, (nbBlocks > 0) ? blockOffsets[0] : footerOffset);
+			if (header.getInt() != TimeSeriesWriter.MAGIC || header.getShort() != TimeSeriesWriter.VERSION)
+				throw new IOException("Unknown format of time series : " + file);
+			int nbColumns = header.getShort();
+			names = new String[nbColumns];
+			types = new char[nbColumns];
+			for (int c = 0; c < nbColumns; c++) {
+				types[c] = (char) header.get();
+				byte[] name = new byte[header.getShort()];
+				header.get(name);
+				names[c] = new String(name, StandardCharsets.UTF_8);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps a part of the file.
+	 */
+	private ByteBuffer map(long offset, long length) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		return buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Returns the names of the columns.
+	 * @return the names of the columns
+	 */
+	public String[] getNames() {
+		return names.clone();
+	}
+
+	/**
+	 * Returns the type of a column.
+	 * @param column the index of the column
+	 * @return TimeSeriesWriter.LONG or TimeSeriesWriter.DOUBLE
+	 */
+	public char getType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Returns the index of a column.
+	 * @param name the name of the column
+	 * @return the index of the column
+	 */
+	public int getColumn(String name) {
+		for (int c = 0; c < names.length; c++)
+			if (names[c].equals(name))
+				return c;
+		throw new IllegalArgumentException("Unknown column : " + name);
+	}
+
+	/**
+	 * Returns the number of rows.
+	 * @return the number of rows
+	 */
+	public int getNbRows() {
+		return nbRows;
+	}
+
+	/**
+	 * Loads a long column.
+	 * @param name the name of the column
+	 * @return the values of the column
+	 * @throws IOException if the file can not be read
+	 */
+	public long[] readLongs(String name) throws IOException {
+		int column = getColumn(name);
+		if (types[column] != TimeSeriesWriter.LONG)
+			throw new IllegalArgumentException("Not a long column : " + name);
+		return readColumn(column);
+	}
+
+	/**
+	 * Loads a double column.
+	 * @param name the name of the column
+	 * @return the values of the column
+	 * @throws IOException if the file can not be read
+	 */
+	public double[] readDoubles(String name) throws IOException {
+		int column = getColumn(name);
+		if (types[column] != TimeSeriesWriter.DOUBLE)
+			throw new IllegalArgumentException("Not a double column : " + name);
+		long[] bits = readColumn(column);
+		double[] values = new double[bits.length];
+		for (int i = 0; i < bits.length; i++)
+			values[i] = Double.longBitsToDouble(bits[i]);
+		return values;
+	}
+
+	/**
+	 * Loads a column : for each block, finds the bytes of the column, uncompresses them if needed
+	 * and decodes the differences of a long column.
+	 * @param column the index of the column
+	 * @return the 8 bytes values of the column
+	 */
+	private long[] readColumn(int column) throws IOException {
+		long[] values = new long[nbRows];
+		byte[] compressed = new byte[0];
+		ByteBuffer raw = ByteBuffer.allocate(TimeSeriesWriter.BLOCK_ROWS * 8).order(ByteOrder.LITTLE_ENDIAN);
+		Inflater inflater = new Inflater();
+		try {
+			int row = 0;
+			for (int b = 0; b < blockOffsets.length; b++) {
+				int rows = blockRows[b];
+				int rawLength = rows * 8;
+
+				// The stored lengths of the columns give the offset of this column in the block.
+				ByteBuffer lengths = map(blockOffsets[b], 4L * names.length);
+				long offset = blockOffsets[b] + 4L * names.length;
+				for (int c = 0; c < column; c++)
+					offset += lengths.getInt(4 * c);
+				int length = lengths.getInt(4 * column);
+				ByteBuffer stored = map(offset, length);
+
+				ByteBuffer data;
+				if (length == rawLength)
+					data = stored;
+				else {
+					if (compressed.length < length)
+						compressed = new byte[length];
+					stored.get(compressed, 0, length);
+					inflater.reset();
+					inflater.setInput(compressed, 0, length);
+					try {
+						if (inflater.inflate(raw.array(), 0, rawLength) != rawLength)
+							throw new IOException("Truncated block " + b);
+					} catch (DataFormatException e) {
+						throw new IOException("Corrupted block " + b, e);
+					}
+					raw.clear();
+					data = raw;
+				}
+				data.asLongBuffer().get(values, row, rows);
+
+				if (types[column] == TimeSeriesWriter.LONG) {
+					long previous = 0;
+					for (int i = row; i < row + rows; i++) {
+						values[i] += previous;
+						previous = values[i];
+					}
+				}
+				row += rows;
+			}
+		} finally {
+			inflater.end();
+		}
+		return values;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
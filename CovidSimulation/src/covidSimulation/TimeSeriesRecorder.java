@@ -0,0 +1,52 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Records the counters of a population at each tick in a binary time series (see TimeSeriesWriter),
+ * after the two phases of the tick. It replaces the file sink of Repast, which wrote the counters as text.
+ * @author Natacha
+ *
+ */
+public class TimeSeriesRecorder {
+
+	/**
+	 * The population recorded.
+	 */
+	private final Population population;
+
+	/**
+	 * The time series.
+	 */
+	private final TimeSeriesWriter writer;
+
+	/**
+	 * Constructor.
+	 * @param population the population recorded
+	 * @param file the file of the time series
+	 * @throws IOException if the file can not be created
+	 */
+	public TimeSeriesRecorder(Population population, Path file) throws IOException {
+		this.population = population;
+		this.writer = new TimeSeriesWriter(file, TickCounters.COLUMNS, TickCounters.TYPES);
+	}
+
+	/**
+	 * Records the counters of the tick which has just been computed.
+	 * @throws IOException if the file can not be written
+	 */
+	public void record() throws IOException {
+		TickCounters counters = new TickCounters();
+		counters.add(population);
+		counters.write(writer, population.tick);
+	}
+
+	/**
+	 * Closes the time series. Called at the end of the run.
+	 * @throws IOException if the file can not be written
+	 */
+	public void close() throws IOException {
+		writer.close();
+	}
+}
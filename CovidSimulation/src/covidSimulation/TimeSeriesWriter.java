@@ -0,0 +1,241 @@
+package covidSimulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a time series in a binary columnar file : one column for each data source, with one value of 8 bytes
+ * (a long or a double) for each row. The rows are written by blocks of BLOCK_ROWS rows, each column of a block
+ * being compressed separately, so that a column can be read without reading the other ones (see TimeSeriesReader).
+ * <p>
+ * The file is made of :
+ * <ul>
+ * <li>a header : the magic number, the version, the number of columns, then the type ('J' for long, 'D' for double)
+ * and the name of each column;</li>
+ * <li>the blocks : the stored length of each column, then the bytes of each column. A long column is stored as the
+ * differences between successive values (small numbers compress well). A column whose stored length equals
+ * 8 times the number of rows is not compressed;</li>
+ * <li>a footer : the offset and the number of rows of each block, the number of blocks, the offset of the footer
+ * and the magic number.</li>
+ * </ul>
+ * All the numbers are little endian.
+ * @author Natacha
+ *
+ */
+public class TimeSeriesWriter implements Closeable {
+
+	/**
+	 * The magic number of the files ("CVTS") and the version of the format.
+	 */
+	static final int MAGIC = 0x53545643;
+	static final short VERSION = 1;
+
+	/**
+	 * The types of the columns.
+	 */
+	public static final char LONG = 'J';
+	public static final char DOUBLE = 'D';
+
+	/**
+	 * The maximum number of rows of a block.
+	 */
+	static final int BLOCK_ROWS = 4096;
+
+	/**
+	 * The file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The types of the columns.
+	 */
+	private final char[] types;
+
+	/**
+	 * The values of the current block, column by column (the doubles are stored as their bits).
+	 */
+	private final long[][] values;
+
+	/**
+	 * The number of rows of the current block.
+	 */
+	private int nbRows;
+
+	/**
+	 * The offset and the number of rows of each block written.
+	 */
+	private long[] blockOffsets = new long[16];
+	private int[] blockRows = new int[16];
+	private int nbBlocks;
+
+	/**
+	 * The buffers used to encode and compress a column, and the compressor.
+	 */
+	private final ByteBuffer raw = ByteBuffer.allocate(BLOCK_ROWS * 8).order(ByteOrder.LITTLE_ENDIAN);
+	private final byte[] compressed = new byte[BLOCK_ROWS * 8 + 64];
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+	/**
+	 * Creates the file (or replaces it) and writes the header.
+	 * @param file the file
+	 * @param names the names of the columns
+	 * @param types the types of the columns (LONG or DOUBLE)
+	 * @throws IOException if the file can not be written
+	 */
+	public TimeSeriesWriter(Path file, String[] names, char[] types) throws IOException {
+		if (names.length != types.length)
+			throw new IllegalArgumentException("One type is needed for each column");
+		this.types = types.clone();
+		this.values = new long[names.length][BLOCK_ROWS];
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		int size = 8;
+		byte[][] encodedNames = new byte[names.length][];
+		for (int c = 0; c < names.length; c++) {
+			if (types[c] != LONG && types[c] != DOUBLE)
+				throw new IllegalArgumentException("Unknown type of column : " + types[c]);
+			encodedNames[c] = names[c].getBytes(StandardCharsets.UTF_8);
+			size += 3 + encodedNames[c].length;
+		}
+		ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putShort(VERSION).putShort((short) names.length);
+		for (int c = 0; c < names.length; c++)
+			header.put((byte) types[c]).putShort((short) encodedNames[c].length).put(encodedNames[c]);
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * Sets a value of a long column in the current row.
+	 * @param column the index of the column
+	 * @param value the value
+	 */
+	public void set(int column, long value) {
+		values[column][nbRows] = value;
+	}
+
+	/**
+	 * Sets a value of a double column in the current row.
+	 * @param column the index of the column
+	 * @param value the value
+	 */
+	public void set(int column, double value) {
+		values[column][nbRows] = Double.doubleToRawLongBits(value);
+	}
+
+	/**
+	 * Ends the current row. The block is written when it is full.
+	 * @throws IOException if the file can not be written
+	 */
+	public void endRow() throws IOException {
+		if (++nbRows == BLOCK_ROWS)
+			writeBlock();
+	}
+
+	/**
+	 * Writes the current block.
+	 */
+	private void writeBlock() throws IOException {
+		if (nbRows == 0)
+			return;
+		if (nbBlocks == blockOffsets.length) {
+			blockOffsets = Arrays.copyOf(blockOffsets, nbBlocks * 2);
+			blockRows = Arrays.copyOf(blockRows, nbBlocks * 2);
+		}
+		blockOffsets[nbBlocks] = channel.position();
+		blockRows[nbBlocks] = nbRows;
+		nbBlocks++;
+
+		// The stored lengths are written once all the columns are compressed.
+		ByteBuffer lengths = ByteBuffer.allocate(4 * types.length).order(ByteOrder.LITTLE_ENDIAN);
+		channel.position(channel.position() + lengths.capacity());
+		for (int c = 0; c < types.length; c++)
+			lengths.putInt(writeColumn(c));
+		lengths.flip();
+		long offset = blockOffsets[nbBlocks - 1];
+		while (lengths.hasRemaining())
+			offset += channel.write(lengths, offset);
+
+		nbRows = 0;
+	}
+
+	/**
+	 * Encodes, compresses and writes a column of the current block.
+	 * @param column the index of the column
+	 * @return the number of bytes written
+	 */
+	private int writeColumn(int column) throws IOException {
+		long[] v = values[column];
+		raw.clear();
+		if (types[column] == LONG) {
+			long previous = 0;
+			for (int i = 0; i < nbRows; i++) {
+				raw.putLong(v[i] - previous);
+				previous = v[i];
+			}
+		}
+		else {
+			for (int i = 0; i < nbRows; i++)
+				raw.putLong(v[i]);
+		}
+		int rawLength = raw.position();
+
+		deflater.reset();
+		deflater.setInput(raw.array(), 0, rawLength);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished() && length < rawLength)
+			length += deflater.deflate(compressed, length, compressed.length - length);
+
+		// If the compression does not save anything, the column is stored as it is.
+		ByteBuffer out;
+		if (!deflater.finished() || length >= rawLength) {
+			raw.flip();
+			out = raw;
+			length = rawLength;
+		}
+		else out = ByteBuffer.wrap(compressed, 0, length);
+		write(out);
+		return length;
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer at the current position.
+	 */
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Writes the last block and the footer, and closes the file.
+	 * @throws IOException if the file can not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		try {
+			writeBlock();
+			long footerOffset = channel.position();
+			ByteBuffer footer = ByteBuffer.allocate(12 * nbBlocks + 16).order(ByteOrder.LITTLE_ENDIAN);
+			for (int b = 0; b < nbBlocks; b++)
+				footer.putLong(blockOffsets[b]).putInt(blockRows[b]);
+			footer.putInt(nbBlocks).putLong(footerOffset).putInt(MAGIC);
+			footer.flip();
+			write(footer);
+		} finally {
+			deflater.end();
+			channel.close();
+		}
+	}
+}
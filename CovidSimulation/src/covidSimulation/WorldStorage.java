@@ -0,0 +1,179 @@
+package covidSimulation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memory where the world is stored : the columns of the attributes of the people, their random streams
+ * and the occupancy grid. On the heap (the default), each column is an array. Outside the heap, each column
+ * is stored in direct buffers, or in a file mapped in memory, so that the world can be larger than the heap
+ * (and than the memory, for a mapped file) : the garbage collector does not see the world anymore, its pauses
+ * do not depend on the number of people.
+ * <p>
+ * A column outside the heap is split into chunks of at most 1 GB, as a buffer can not hold more than 2 GB.
+ * The files of the columns are created in a directory, and deleted by close. A storage belongs to one population,
+ * which closes it when it is disposed.
+ * @author Natacha
+ *
+ */
+public class WorldStorage {
+
+	/**
+	 * The storage on the heap.
+	 */
+	public static final WorldStorage HEAP = new WorldStorage(false, null);
+
+	/**
+	 * The number of bytes of a chunk, as a power of 2.
+	 */
+	static final int CHUNK_BITS = 30;
+
+	/**
+	 * True if the columns are stored outside the heap.
+	 */
+	private final boolean offHeap;
+
+	/**
+	 * The directory of the files of the columns (null for direct buffers).
+	 */
+	private final Path directory;
+
+	/**
+	 * The files created.
+	 */
+	private final List<Path> files = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param offHeap true to store the columns outside the heap
+	 * @param directory the directory of the files of the columns mapped in memory (null for direct buffers)
+	 */
+	private WorldStorage(boolean offHeap, Path directory) {
+		this.offHeap = offHeap;
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns a storage in direct buffers, outside the heap.
+	 * @return the storage
+	 */
+	public static WorldStorage direct() {
+		return new WorldStorage(true, null);
+	}
+
+	/**
+	 * Returns a storage in files mapped in memory.
+	 * @param directory the directory of the files (created if needed)
+	 * @return the storage
+	 * @throws IOException if the directory can not be created
+	 */
+	public static WorldStorage mapped(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		return new WorldStorage(true, directory);
+	}
+
+	/**
+	 * Returns true if the columns are stored outside the heap.
+	 * @return true outside the heap
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Creates a column of ints filled with 0.
+	 * @param name the name of the column
+	 * @param length the number of elements
+	 * @return the column
+	 */
+	IntColumn newIntColumn(String name, int length) {
+		if (!offHeap)
+			return new IntColumn.Heap(new int[length]);
+		return new IntColumn.OffHeap(this, newFile(name), length);
+	}
+
+	/**
+	 * Creates a column of longs filled with 0.
+	 * @param name the name of the column
+	 * @param length the number of elements
+	 * @return the column
+	 */
+	LongColumn newLongColumn(String name, int length) {
+		if (!offHeap)
+			return new LongColumn.Heap(new long[length]);
+		return new LongColumn.OffHeap(this, newFile(name), length);
+	}
+
+	/**
+	 * Creates a new file for a column, or returns null for direct buffers. The name of the file is unique, so that
+	 * several storages can share the same directory.
+	 * @param name the name of the column
+	 * @return the file
+	 */
+	private Path newFile(String name) {
+		if (directory == null)
+			return null;
+		try {
+			Path file = Files.createTempFile(directory, name + "-", ".col");
+			files.add(file);
+			return file;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Allocates the chunks of a column, with the content of the previous chunks of the column.
+	 * A file is mapped again with its new length : its content does not need to be copied.
+	 * @param file the file of the column (null for direct buffers)
+	 * @param previous the previous chunks (null for a new column)
+	 * @param nbBytes the number of bytes of the column
+	 * @return the chunks, in the native order
+	 */
+	ByteBuffer[] allocate(Path file, ByteBuffer[] previous, long nbBytes) {
+		int nbChunks = (int) ((nbBytes + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+		ByteBuffer[] chunks = new ByteBuffer[Math.max(nbChunks, 1)];
+		try (FileChannel channel = (file == null) ? null : (previous == null)
+				? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)
+				: FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			for (int c = 0; c < chunks.length; c++) {
+				long from = (long) c << CHUNK_BITS;
+				int length = (int) Math.min(nbBytes - from, 1L << CHUNK_BITS);
+				if (channel != null)
+					chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, from, length);
+				else {
+					chunks[c] = ByteBuffer.allocateDirect(length);
+					if (previous != null && c < previous.length)
+						chunks[c].put(previous[c].duplicate().clear().limit(Math.min(previous[c].capacity(), length)));
+				}
+				chunks[c].order(ByteOrder.nativeOrder());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Deletes the files of the columns. The columns must not be used anymore.
+	 */
+	public void close() {
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				// A file still mapped can not be deleted on some systems : it stays in the directory.
+			}
+		}
+		files.clear();
+	}
+}
@@ -0,0 +1,56 @@
+package covidSimulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Checks that a CellPermutation is a bijection on the cells of the grid, whatever the number of cells, and that
+ * it only depends on its seed.
+ * @author Natacha
+ *
+ */
+public class CellPermutationTest {
+
+	/**
+	 * Numbers of cells tested : powers of 4, numbers just above and below them, and grids of the simulations.
+	 */
+	private static final long[] NB_CELLS = { 1, 2, 3, 4, 5, 15, 16, 17, 63, 64, 65, 1000, 50 * 50, 60 * 60, 1 << 16,
+			(1 << 16) + 1, 300 * 301 };
+
+	@Test
+	public void testBijection() {
+		for (long nbCells : NB_CELLS) {
+			for (long seed = 0; seed < 3; seed++) {
+				CellPermutation permutation = new CellPermutation(nbCells, seed);
+				BitSet seen = new BitSet((int) nbCells);
+				for (long i = 0; i < nbCells; i++) {
+					long cell = permutation.permute(i);
+					assertTrue(nbCells + " cells : " + cell, cell >= 0 && cell < nbCells);
+					assertFalse(nbCells + " cells : " + cell + " given twice", seen.get((int) cell));
+					seen.set((int) cell);
+				}
+				assertEquals(nbCells, seen.cardinality());
+			}
+		}
+	}
+
+	@Test
+	public void testSameCellsForTheSameSeed() {
+		long nbCells = 60 * 60;
+		CellPermutation permutation = new CellPermutation(nbCells, 7);
+		CellPermutation same = new CellPermutation(nbCells, 7);
+		CellPermutation other = new CellPermutation(nbCells, 8);
+		int nbDifferent = 0;
+		for (long i = 0; i < nbCells; i++) {
+			assertEquals(permutation.permute(i), same.permute(i));
+			if (permutation.permute(i) != other.permute(i))
+				nbDifferent++;
+		}
+		assertTrue("The seed does not change the permutation", nbDifferent > 0);
+	}
+}
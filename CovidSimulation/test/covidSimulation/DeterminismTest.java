@@ -0,0 +1,249 @@
+package covidSimulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import repast.simphony.context.Context;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.context.space.grid.GridFactoryFinder;
+import repast.simphony.space.grid.Grid;
+import repast.simphony.space.grid.GridBuilderParameters;
+import repast.simphony.space.grid.SimpleGridAdder;
+import repast.simphony.space.grid.WrapAroundBorders;
+
+/**
+ * Checks that a run gives the same epidemic curves whatever the way it is computed : on one thread or on several
+ * threads, by ids or by tiles, with or without Repast, in one store or split into bands of rows.
+ * The bands of a split run are run by threads of the test, linked by loopback sockets as the processes of a
+ * PartitionedSimulation are : the processes themselves are not started.
+ * The tests are run from the CovidSimulation directory.
+ * @author Natacha
+ *
+ */
+public class DeterminismTest {
+
+	/**
+	 * The number of ticks of each run.
+	 */
+	private static final int NB_TICKS = 80;
+
+	/**
+	 * The parameters of the runs : a crowded grid, so that many people want to move to the same cells.
+	 */
+	private static final String[] PARAMETERS = { "gridWidth=60", "gridHeight=60", "numberOfSusceptibleAgents=1500",
+			"numberOfInfectedAgents=5", "randomSeed=7" };
+
+	/**
+	 * The scenarios tested.
+	 */
+	private static final String[][] SCENARIOS = { { "scenarioMvt=Random_scenario", "limitationStrategy1=None" },
+			{ "scenarioMvt=Random_scenario", "limitationStrategy1=Distanciation" },
+			{ "scenarioMvt=Attractive_places", "limitationStrategy1=Isolation_of_infected_people" } };
+
+	/**
+	 * The first port of the links between the bands of a partitioned run.
+	 */
+	private static final int PORT = 47300;
+
+	@Test
+	public void testSameCurvesWhateverTheNumberOfThreads() throws Exception {
+		for (String[] scenario : SCENARIOS) {
+			HeadlessParameters params = getParameters(scenario);
+			List<String> reference = runWithoutRepast(params, 1, 0);
+			assertEquals(Arrays.toString(scenario), reference, runWithoutRepast(params, 3, 0));
+			assertEquals(Arrays.toString(scenario), reference, runWithoutRepast(params, 3, 16));
+			assertEquals(Arrays.toString(scenario), reference, runWithoutRepast(params, 1, 16));
+		}
+	}
+
+	@Test
+	public void testSameCurvesWithAndWithoutRepast() throws Exception {
+		for (String[] scenario : SCENARIOS) {
+			HeadlessParameters params = getParameters(scenario);
+			List<String> reference = runWithoutRepast(params, 1, 0);
+			assertEquals(Arrays.toString(scenario), reference, runWithRepast(params, 1));
+			assertEquals(Arrays.toString(scenario), reference, runWithRepast(params, 3));
+		}
+	}
+
+	@Test
+	public void testSameCurvesSplitIntoBands() throws Exception {
+		for (String[] scenario : SCENARIOS) {
+			HeadlessParameters params = getParameters(scenario);
+			List<String> reference = runWithoutRepast(params, 1, 0);
+			assertEquals(Arrays.toString(scenario), reference, runPartitioned(params, 1));
+			assertEquals(Arrays.toString(scenario), reference, runPartitioned(params, 3));
+		}
+	}
+
+	@Test
+	public void testSameNumberOfInfectionsSplitIntoBands() throws Exception {
+		HeadlessParameters params = getParameters(SCENARIOS[0]);
+		long reference = countInfections(params, 1);
+		assertEquals(reference, countInfections(params, 3));
+	}
+
+	/**
+	 * Returns the parameters of a scenario.
+	 * @param scenario the parameters modified by the scenario
+	 * @return the parameters
+	 * @throws Exception if the parameters file can not be read
+	 */
+	private static HeadlessParameters getParameters(String[] scenario) throws Exception {
+		HeadlessParameters params = new HeadlessParameters(new File("CovidSimulation.rs/parameters.xml"));
+		params.setAll(PARAMETERS);
+		params.setAll(scenario);
+		return params;
+	}
+
+	/**
+	 * Runs a simulation without Repast, as SweepRunner does.
+	 * @param params the parameters
+	 * @param nbThreads the number of threads
+	 * @param tileSize the size of the tiles (0 to split the people by id)
+	 * @return the counters of each tick
+	 * @throws Exception if the simulation fails
+	 */
+	private static List<String> runWithoutRepast(HeadlessParameters params, int nbThreads, int tileSize)
+			throws Exception {
+		ContextCreator creator = new ContextCreator();
+		creator.readParameters(params::getValue);
+		long seed = params.getInteger("randomSeed", 0);
+		Population population = new Population(creator.gridWidth, creator.gridHeight,
+				creator.numberOfSusceptibleAgents + creator.numberOfInfectedAgents, seed, creator.scenario);
+		try {
+			population.setNumberOfThreads(nbThreads);
+			creator.createPlaces(population);
+			creator.createPeople(population, seed, 0, creator.gridHeight);
+			population.setTileSize(tileSize, false);
+			return run(population);
+		} finally {
+			population.dispose();
+		}
+	}
+
+	/**
+	 * Runs a simulation with a Repast context and grid, as ContextCreator.build does.
+	 * @param params the parameters
+	 * @param nbThreads the number of threads
+	 * @return the counters of each tick
+	 * @throws Exception if the simulation fails
+	 */
+	private static List<String> runWithRepast(HeadlessParameters params, int nbThreads) throws Exception {
+		ContextCreator creator = new ContextCreator();
+		creator.readParameters(params::getValue);
+		long seed = params.getInteger("randomSeed", 0);
+		Context<Agent> context = new DefaultContext<Agent>();
+		Grid<Agent> grid = GridFactoryFinder.createGridFactory(null).createGrid("grid", context,
+				new GridBuilderParameters<Agent>(new WrapAroundBorders(), new SimpleGridAdder<Agent>(), false,
+						creator.gridWidth, creator.gridHeight));
+		Population population = new Population(context, grid,
+				creator.numberOfSusceptibleAgents + creator.numberOfInfectedAgents, seed, creator.scenario);
+		try {
+			population.setNumberOfThreads(nbThreads);
+			creator.createPlaces(population);
+			creator.createPeople(population, seed, 0, creator.gridHeight);
+			return run(population);
+		} finally {
+			population.dispose();
+		}
+	}
+
+	/**
+	 * Runs the ticks of a population.
+	 * @param population the population
+	 * @return the counters of each tick
+	 */
+	private static List<String> run(Population population) {
+		List<String> curves = new ArrayList<>();
+		for (int tick = 1; tick <= NB_TICKS; tick++) {
+			population.computeNextStatuses();
+			population.computeNextPositionsAndApply();
+
+			TickCounters counters = new TickCounters();
+			counters.add(population);
+			curves.add(tick + "," + counters.toCsv());
+		}
+		return curves;
+	}
+
+	/**
+	 * Runs a simulation split into bands, each band being run by a thread.
+	 * @param params the parameters
+	 * @param nbBands the number of bands
+	 * @return the counters of each tick, printed by the first band
+	 * @throws Exception if the simulation fails
+	 */
+	private static List<String> runPartitioned(HeadlessParameters params, int nbBands) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name());
+		runPartitioned(params, nbBands, out);
+
+		List<String> lines = new ArrayList<>(Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split("\n")));
+		assertEquals(PartitionedSimulation.HEADER, lines.remove(0));
+		return lines;
+	}
+
+	/**
+	 * Runs a simulation split into bands and counts the infections of all the bands : a person
+	 * moving to another band must not be counted again as a new infection.
+	 * @param params the parameters
+	 * @param nbBands the number of bands
+	 * @return the total number of infections at the end of the run
+	 * @throws Exception if the simulation fails
+	 */
+	private static long countInfections(HeadlessParameters params, int nbBands) throws Exception {
+		PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name());
+		long nbInfections = 0;
+		for (PartitionedSimulation simulation : runPartitioned(params, nbBands, out))
+			nbInfections += simulation.population.getStatistics().getNbInfections();
+		return nbInfections;
+	}
+
+	/**
+	 * Runs the bands of a simulation split into bands, each band being run by a thread.
+	 * @param params the parameters
+	 * @param nbBands the number of bands
+	 * @param out the output of the counters printed by the first band
+	 * @return the simulations of the bands, closed
+	 * @throws Exception if the simulation fails
+	 */
+	private static PartitionedSimulation[] runPartitioned(HeadlessParameters params, int nbBands, PrintStream out)
+			throws Exception {
+		PartitionedSimulation[] simulations = new PartitionedSimulation[nbBands];
+		Exception[] failures = new Exception[nbBands];
+		Thread[] bands = new Thread[nbBands];
+		for (int rank = 0; rank < nbBands; rank++) {
+			int r = rank;
+			bands[rank] = new Thread(() -> {
+				try {
+					simulations[r] = new PartitionedSimulation(params, r, nbBands);
+					try {
+						simulations[r].connect(PORT);
+						simulations[r].run(NB_TICKS, out);
+					} finally {
+						simulations[r].close();
+					}
+				} catch (Exception e) {
+					failures[r] = e;
+				}
+			});
+			bands[rank].start();
+		}
+		for (int rank = 0; rank < nbBands; rank++) {
+			bands[rank].join();
+			if (failures[rank] != null)
+				throw failures[rank];
+		}
+		return simulations;
+	}
+}
@@ -0,0 +1,122 @@
+package covidSimulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks that a simulation restored from a snapshot computes exactly the same ticks as the simulation which was
+ * saved : from a file in a new population, and from memory in the population which was saved.
+ * The tests are run from the CovidSimulation directory.
+ * @author Natacha
+ *
+ */
+public class SnapshotTest {
+
+	/**
+	 * The number of ticks before the snapshot, and the number of ticks compared after it.
+	 */
+	private static final int NB_TICKS_BEFORE = 30;
+	private static final int NB_TICKS_AFTER = 40;
+
+	/**
+	 * The parameters of the runs : the places and the isolation of the infected people, so that the goals and the
+	 * sites of the places are saved too.
+	 */
+	private static final String[] PARAMETERS = { "gridWidth=60", "gridHeight=60", "numberOfSusceptibleAgents=1500",
+			"numberOfInfectedAgents=5", "randomSeed=11", "scenarioMvt=Attractive_places",
+			"limitationStrategy1=Isolation_of_infected_people" };
+
+	@Test
+	public void testSameTicksAfterLoadingAFile() throws Exception {
+		testSameTicksAfterLoadingAFile(false);
+		testSameTicksAfterLoadingAFile(true);
+	}
+
+	@Test
+	public void testSameTicksAfterRestoringInMemory() throws Exception {
+		Population population = createPopulation(false);
+		try {
+			run(population, NB_TICKS_BEFORE);
+			ByteBuffer snapshot = Snapshot.capture(population);
+			List<String> reference = run(population, NB_TICKS_AFTER);
+
+			Snapshot.restore(population, snapshot, true);
+			assertEquals(NB_TICKS_BEFORE, population.tick);
+			assertEquals(reference, run(population, NB_TICKS_AFTER));
+		} finally {
+			population.dispose();
+		}
+	}
+
+	/**
+	 * Saves a population in a file, runs it, then runs the population loaded from the file and compares the ticks.
+	 * @param sparse true to store only the occupied cells of the grid
+	 * @throws Exception if the simulation fails
+	 */
+	private static void testSameTicksAfterLoadingAFile(boolean sparse) throws Exception {
+		Path file = Files.createTempFile("snapshot", ".cvsn");
+		Population population = createPopulation(sparse);
+		Population loaded = null;
+		try {
+			run(population, NB_TICKS_BEFORE);
+			Snapshot.save(population, file);
+			List<String> reference = run(population, NB_TICKS_AFTER);
+
+			loaded = Snapshot.load(file);
+			assertEquals(population.occupancy.isSparse(), loaded.occupancy.isSparse());
+			assertEquals(NB_TICKS_BEFORE, loaded.tick);
+			assertEquals("sparse=" + sparse, reference, run(loaded, NB_TICKS_AFTER));
+		} finally {
+			population.dispose();
+			if (loaded != null)
+				loaded.dispose();
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Creates a population run without Repast, as SweepRunner does.
+	 * @param sparse true to store only the occupied cells of the grid
+	 * @return the population
+	 * @throws Exception if the parameters file can not be read
+	 */
+	private static Population createPopulation(boolean sparse) throws Exception {
+		HeadlessParameters params = new HeadlessParameters(new File("CovidSimulation.rs/parameters.xml"));
+		params.setAll(PARAMETERS);
+		ContextCreator creator = new ContextCreator();
+		creator.readParameters(params::getValue);
+		long seed = params.getInteger("randomSeed", 0);
+		Population population = new Population(creator.gridWidth, creator.gridHeight,
+				creator.numberOfSusceptibleAgents + creator.numberOfInfectedAgents, seed, creator.scenario, sparse);
+		creator.createPlaces(population);
+		creator.createPeople(population, seed, 0, creator.gridHeight);
+		return population;
+	}
+
+	/**
+	 * Runs ticks of a population.
+	 * @param population the population
+	 * @param nbTicks the number of ticks
+	 * @return the counters of each tick
+	 */
+	private static List<String> run(Population population, int nbTicks) {
+		List<String> curves = new ArrayList<>();
+		for (int i = 0; i < nbTicks; i++) {
+			population.computeNextStatuses();
+			population.computeNextPositionsAndApply();
+
+			TickCounters counters = new TickCounters();
+			counters.add(population);
+			curves.add(population.tick + "," + counters.toCsv());
+		}
+		return curves;
+	}
+}
@@ -0,0 +1,80 @@
+package covidSimulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that a time series read by TimeSeriesReader has the values written by TimeSeriesWriter : on several blocks,
+ * with long columns which compress well or not at all, and with double columns.
+ * @author Natacha
+ *
+ */
+public class TimeSeriesTest {
+
+	/**
+	 * The names and the types of the columns.
+	 */
+	private static final String[] NAMES = { "tick", "noise", "r0" };
+	private static final char[] TYPES = { TimeSeriesWriter.LONG, TimeSeriesWriter.LONG, TimeSeriesWriter.DOUBLE };
+
+	@Test
+	public void testSameValuesOnSeveralBlocks() throws Exception {
+		int nbRows = 2 * TimeSeriesWriter.BLOCK_ROWS + 17;
+		long[] ticks = new long[nbRows];
+		long[] noise = new long[nbRows];
+		double[] r0 = new double[nbRows];
+		Random random = new Random(3);
+		for (int row = 0; row < nbRows; row++) {
+			ticks[row] = row + 1;
+			// Random values, with negative differences, are stored without compression
+			noise[row] = random.nextLong();
+			r0[row] = (row % 10 == 0) ? Double.NaN : random.nextDouble() * 4;
+		}
+
+		Path file = Files.createTempFile("series", ".cvts");
+		try {
+			try (TimeSeriesWriter writer = new TimeSeriesWriter(file, NAMES, TYPES)) {
+				for (int row = 0; row < nbRows; row++) {
+					writer.set(0, ticks[row]);
+					writer.set(1, noise[row]);
+					writer.set(2, r0[row]);
+					writer.endRow();
+				}
+			}
+
+			try (TimeSeriesReader reader = new TimeSeriesReader(file)) {
+				assertArrayEquals(NAMES, reader.getNames());
+				for (int c = 0; c < NAMES.length; c++)
+					assertEquals(TYPES[c], reader.getType(c));
+				assertEquals(nbRows, reader.getNbRows());
+				assertArrayEquals(ticks, reader.readLongs("tick"));
+				assertArrayEquals(noise, reader.readLongs("noise"));
+				assertArrayEquals(r0, reader.readDoubles("r0"), 0);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testEmptySeries() throws Exception {
+		Path file = Files.createTempFile("series", ".cvts");
+		try {
+			new TimeSeriesWriter(file, NAMES, TYPES).close();
+
+			try (TimeSeriesReader reader = new TimeSeriesReader(file)) {
+				assertEquals(0, reader.getNbRows());
+				assertEquals(0, reader.readLongs("tick").length);
+				assertEquals(0, reader.readDoubles("r0").length);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}